@@ -0,0 +1,129 @@
+package com.example.camerainterceptor.analyzer;
+
+import com.example.camerainterceptor.core.CaptureFormat;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Command-line report over capture segments pulled from devices.
+ *
+ *   capture-analyzer [--threads N] [--bucket SECONDS] [--top N] [--max-endpoints N] FILE|DIR...
+ *
+ * Directories are searched recursively for .cap segments. Segments are the
+ * unit of parallelism: worker threads take them from a shared index, read
+ * each one once through a read-only mapping and aggregate into their own
+ * CaptureStats, which are merged for the report. Heap use depends on the
+ * endpoint cap and the time span covered, not on the size of the capture.
+ */
+public final class CaptureAnalyzer {
+    private static final String USAGE =
+        "usage: capture-analyzer [--threads N] [--bucket SECONDS] [--top N] [--max-endpoints N] FILE|DIR...";
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long bucketMillis = 60_000;
+    private int top = 50;
+    private int maxEndpoints = 1000;
+    private final List<File> segments = new ArrayList<>();
+
+    public static void main(String[] args) {
+        CaptureAnalyzer analyzer = new CaptureAnalyzer();
+        try {
+            analyzer.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (analyzer.segments.isEmpty()) {
+            System.err.println("No " + CaptureFormat.SEGMENT_SUFFIX + " files found");
+            System.exit(1);
+        }
+        analyzer.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--")) {
+                if (i + 1 == args.length) throw new IllegalArgumentException("Missing value for " + arg);
+                int value = positive(arg, args[++i]);
+                switch (arg) {
+                    case "--threads": threads = value; break;
+                    case "--bucket": bucketMillis = value * 1000L; break;
+                    case "--top": top = value; break;
+                    case "--max-endpoints": maxEndpoints = value; break;
+                    default: throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            } else {
+                collect(new File(arg));
+            }
+        }
+    }
+
+    private static int positive(String option, String value) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n > 0) return n;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(option + " needs a positive number, not " + value);
+    }
+
+    private void collect(File file) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) return;
+            Arrays.sort(children);
+            for (File child : children) {
+                if (child.isDirectory() || child.getName().endsWith(CaptureFormat.SEGMENT_SUFFIX)) collect(child);
+            }
+        } else if (file.isFile()) {
+            segments.add(file);
+        } else {
+            throw new IllegalArgumentException("No such file: " + file);
+        }
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        int workers = Math.min(threads, segments.size());
+        final AtomicInteger nextSegment = new AtomicInteger();
+        final CaptureStats[] results = new CaptureStats[workers];
+        Thread[] pool = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            final CaptureStats stats = new CaptureStats(maxEndpoints, bucketMillis);
+            results[i] = stats;
+            pool[i] = new Thread(() -> {
+                byte[] scratch = new byte[CaptureFormat.MAX_STRING_BYTES];
+                int index;
+                while ((index = nextSegment.getAndIncrement()) < segments.size()) {
+                    File file = segments.get(index);
+                    try {
+                        stats.read(SegmentReader.open(file, scratch));
+                    } catch (IOException e) {
+                        System.err.println("Skipping " + file + ": " + e.getMessage());
+                        stats.unreadable++;
+                    }
+                }
+            }, "analyzer-" + i);
+            pool[i].start();
+        }
+
+        CaptureStats total = new CaptureStats(maxEndpoints, bucketMillis);
+        for (int i = 0; i < workers; i++) {
+            try {
+                pool[i].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            total.add(results[i]);
+        }
+        total.print(System.out, top, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.camerainterceptor.analyzer;
+
+import com.example.camerainterceptor.core.CaptureEvent;
+import com.example.camerainterceptor.core.EndpointStats;
+import com.example.camerainterceptor.core.Exchange;
+import com.example.camerainterceptor.core.LatencyHistogram;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Per-endpoint and per-time-bucket aggregates over capture records.
+ *
+ * Each worker thread fills its own instance and the results are merged at
+ * the end, so nothing is shared while segments are read. Memory does not
+ * grow with the number of records: endpoints are capped (the rest are
+ * pooled under EndpointStats' "(other)"), histograms are fixed-size, and
+ * there is one bucket per interval of capture time.
+ *
+ * An exchange's response size comes from its body or library response
+ * record, which precedes the EXCHANGE record in the same segment. Sizes of
+ * exchanges split across two segments are not counted.
+ */
+final class CaptureStats {
+    static final class Endpoint {
+        final String name;
+        long requests;
+        final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+        final LatencyHistogram total = new LatencyHistogram();
+        final LatencyHistogram responseBytes = new LatencyHistogram();
+        // Status code -> exchanges; 0 means no response
+        final TreeMap<Integer, long[]> statuses = new TreeMap<>();
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        void add(Endpoint other) {
+            requests += other.requests;
+            timeToFirstByte.add(other.timeToFirstByte);
+            total.add(other.total);
+            responseBytes.add(other.responseBytes);
+            for (Map.Entry<Integer, long[]> entry : other.statuses.entrySet()) {
+                count(statuses, entry.getKey(), entry.getValue()[0], 0);
+            }
+        }
+    }
+
+    private final int maxEndpoints;
+    private final long bucketMillis;
+    private final Map<String, Endpoint> endpoints = new HashMap<>();
+    // Bucket start (epoch millis) -> {exchanges, response bytes}
+    private final TreeMap<Long, long[]> buckets = new TreeMap<>();
+    // Exchange id -> response size, for the segment being read
+    private final Map<Long, Long> pendingSizes = new HashMap<>();
+
+    long segments;
+    long segmentBytes;
+    long records;
+    long unreadable;
+
+    CaptureStats(int maxEndpoints, long bucketMillis) {
+        this.maxEndpoints = maxEndpoints;
+        this.bucketMillis = bucketMillis;
+    }
+
+    void read(SegmentReader segment) {
+        segments++;
+        segmentBytes += segment.size();
+        while (segment.next()) {
+            records++;
+            record(segment);
+        }
+        pendingSizes.clear();
+    }
+
+    private void record(SegmentReader r) {
+        switch (r.kind) {
+            case CaptureEvent.RESPONSE_BODY:
+            case CaptureEvent.LIBRARY_RESPONSE:
+                // A library response over a hooked connection shares its exchange; keep the larger size
+                if (r.exchange != 0 && r.length >= 0) {
+                    Long seen = pendingSizes.get(r.exchange);
+                    if (seen == null || seen < r.length) pendingSizes.put(r.exchange, r.length);
+                }
+                break;
+
+            case CaptureEvent.EXCHANGE: {
+                Endpoint endpoint = endpoint(Exchange.endpoint(r.url()));
+                endpoint.requests++;
+                count(endpoint.statuses, r.status, 1, 0);
+                long ttfb = r.detailValue("responseStart");
+                long total = r.detailValue("close");
+                if (ttfb >= 0) endpoint.timeToFirstByte.record(ttfb);
+                if (total >= 0) endpoint.total.record(total);
+                Long size = pendingSizes.remove(r.exchange);
+                if (size != null) endpoint.responseBytes.record(size);
+                count(buckets, r.timeMillis - Math.floorMod(r.timeMillis, bucketMillis), 1,
+                    size != null ? size : 0);
+                break;
+            }
+
+            default:
+                break;
+        }
+    }
+
+    private Endpoint endpoint(String name) {
+        Endpoint endpoint = endpoints.get(name);
+        if (endpoint != null) return endpoint;
+        if (endpoints.size() >= maxEndpoints) name = EndpointStats.OTHER;
+        endpoint = endpoints.get(name);
+        if (endpoint == null) {
+            endpoint = new Endpoint(name);
+            endpoints.put(name, endpoint);
+        }
+        return endpoint;
+    }
+
+    private static <K> void count(Map<K, long[]> map, K key, long count, long bytes) {
+        long[] values = map.get(key);
+        if (values == null) {
+            values = new long[2];
+            map.put(key, values);
+        }
+        values[0] += count;
+        values[1] += bytes;
+    }
+
+    void add(CaptureStats other) {
+        segments += other.segments;
+        segmentBytes += other.segmentBytes;
+        records += other.records;
+        unreadable += other.unreadable;
+        for (Endpoint endpoint : other.endpoints.values()) {
+            endpoint(endpoint.name).add(endpoint);
+        }
+        for (Map.Entry<Long, long[]> entry : other.buckets.entrySet()) {
+            count(buckets, entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+        }
+    }
+
+    void print(PrintStream out, int top, long elapsedNanos) {
+        out.printf(Locale.US, "%d segments (%s), %d records in %.1f s%s%n", segments, bytes(segmentBytes),
+            records, elapsedNanos / 1e9, unreadable > 0 ? ", " + unreadable + " unreadable files skipped" : "");
+
+        List<Endpoint> sorted = new ArrayList<>(endpoints.values());
+        sorted.sort((a, b) -> Long.compare(b.requests, a.requests));
+        out.println();
+        out.println("Endpoints by requests (latency from connect; size of response bodies):");
+        for (int i = 0; i < sorted.size() && i < top; i++) {
+            Endpoint e = sorted.get(i);
+            out.println(e.name);
+            out.print("  " + e.requests + " requests, status");
+            for (Map.Entry<Integer, long[]> status : e.statuses.entrySet()) {
+                out.print(" " + (status.getKey() == 0 ? "none" : status.getKey()) + "=" + status.getValue()[0]);
+            }
+            out.println();
+            if (e.timeToFirstByte.count() > 0) out.println("  TTFB  " + percentiles(e.timeToFirstByte, false));
+            if (e.total.count() > 0) out.println("  total " + percentiles(e.total, false));
+            if (e.responseBytes.count() > 0) out.println("  size  " + percentiles(e.responseBytes, true));
+        }
+        if (sorted.size() > top) {
+            out.println("... " + (sorted.size() - top) + " more endpoints (--top to show them)");
+        }
+
+        out.println();
+        out.println("Throughput per " + bucketMillis / 1000 + " s (UTC):");
+        SimpleDateFormat time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        time.setTimeZone(TimeZone.getTimeZone("UTC"));
+        for (Map.Entry<Long, long[]> bucket : buckets.entrySet()) {
+            long exchanges = bucket.getValue()[0];
+            out.printf(Locale.US, "%s  %8d exchanges  %8.2f/s  %10s%n", time.format(new Date(bucket.getKey())),
+                exchanges, exchanges * 1000.0 / bucketMillis, bytes(bucket.getValue()[1]));
+        }
+    }
+
+    private static String percentiles(LatencyHistogram histogram, boolean size) {
+        long[] values = {histogram.percentile(50), histogram.percentile(90), histogram.percentile(99), histogram.max()};
+        String[] names = {"p50 ", " p90 ", " p99 ", " max "};
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            sb.append(names[i]).append(size ? bytes(values[i]) : millis(values[i]));
+        }
+        return sb.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.US, "%.1fms", nanos / 1_000_000.0);
+    }
+
+    private static String bytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format(Locale.US, "%.1f KB", bytes / 1024.0);
+        if (bytes < 1024L * 1024 * 1024) return String.format(Locale.US, "%.1f MB", bytes / (1024.0 * 1024));
+        return String.format(Locale.US, "%.2f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.camerainterceptor.analyzer;
+
+import com.example.camerainterceptor.core.CaptureFormat;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cursor over the records of one memory-mapped capture segment.
+ *
+ * Only the fixed fields and the offsets of url and detail are read per
+ * record; headers and bodies are skipped without being touched, so pages
+ * holding only body bytes are never faulted in. Strings are decoded on
+ * request. A record that does not fit the file or its declared length ends
+ * the segment, as a crash mid-write would.
+ */
+final class SegmentReader {
+    private final MappedByteBuffer segment;
+    private final byte[] scratch;
+    final short version;
+    final long createdMillis;
+
+    // Current record
+    int kind;
+    int flags;
+    long timeMillis;
+    long exchange;
+    int status;
+    long length;
+    private int next;
+    private int urlOffset;
+    private int urlLength;
+    private int detailOffset;
+    private int detailLength;
+
+    private SegmentReader(MappedByteBuffer segment, byte[] scratch) {
+        this.segment = segment;
+        this.scratch = scratch;
+        this.version = segment.getShort(4);
+        this.createdMillis = segment.getLong(8);
+        this.next = segment.getShort(6);
+    }
+
+    /** Maps file read-only; scratch must hold CaptureFormat.MAX_STRING_BYTES. */
+    static SegmentReader open(File file, byte[] scratch) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size < CaptureFormat.SEGMENT_HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a capture segment (" + size + " bytes)");
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (segment.getInt(0) != CaptureFormat.MAGIC) {
+                throw new IOException(file + " is not a capture segment");
+            }
+            short version = segment.getShort(4);
+            if (version < 2 || version > CaptureFormat.VERSION) {
+                throw new IOException(file + " has unsupported format version " + version);
+            }
+            return new SegmentReader(segment, scratch);
+        }
+    }
+
+    int size() {
+        return segment.capacity();
+    }
+
+    /** Moves to the next record; false at the end of the written part. */
+    boolean next() {
+        int limit = segment.capacity();
+        if (next < 0 || limit - next < 4) return false;
+        int recordLength = segment.getInt(next);
+        int start = next + 4;
+        if (recordLength < CaptureFormat.RECORD_FIXED_SIZE || recordLength > limit - start) return false;
+        int end = start + recordLength;
+
+        kind = segment.get(start);
+        flags = segment.get(start + 1) & 0xFF;
+        timeMillis = segment.getLong(start + 2);
+        exchange = segment.getLong(start + 18);
+        status = segment.getInt(start + 26);
+        length = segment.getLong(start + 30);
+
+        int p = start + CaptureFormat.RECORD_FIXED_SIZE;
+        p = skipString(p, end);                   // package
+        urlOffset = p + 2;
+        urlLength = p < 0 ? 0 : stringLength(p);
+        p = skipString(p, end);                   // url
+        p = skipString(p, end);                   // method
+        p = skipString(p, end);                   // source
+        detailOffset = p + 2;
+        detailLength = p < 0 ? 0 : stringLength(p);
+        p = skipString(p, end);                   // detail
+        if (p < 0) {
+            next = -1;
+            return false;
+        }
+        next = end;
+        return true;
+    }
+
+    String url() {
+        return string(urlOffset, urlLength);
+    }
+
+    /** Value of a "name=number" pair in detail (EXCHANGE timings), or -1. */
+    long detailValue(String name) {
+        int end = detailOffset + detailLength;
+        int n = name.length();
+        for (int i = detailOffset; i + n < end; i++) {
+            if (i > detailOffset && segment.get(i - 1) != ' ') continue;
+            if (!matches(i, name) || segment.get(i + n) != '=') continue;
+            long value = 0;
+            boolean negative = false;
+            int j = i + n + 1;
+            if (j < end && segment.get(j) == '-') {
+                negative = true;
+                j++;
+            }
+            for (; j < end; j++) {
+                byte b = segment.get(j);
+                if (b < '0' || b > '9') break;
+                value = value * 10 + (b - '0');
+            }
+            return negative ? -value : value;
+        }
+        return -1;
+    }
+
+    private boolean matches(int offset, String name) {
+        for (int k = 0; k < name.length(); k++) {
+            if (segment.get(offset + k) != name.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    private int stringLength(int offset) {
+        return segment.getShort(offset) & 0xFFFF;
+    }
+
+    // Offset after the str at offset, or -1 if it overruns the record
+    private int skipString(int offset, int end) {
+        if (offset < 0 || end - offset < 2) return -1;
+        int after = offset + 2 + stringLength(offset);
+        return after <= end ? after : -1;
+    }
+
+    private String string(int offset, int length) {
+        if (length == 0) return "";
+        for (int i = 0; i < length; i++) scratch[i] = segment.get(offset + i);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.camerainterceptor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cached reflective call of a method by name and parameter types.
+ *
+ * XposedHelpers.callMethod looks the method up by name on every call. An
+ * Accessor resolves it once per concrete receiver class (and so once per
+ * class loader) and then only pays for Method.invoke. The most recently
+ * used class is checked first, which covers the usual monomorphic call site
+ * without a map lookup.
+ */
+final class Accessor {
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final String name;
+    private final Class<?>[] parameterTypes;
+    private final ConcurrentHashMap<Class<?>, Method> methods = new ConcurrentHashMap<>();
+    private volatile Resolved last;
+
+    private static final class Resolved {
+        final Class<?> type;
+        final Method method;
+
+        Resolved(Class<?> type, Method method) {
+            this.type = type;
+            this.method = method;
+        }
+    }
+
+    Accessor(String name, Class<?>... parameterTypes) {
+        this.name = name;
+        this.parameterTypes = parameterTypes;
+    }
+
+    Object get(Object target) throws ReflectiveOperationException {
+        return invoke(target, NO_ARGS);
+    }
+
+    Object invoke(Object target, Object... args) throws ReflectiveOperationException {
+        try {
+            return resolve(target.getClass()).invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    private Method resolve(Class<?> type) throws NoSuchMethodException {
+        Resolved cached = last;
+        if (cached != null && cached.type == type) return cached.method;
+
+        Method method = methods.get(type);
+        if (method == null) {
+            method = find(type);
+            methods.put(type, method);
+        }
+        last = new Resolved(type, method);
+        return method;
+    }
+
+    private Method find(Class<?> type) throws NoSuchMethodException {
+        // Walk the hierarchy so non-public implementation classes still resolve
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Method m : c.getDeclaredMethods()) {
+                if (m.getName().equals(name) && Arrays.equals(m.getParameterTypes(), parameterTypes)) {
+                    m.setAccessible(true);
+                    return m;
+                }
+            }
+        }
+        Method m = type.getMethod(name, parameterTypes);
+        m.setAccessible(true);
+        return m;
+    }
+
+    @Override
+    public String toString() {
+        return "Accessor[" + name + "]";
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.camerainterceptor;
+
+import android.util.Log;
+import com.example.camerainterceptor.core.CaptureBuffer;
+import com.example.camerainterceptor.core.CapturingInputStream;
+import com.example.camerainterceptor.core.Exchange;
+import com.example.camerainterceptor.core.HookMetrics;
+import com.example.camerainterceptor.core.WeakIdentityMap;
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XposedBridge;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Captures Apache HttpClient response bodies as the app reads them, without
+ * replacing the response's entity.
+ *
+ * The app keeps the entity HttpClient made, so its concrete type (such as
+ * BasicManagedEntity) and its connection handling are unchanged. Instead,
+ * like ConnectionClasses, each entity class is inspected once per process
+ * when a tracked response first carries it: its hierarchy is walked and
+ * every concrete declaration of getContent(), writeTo(), consumeContent(),
+ * releaseConnection() and abortConnection() is hooked once. For other
+ * entities of those classes, such as request entities, the hooks cost one
+ * lookup.
+ *
+ * The first getContent() stream is wrapped in a CapturingInputStream; a
+ * writeTo() before that is teed into the buffer instead. Nothing is read
+ * ahead of the app. Consuming, releasing or aborting the entity completes
+ * the exchange with whatever was captured by then. An entity the app drops
+ * without any of that is forgotten with it, like an unread connection.
+ */
+final class ApacheEntities {
+    private static final String TAG = "CameraNetworkInterceptor";
+    // Ways the app discards or gives back a response entity, by the method's name
+    private static final String[] COMPLETING = {"consumeContent", "releaseConnection", "abortConnection"};
+
+    private final WeakIdentityMap<Object, Body> bodies = new WeakIdentityMap<>();
+    private final Map<Class<?>, Boolean> seen = new ConcurrentHashMap<>();
+    // Guarded by this
+    private final Set<Method> hooked = new HashSet<>();
+    private final XC_MethodHook contentHook;
+    private final XC_MethodHook writeHook;
+    private final XC_MethodHook completeHook;
+
+    ApacheEntities(HookMetrics.Hook metric) {
+        contentHook = new TimedHook(metric) {
+            @Override
+            protected void after(MethodHookParam param) throws Throwable {
+                if (param.hasThrowable()) return;
+                Body body = bodies.get(param.thisObject);
+                Object content = param.getResult();
+                if (body != null && content instanceof InputStream) {
+                    param.setResult(body.stream((InputStream) content));
+                }
+            }
+        };
+        writeHook = new TimedHook(metric) {
+            @Override
+            protected void before(MethodHookParam param) throws Throwable {
+                Body body = bodies.get(param.thisObject);
+                if (body == null || !(param.args[0] instanceof OutputStream)) return;
+                OutputStream tee = body.tee((OutputStream) param.args[0]);
+                if (tee != null) param.args[0] = tee;
+            }
+
+            @Override
+            protected void after(MethodHookParam param) throws Throwable {
+                // Also after a failed write, with what got through; nested overrides see the same tee
+                Body body = bodies.get(param.thisObject);
+                if (body != null && body.isTee(param.args[0])) complete(param.thisObject);
+            }
+        };
+        completeHook = new TimedHook(metric) {
+            @Override
+            protected void after(MethodHookParam param) throws Throwable {
+                complete(param.thisObject);
+            }
+        };
+    }
+
+    /**
+     * Captures the body of a response entity into capture and reports it to
+     * listener once; hooks the entity's class unless that was already done.
+     */
+    void track(Object entity, Exchange exchange, CaptureBuffer capture, CapturingInputStream.Listener listener) {
+        discover(entity.getClass());
+        bodies.putIfAbsent(entity, new Body(exchange, capture, listener));
+    }
+
+    private void complete(Object entity) {
+        Body body = bodies.remove(entity);
+        if (body != null) body.complete();
+    }
+
+    private void discover(Class<?> entityClass) {
+        if (seen.containsKey(entityClass)) return;
+        synchronized (this) {
+            if (seen.containsKey(entityClass)) return;
+            StringBuilder summary = new StringBuilder();
+            for (Class<?> c = entityClass; c != null && c != Object.class; c = c.getSuperclass()) {
+                hook(c, "getContent", contentHook, summary);
+                hook(c, "writeTo", writeHook, summary, OutputStream.class);
+                for (String name : COMPLETING) {
+                    hook(c, name, completeHook, summary);
+                }
+            }
+            seen.put(entityClass, Boolean.TRUE);
+            Log.d(TAG, "📦 Apache entity class " + entityClass.getName()
+                + (summary.length() > 0 ? ", hooked" + summary : ", nothing new to hook"));
+        }
+    }
+
+    private void hook(Class<?> c, String name, XC_MethodHook callback, StringBuilder summary,
+                      Class<?>... parameterTypes) {
+        Method method;
+        try {
+            method = c.getDeclaredMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return;
+        }
+        if (Modifier.isAbstract(method.getModifiers()) || !hooked.add(method)) return;
+        try {
+            XposedBridge.hookMethod(method, callback);
+            summary.append(' ').append(c.getSimpleName()).append('.').append(name);
+        } catch (Throwable t) {
+            Log.e(TAG, "Error hooking " + c.getName() + "." + name + ": " + t.getMessage());
+        }
+    }
+
+    // Capture state of one tracked entity; it is read either as a stream or through writeTo()
+    private static final class Body {
+        private final Exchange exchange;
+        private final CaptureBuffer capture;
+        private final CapturingInputStream.Listener listener;
+        private InputStream original;
+        private CapturingInputStream stream;
+        private Tee tee;
+        private boolean done;
+
+        Body(Exchange exchange, CaptureBuffer capture, CapturingInputStream.Listener listener) {
+            this.exchange = exchange;
+            this.capture = capture;
+            this.listener = listener;
+        }
+
+        // The stream to give the app for content; the same wrapper each time the entity returns it
+        synchronized InputStream stream(InputStream content) {
+            if (stream == null) {
+                if (done || tee != null) return content;
+                original = content;
+                stream = new CapturingInputStream(content, capture, exchange, listener);
+            }
+            return content == original || content == stream ? stream : content;
+        }
+
+        // A tee over out for the first writeTo(), or null once the body is read another way
+        synchronized OutputStream tee(OutputStream out) {
+            if (done || stream != null || tee != null) return null;
+            tee = new Tee(out, capture);
+            return tee;
+        }
+
+        synchronized boolean isTee(Object out) {
+            return tee != null && out == tee;
+        }
+
+        synchronized void complete() {
+            if (done) return;
+            done = true;
+            if (stream != null) {
+                // Reported already if the app read to the end or closed it
+                stream.finish();
+                return;
+            }
+            if (tee != null) tee.capturing = false;
+            exchange.markClose();
+            // No stream is replaced here, so a rewrite from the listener has nowhere to go
+            listener.onResponseBody(capture);
+        }
+    }
+
+    // Copies what writeTo() hands the app's stream into the capture buffer
+    private static final class Tee extends FilterOutputStream {
+        private final CaptureBuffer capture;
+        // Cleared once the buffer is reported; an override writing after the wrapped entity is not captured
+        volatile boolean capturing = true;
+
+        Tee(OutputStream out, CaptureBuffer capture) {
+            super(out);
+            this.capture = capture;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (capturing) capture.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (capturing) capture.write(b, off, len);
+        }
+    }
+}
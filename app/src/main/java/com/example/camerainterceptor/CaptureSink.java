@@ -0,0 +1,323 @@
+package com.example.camerainterceptor;
+
+import android.net.LocalServerSocket;
+import android.net.LocalSocket;
+import android.net.LocalSocketAddress;
+import android.os.Process;
+import android.util.Log;
+import com.example.camerainterceptor.core.CaptureEvent;
+import com.example.camerainterceptor.core.CaptureStore;
+import com.example.camerainterceptor.core.StreamingBody;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Where a process's writer thread sends capture records: one writer per
+ * package, whichever of the app's processes gets there first.
+ *
+ * handleLoadPackage runs in every process of a multi-process app. The
+ * process holding the package's lock file owns its capture segments and
+ * listens on an abstract local socket; the others encode their records in
+ * the capture format and stream them there in batches, which the owner's
+ * writer thread appends to the same segments. Only processes of the app's
+ * own uid are accepted, and their exchange ids are offset by their pid so
+ * they stay distinct in the shared file.
+ *
+ * If the owner dies, the lock is free again: the first process to notice
+ * takes it over, the rest reconnect to it. Records that cannot be
+ * delivered go to a per-process store ("<process>-*.cap") instead, which
+ * the analyzer reads alongside the package's segments. Streamed response
+ * bodies are written to files in a per-process directory
+ * ("<process>-spill") and moved into the blobs of whichever store this
+ * process writes, so their records are never sent to the owner.
+ *
+ * Everything but the owner's socket threads runs on the writer thread.
+ */
+final class CaptureSink {
+    private static final String TAG = "CameraNetworkInterceptor";
+    // Records for the owner are sent in batches of up to this size; bodies are cut to fit one
+    private static final int BATCH_BYTES = 1024 * 1024;
+    // Batches received but not yet written; other processes block on the socket while it is full
+    private static final int RECEIVED_BATCHES = 16;
+    // Between attempts to reach or become the owner after losing it
+    private static final long RECONNECT_NANOS = 5_000_000_000L;
+
+    // A batch from another process, with the offset for its exchange ids
+    private static final class Batch {
+        final long exchangeBase;
+        final ByteBuffer records;
+
+        Batch(long exchangeBase, byte[] records) {
+            this.exchangeBase = exchangeBase;
+            this.records = ByteBuffer.wrap(records);
+        }
+    }
+
+    private final File directory;
+    private final String packageName;
+    private final String processName;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final String socketName;
+    private final ArrayBlockingQueue<Batch> received = new ArrayBlockingQueue<>(RECEIVED_BATCHES);
+
+    private boolean elected;
+    // The package's store once this process owns it; before that, the per-process fallback
+    private CaptureStore store;
+    private boolean owner;
+    // Referenced for as long as the process lives; closing or collecting the channel drops the lock
+    private FileChannel lockChannel;
+    private LocalSocket socket;
+    private DataOutputStream toOwner;
+    private ByteBuffer batch;
+    private long reconnectNanos;
+    private boolean lastBodyRepeated;
+    private File spillDirectory;
+    private long forwarded;
+    private long receivedRecords;
+    private long fallbackRecords;
+
+    CaptureSink(File directory, String packageName, String processName, int segmentSize, int maxSegments) {
+        this.directory = directory;
+        this.packageName = packageName;
+        this.processName = processName != null ? processName : packageName;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.socketName = "camera-interceptor." + packageName + "." + Process.myUid();
+    }
+
+    void append(CaptureEvent e) throws IOException {
+        if (!elected) elect();
+        lastBodyRepeated = false;
+        // A streamed body's file is only in this process's reach, so its record stays here too
+        if (!owner && socket != null && StreamingBody.of(e.body) == null) {
+            if (store().encode(e, batch)) {
+                forwarded++;
+                return;
+            }
+            // The batch is full; an empty one takes any record, as bodies are cut to fit
+            flush();
+            if (socket != null && store().encode(e, batch)) {
+                forwarded++;
+                return;
+            }
+        }
+        CaptureStore target = owner ? store : store();
+        target.append(e);
+        lastBodyRepeated = target.lastBodyRepeated();
+        if (!owner) fallbackRecords++;
+    }
+
+    /** Whether the last appended body was already stored; unknown, so false, for forwarded ones. */
+    boolean lastBodyRepeated() {
+        return lastBodyRepeated;
+    }
+
+    /**
+     * Sends the batch to the owner, or on the owner appends what other
+     * processes sent. Called once per writer loop; returns the number of
+     * batches received.
+     */
+    int flush() throws IOException {
+        if (!elected) return 0;
+        if (owner) return appendReceived();
+        if (socket == null && System.nanoTime() - reconnectNanos >= 0) elect();
+        if (batch == null || batch.position() == 0) return 0;
+        batch.flip();
+        if (socket != null) {
+            boolean sent = send();
+            if (!sent) {
+                // The lock may be free now; if this process takes over, the batch goes into the package's
+                // store. Otherwise the new owner gets it once more, so one broken connection does not
+                // split the capture.
+                elect();
+                sent = socket != null && send();
+            }
+            if (sent) return 0;
+        }
+        CaptureStore target = owner ? store : store();
+        while (batch.hasRemaining()) {
+            target.appendRecord(batch, 0);
+            if (!owner) fallbackRecords++;
+        }
+        batch.clear();
+        return 0;
+    }
+
+    // Sends the flipped batch to the owner and clears it; on failure drops the connection and keeps the batch
+    private boolean send() {
+        try {
+            toOwner.writeInt(batch.remaining());
+            toOwner.write(batch.array(), 0, batch.remaining());
+            toOwner.flush();
+            batch.clear();
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "📦 Lost the capture owner of " + packageName + ": " + e.getMessage());
+            disconnect();
+            return false;
+        }
+    }
+
+    /** Directory for the files of bodies streamed in this process; emptied of earlier runs' files on first use. */
+    File spillDirectory() {
+        if (spillDirectory == null) {
+            spillDirectory = new File(directory, processFileName() + "-spill");
+            File[] leftovers = spillDirectory.listFiles();
+            if (leftovers != null) {
+                for (File file : leftovers) file.delete();
+            }
+        }
+        return spillDirectory;
+    }
+
+    void appendSummary(StringBuilder out) {
+        if (store != null) store.appendSummary(out);
+        if (forwarded > 0) out.append("📦 ").append(forwarded).append(" records sent to the capture owner\n");
+        if (receivedRecords > 0) out.append("📦 ").append(receivedRecords).append(" records from other processes\n");
+        if (fallbackRecords > 0) {
+            out.append("📦 ").append(fallbackRecords).append(" records in this process's own capture files\n");
+        }
+    }
+
+    void close() {
+        disconnect();
+        if (store != null) store.close();
+    }
+
+    // Takes the package's lock if it is free, otherwise connects to the process holding it
+    private void elect() {
+        elected = true;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Cannot create " + directory);
+            FileChannel channel = new RandomAccessFile(new File(directory, packageName + ".lock"), "rw").getChannel();
+            // Held until this process dies; the kernel releases it then
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                lockChannel = channel;
+                becomeOwner();
+                return;
+            }
+            channel.close();
+        } catch (IOException e) {
+            Log.w(TAG, "📦 Cannot lock the capture files of " + packageName + ": " + e.getMessage());
+        }
+        connect();
+    }
+
+    private void becomeOwner() {
+        owner = true;
+        if (store != null) store.close();
+        store = new CaptureStore(directory, packageName, segmentSize, maxSegments);
+        try {
+            final LocalServerSocket server = new LocalServerSocket(socketName);
+            Thread acceptor = new Thread(() -> serve(server), "CameraInterceptor-capture-owner");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            Log.d(TAG, "📦 " + processName + " writes the capture files of " + packageName);
+        } catch (IOException e) {
+            // Other processes fall back to their own files
+            Log.w(TAG, "📦 Capture owner socket unavailable in " + processName + ": " + e.getMessage());
+        }
+    }
+
+    private void connect() {
+        LocalSocket candidate = new LocalSocket();
+        try {
+            candidate.connect(new LocalSocketAddress(socketName));
+            socket = candidate;
+            toOwner = new DataOutputStream(candidate.getOutputStream());
+            if (batch == null) batch = ByteBuffer.allocate(BATCH_BYTES);
+            Log.d(TAG, "📦 " + processName + " sends its captures to the owner of " + packageName);
+        } catch (IOException e) {
+            closeQuietly(candidate);
+            reconnectNanos = System.nanoTime() + RECONNECT_NANOS;
+        }
+    }
+
+    private void disconnect() {
+        if (socket == null) return;
+        closeQuietly(socket);
+        socket = null;
+        toOwner = null;
+        reconnectNanos = System.nanoTime() + RECONNECT_NANOS;
+    }
+
+    // The per-process store for records the owner cannot take; only used to encode while connected
+    private CaptureStore store() {
+        if (store == null) {
+            store = new CaptureStore(directory, processFileName(), segmentSize, maxSegments);
+        }
+        return store;
+    }
+
+    private String processFileName() {
+        return processName.equals(packageName) ? packageName + ":main" : processName;
+    }
+
+    private int appendReceived() throws IOException {
+        int batches = 0;
+        Batch next;
+        while ((next = received.poll()) != null) {
+            while (next.records.hasRemaining()) {
+                store.appendRecord(next.records, next.exchangeBase);
+                receivedRecords++;
+            }
+            batches++;
+        }
+        return batches;
+    }
+
+    private void serve(LocalServerSocket server) {
+        while (true) {
+            final LocalSocket client;
+            try {
+                client = server.accept();
+            } catch (IOException e) {
+                Log.w(TAG, "📦 Capture owner stopped accepting: " + e.getMessage());
+                return;
+            }
+            Thread reader = new Thread(() -> receive(client), "CameraInterceptor-capture-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    private void receive(LocalSocket client) {
+        try {
+            // Only the app's own processes may write into its capture files
+            if (client.getPeerCredentials().getUid() != Process.myUid()) return;
+            long exchangeBase = (long) client.getPeerCredentials().getPid() << 32;
+            DataInputStream in = new DataInputStream(client.getInputStream());
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > BATCH_BYTES) throw new IOException("Bad batch size " + length);
+                byte[] records = new byte[length];
+                in.readFully(records);
+                received.put(new Batch(exchangeBase, records));
+            }
+        } catch (EOFException e) {
+            // The other process exited
+        } catch (IOException | InterruptedException e) {
+            Log.w(TAG, "📦 Dropped a capture connection: " + e.getMessage());
+        } finally {
+            closeQuietly(client);
+        }
+    }
+
+    private static void closeQuietly(LocalSocket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.camerainterceptor;
+
+import android.util.Log;
+import com.example.camerainterceptor.core.CaptureConfig;
+import de.robv.android.xposed.XSharedPreferences;
+
+/**
+ * The current CaptureConfig of a hooked process, read from the settings
+ * MainActivity writes.
+ *
+ * The preferences file is read once in handleLoadPackage and then polled
+ * for changes by the writer thread; a changed file is parsed into a new
+ * snapshot, which replaces the old one with a single volatile write. Hooks
+ * only call current(), so they never do I/O or take a lock for settings.
+ * If the file cannot be read (module not enabled for preferences, or not
+ * written yet), the defaults apply.
+ */
+final class ConfigSource {
+    private static final String TAG = "CameraNetworkInterceptor";
+    static final String PREFS_NAME = "capture_settings";
+    private static final long POLL_INTERVAL_NANOS = 2_000_000_000L; // 2s
+
+    private volatile CaptureConfig current = CaptureConfig.DEFAULT;
+    // Only touched by load() and then the writer thread
+    private XSharedPreferences prefs;
+    private long lastPollNanos;
+
+    CaptureConfig current() {
+        return current;
+    }
+
+    /** Reads the settings once per process; later calls do nothing. */
+    synchronized void load() {
+        if (prefs != null) return;
+        try {
+            prefs = new XSharedPreferences(BuildConfig.APPLICATION_ID, PREFS_NAME);
+            publish(CaptureConfig.parse(prefs.getAll()));
+        } catch (Throwable t) {
+            Log.w(TAG, "Capture settings unavailable, using defaults: " + t.getMessage());
+        }
+        lastPollNanos = System.nanoTime();
+    }
+
+    /** Picks up changed settings; writer thread only, at most every POLL_INTERVAL_NANOS. */
+    void refresh(long nowNanos) {
+        if (nowNanos - lastPollNanos < POLL_INTERVAL_NANOS) return;
+        lastPollNanos = nowNanos;
+        XSharedPreferences source = prefs;
+        if (source == null) return;
+        try {
+            if (!source.hasFileChanged()) return;
+            source.reload();
+            publish(CaptureConfig.parse(source.getAll()));
+        } catch (Throwable t) {
+            Log.w(TAG, "Failed to reload capture settings: " + t.getMessage());
+        }
+    }
+
+    private void publish(CaptureConfig config) {
+        // Keep the old snapshot, and its policy state, if nothing actually changed
+        if (config.sameSettings(current)) return;
+        current = config;
+        Log.d(TAG, "⚙️ Capture settings: " + config);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.camerainterceptor;
+
+import android.util.Log;
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XposedBridge;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URLConnection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hooks connect/getOutputStream/getInputStream on the HttpURLConnection
+ * classes this process actually uses.
+ *
+ * java.net.HttpURLConnection does not implement these methods; on Android
+ * URL.openConnection() returns platform classes such as
+ * com.android.okhttp.internal.huc.HttpURLConnectionImpl, or for HTTPS a
+ * wrapper delegating to one, and only their own methods run. Each class is
+ * inspected once per process: its hierarchy up to URLConnection is walked
+ * and every concrete declaration of the three methods is hooked once.
+ */
+final class ConnectionClasses {
+    private static final String TAG = "CameraNetworkInterceptor";
+
+    private final Map<Class<?>, Boolean> seen = new ConcurrentHashMap<>();
+    // Guarded by this
+    private final Set<Method> hooked = new HashSet<>();
+    private volatile XC_MethodHook connectHook;
+    private volatile XC_MethodHook outputHook;
+    private volatile XC_MethodHook inputHook;
+
+    /**
+     * Sets the hooks to install; returns false if they were already set in
+     * this process, in which case the given hooks are not used.
+     */
+    synchronized boolean install(XC_MethodHook connect, XC_MethodHook output, XC_MethodHook input) {
+        if (connectHook != null) return false;
+        outputHook = output;
+        inputHook = input;
+        connectHook = connect;
+        return true;
+    }
+
+    /** Hooks the class of a connection unless that was already done; cheap once it was. */
+    void discover(Class<?> connectionClass) {
+        if (seen.containsKey(connectionClass) || connectHook == null) return;
+        synchronized (this) {
+            if (seen.containsKey(connectionClass)) return;
+            StringBuilder summary = new StringBuilder();
+            for (Class<?> c = connectionClass; c != null && c != URLConnection.class; c = c.getSuperclass()) {
+                hook(c, "connect", connectHook, summary);
+                hook(c, "getOutputStream", outputHook, summary);
+                hook(c, "getInputStream", inputHook, summary);
+            }
+            seen.put(connectionClass, Boolean.TRUE);
+            Log.d(TAG, "🔌 Connection class " + connectionClass.getName()
+                + (summary.length() > 0 ? ", hooked" + summary : ", nothing new to hook"));
+        }
+    }
+
+    private void hook(Class<?> c, String name, XC_MethodHook callback, StringBuilder summary) {
+        Method method;
+        try {
+            method = c.getDeclaredMethod(name);
+        } catch (NoSuchMethodException e) {
+            return;
+        }
+        if (Modifier.isAbstract(method.getModifiers()) || !hooked.add(method)) return;
+        try {
+            XposedBridge.hookMethod(method, callback);
+            summary.append(' ').append(c.getSimpleName()).append('.').append(name);
+        } catch (Throwable t) {
+            Log.e(TAG, "Error hooking " + c.getName() + "." + name + ": " + t.getMessage());
+        }
+    }
+}
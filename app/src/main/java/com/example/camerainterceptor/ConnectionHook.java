@@ -0,0 +1,77 @@
+package com.example.camerainterceptor;
+
+import com.example.camerainterceptor.core.HookMetrics;
+import java.net.HttpURLConnection;
+
+/**
+ * TimedHook for connect/getOutputStream/getInputStream of a concrete
+ * HttpURLConnection class that only handles the app's own calls.
+ *
+ * Platform connections call each other while serving one call: the HTTPS
+ * connection delegates to an inner HTTP connection, and getOutputStream()
+ * calls connect(). Every class in that chain is hooked, so without this the
+ * exchange would be captured once per object. While a hooked call is in
+ * progress on this thread, calls on other connections are skipped, as are
+ * nested calls of the same method on the same connection (an override
+ * calling super). Nested calls of another method on the same connection
+ * still count.
+ */
+abstract class ConnectionHook extends TimedHook {
+    static final int CONNECT = 1;
+    static final int OUTPUT = 2;
+    static final int INPUT = 4;
+
+    // The connection the app called on this thread, and which of its methods are in progress
+    private static final class Frame {
+        Object connection;
+        int depth;
+        int active;
+    }
+
+    private static final ThreadLocal<Frame> FRAME = new ThreadLocal<Frame>() {
+        @Override
+        protected Frame initialValue() {
+            return new Frame();
+        }
+    };
+
+    private final int method;
+
+    ConnectionHook(HookMetrics.Hook metric, int method) {
+        super(metric);
+        this.method = method;
+    }
+
+    @Override
+    protected final void before(MethodHookParam param) throws Throwable {
+        Frame frame = FRAME.get();
+        boolean own = false;
+        try {
+            if (frame.depth++ == 0) frame.connection = param.thisObject;
+            own = frame.connection == param.thisObject && (frame.active & method) == 0;
+            if (own) frame.active |= method;
+        } finally {
+            // Tells after() whether this call was handled; always pushed so the frames stay balanced
+            HookFrames.current().push(own ? Boolean.TRUE : Boolean.FALSE);
+        }
+        if (own) beforeCall(param, (HttpURLConnection) param.thisObject);
+    }
+
+    @Override
+    protected final void after(MethodHookParam param) throws Throwable {
+        Frame frame = FRAME.get();
+        boolean own = HookFrames.current().pop() == Boolean.TRUE;
+        try {
+            if (own) afterCall(param, (HttpURLConnection) param.thisObject);
+        } finally {
+            if (own) frame.active &= ~method;
+            if (--frame.depth == 0) frame.connection = null;
+        }
+    }
+
+    protected void beforeCall(MethodHookParam param, HttpURLConnection connection) throws Throwable {
+    }
+
+    protected void afterCall(MethodHookParam param, HttpURLConnection connection) throws Throwable {
+    }
+}
@@ -0,0 +1,592 @@
+package com.example.camerainterceptor;
+
+import android.util.Log;
+import com.example.camerainterceptor.core.BodyDecoder;
+import com.example.camerainterceptor.core.CaptureBuffer;
+import com.example.camerainterceptor.core.CaptureEvent;
+import com.example.camerainterceptor.core.CapturePolicy;
+import com.example.camerainterceptor.core.ContentCoding;
+import com.example.camerainterceptor.core.EndpointStats;
+import com.example.camerainterceptor.core.EventRing;
+import com.example.camerainterceptor.core.Exchange;
+import com.example.camerainterceptor.core.HeaderFormat;
+import com.example.camerainterceptor.core.HookMetrics;
+import com.example.camerainterceptor.core.JsonFieldExtractor;
+import com.example.camerainterceptor.core.StreamingBody;
+import com.example.camerainterceptor.core.UrlAggregator;
+import de.robv.android.xposed.XposedBridge;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background side of the logging pipeline.
+ *
+ * Hooks call post(), which only fills a preallocated slot in the EventRing.
+ * A single daemon thread drains the ring in batches, does all formatting
+ * (header strings, body previews, JSON field extraction, inflating and
+ * charset-decoding bodies the app received compressed) and flushes the batch to logcat
+ * and the Xposed log with as few calls as possible. When a CaptureSink is
+ * attached, every event is also appended to the capture files as a binary
+ * record, directly or through the process that owns them.
+ *
+ * Parts of streamed response bodies are appended to the body's file as
+ * they arrive; only about one RESPONSE_PROGRESS event per second and body
+ * is stored and logged, with the bytes received so far and the throughput.
+ *
+ * Finished exchanges feed per-endpoint latency histograms. After every
+ * drain the writer reports its backlog to the current CapturePolicy, which
+ * tightens capture while the ring fills up, and every URL_WINDOW_NANOS it
+ * logs the URL constructions the policy aggregated. The writer is also the
+ * thread that polls the ConfigSource for changed settings. About once a minute, if any hook
+ * ran since the last time, the writer also logs the per-hook HookMetrics,
+ * per-endpoint latency and capture policy summaries and hands them to the
+ * MetricsReporter.
+ */
+final class EventWriter implements Runnable {
+    private static final String TAG = "CameraNetworkInterceptor";
+    private static final int BATCH_SIZE = 64;
+    private static final long IDLE_WAIT_NANOS = 20_000_000L; // 20ms
+    // Logcat truncates entries around 4KB, so flush before that
+    private static final int MAX_LOG_CHUNK = 3800;
+    // Bodies are logged up to this size; the full capture is in the capture store
+    private static final int MAX_LOGGED_BODY_BYTES = 2048;
+    // Compressed bodies are inflated up to this size for logging and JSON field extraction
+    private static final int MAX_INFLATED_BYTES = 256 * 1024;
+    private static final long SUMMARY_INTERVAL_NANOS = 60_000_000_000L; // 60s
+    private static final long URL_WINDOW_NANOS = 10_000_000_000L; // 10s
+
+    private final EventRing ring;
+    private final HookMetrics metrics;
+    private final EndpointStats endpoints;
+    private final ConfigSource config;
+    // Policy of the settings snapshot seen last; its URL window is drained when settings change
+    private CapturePolicy policy;
+    private final UrlAggregator.Sink repeatedUrls = (url, count) ->
+        line("🔁 " + count + " more construction(s) in the last " + URL_WINDOW_NANOS / 1_000_000_000L + "s: ", url);
+    private final JsonFieldExtractor jsonFields;
+    private final byte[] bodyPreview = new byte[MAX_LOGGED_BODY_BYTES];
+    private final BodyDecoder decoder = new BodyDecoder(MAX_INFLATED_BYTES, MAX_LOGGED_BODY_BYTES);
+    // Compressed capture of the current event, once inflated into the decoder
+    private CaptureBuffer inflated;
+    // Body of the current event if the capture store already had it; logged as a one-line repeat
+    private Object repeatedBody;
+    // Time since capture started of the streamed body the current progress event belongs to
+    private long streamElapsedNanos;
+    // Streamed bodies with an open file, checked after every drain for ones abandoned or left idle
+    private final List<StreamingBody> openBodies = new ArrayList<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final StringBuilder logBuffer = new StringBuilder(MAX_LOG_CHUNK + 256);
+    private final StringBuilder xposedBuffer = new StringBuilder(512);
+    private long reportedDrops;
+    private CaptureSink sink;
+    private MetricsReporter reporter;
+    private long lastSummaryNanos = System.nanoTime();
+    private long summarizedInvocations;
+    private long lastUrlWindowNanos = System.nanoTime();
+
+    EventWriter(int capacity, HookMetrics metrics, EndpointStats endpoints, ConfigSource config,
+                JsonFieldExtractor jsonFields) {
+        this.ring = new EventRing(capacity);
+        this.metrics = metrics;
+        this.endpoints = endpoints;
+        this.config = config;
+        this.jsonFields = jsonFields;
+    }
+
+    /**
+     * Starts the writer thread once per process. The sink and reporter may
+     * be null, in which case events and metrics only go to the logs.
+     */
+    void start(CaptureSink sink, MetricsReporter reporter) {
+        if (started.compareAndSet(false, true)) {
+            this.sink = sink;
+            this.reporter = reporter;
+            Thread thread = new Thread(this, "CameraInterceptor-writer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+    }
+
+    /**
+     * Records an event for the writer thread. Never blocks; returns false if
+     * the ring was full and the event was dropped. exchange is the id of the
+     * Exchange the event belongs to, or 0.
+     */
+    boolean post(HookMetrics.Hook hook, int kind, long exchange, String source, String packageName,
+                 String url, String method, String detail, int status, long length, Object headers,
+                 Object body) {
+        CaptureEvent event = ring.claim();
+        if (event == null) {
+            hook.recordDrop();
+            return false;
+        }
+        event.hook = hook;
+        event.kind = kind;
+        event.exchange = exchange;
+        event.timeMillis = System.currentTimeMillis();
+        event.timeNanos = System.nanoTime();
+        event.source = source;
+        event.packageName = packageName;
+        event.url = url;
+        event.method = method;
+        event.detail = detail;
+        event.status = status;
+        event.length = length;
+        event.headers = headers;
+        event.body = body;
+        ring.publish(event);
+        return true;
+    }
+
+    boolean post(HookMetrics.Hook hook, int kind, String source, String packageName, String url,
+                 String method, String detail, int status, long length, Object headers, Object body) {
+        return post(hook, kind, 0, source, packageName, url, method, detail, status, length, headers, body);
+    }
+
+    boolean post(HookMetrics.Hook hook, int kind, String source, String packageName, String url,
+                 String method) {
+        return post(hook, kind, 0, source, packageName, url, method, null, 0, -1, null, null);
+    }
+
+    long dropped() {
+        return ring.dropped();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            int drained = 0;
+            CaptureEvent event;
+            while (drained < BATCH_SIZE && (event = ring.poll()) != null) {
+                try {
+                    if (event.body instanceof Exchange) {
+                        // Stored as text; the Exchange itself is not written to the capture file
+                        Exchange exchange = (Exchange) event.body;
+                        event.detail = exchange.timings();
+                        event.status = exchange.status();
+                        if (exchange.context() != null) event.source = exchange.context();
+                        endpoints.record(exchange);
+                    }
+                    if (event.kind != CaptureEvent.RESPONSE_MODIFIED) {
+                        // The rewritten copy is ours, not traffic we captured
+                        event.hook.recordCapturedBytes(capturedBytes(event.body));
+                    }
+                    StreamingBody streamed = StreamingBody.of(event.body);
+                    if (streamed == null || stream(event, streamed)) {
+                        // Stored first, so a body the capture files already had is logged as a repeat
+                        persist(event);
+                        format(event);
+                    }
+                } catch (Throwable t) {
+                    Log.w(TAG, "Failed to write event " + event.kind + ": " + t.getMessage());
+                } finally {
+                    if (event.body instanceof CaptureBuffer) {
+                        CaptureBuffer buffer = (CaptureBuffer) event.body;
+                        // Unless the capture store moved it, a streamed body's file goes with its last part
+                        if (buffer.streamed() != null) buffer.streamed().discard();
+                        buffer.release();
+                    }
+                    inflated = null;
+                    repeatedBody = null;
+                    ring.release(event);
+                }
+                drained++;
+                if (logBuffer.length() >= MAX_LOG_CHUNK) flushLog();
+            }
+
+            long drops = ring.dropped();
+            if (drops != reportedDrops) {
+                logBuffer.append("⚠️ Dropped ").append(drops - reportedDrops)
+                        .append(" events (ring full, ").append(drops).append(" total)\n");
+                reportedDrops = drops;
+            }
+            config.refresh(System.nanoTime());
+            CapturePolicy current = config.current().policy;
+            if (current != policy) {
+                if (policy != null) {
+                    policy.drainRepeatedUrls(repeatedUrls);
+                    current.continueFrom(policy);
+                }
+                policy = current;
+            }
+            policy.updateBacklog(ring.backlog(), ring.capacity(), drops);
+
+            discardAbandoned();
+            closeUrlWindow();
+            summarize();
+            flushLog();
+            flushXposed();
+            int received = flushSink();
+            if (drained == 0 && received == 0) {
+                LockSupport.parkNanos(IDLE_WAIT_NANOS);
+            }
+        }
+    }
+
+    private void summarize() {
+        long now = System.nanoTime();
+        if (now - lastSummaryNanos < SUMMARY_INTERVAL_NANOS) return;
+        lastSummaryNanos = now;
+        long invocations = metrics.totalInvocations();
+        if (invocations == summarizedInvocations) return;
+        summarizedInvocations = invocations;
+        logBuffer.append("📊 Hook overhead (").append(invocations).append(" hooked calls)\n");
+        metrics.appendSummary(logBuffer);
+        endpoints.appendSummary(logBuffer);
+        policy.appendSummary(logBuffer);
+        if (sink != null) sink.appendSummary(logBuffer);
+        if (reporter != null) reporter.report();
+    }
+
+    private void closeUrlWindow() {
+        long now = System.nanoTime();
+        if (now - lastUrlWindowNanos < URL_WINDOW_NANOS) return;
+        lastUrlWindowNanos = now;
+        policy.drainRepeatedUrls(repeatedUrls);
+    }
+
+    private static long capturedBytes(Object body) {
+        if (body instanceof byte[]) return ((byte[]) body).length;
+        if (body instanceof CaptureBuffer) return ((CaptureBuffer) body).size();
+        return 0;
+    }
+
+    // Writes a part of a streamed body to its file; returns whether the event is stored and logged
+    private boolean stream(CaptureEvent e, StreamingBody body) {
+        CaptureBuffer part = (CaptureBuffer) e.body;
+        File directory = sink != null ? sink.spillDirectory() : null;
+        if (e.kind != CaptureEvent.RESPONSE_PROGRESS) {
+            openBodies.remove(body);
+            body.finish(part, directory);
+            return true;
+        }
+        body.write(part, directory, e.timeNanos);
+        if (body.isOpen() && !openBodies.contains(body)) openBodies.add(body);
+        // The bytes are in the file now; the progress record only counts them
+        part.release();
+        e.body = null;
+        if (!body.progressDue(e.timeNanos)) return false;
+        streamElapsedNanos = body.elapsedNanos(e.timeNanos);
+        e.detail = "elapsed=" + streamElapsedNanos;
+        return true;
+    }
+
+    // Parts of a discarded body still in the ring, or sent by a stalled stream that resumes, are only counted
+    private void discardAbandoned() {
+        long now = System.nanoTime();
+        for (int i = openBodies.size() - 1; i >= 0; i--) {
+            StreamingBody body = openBodies.get(i);
+            if (body.isAbandoned() || !body.isOpen() || body.isIdle(now)) {
+                body.discard();
+                openBodies.remove(i);
+            }
+        }
+    }
+
+    private void persist(CaptureEvent e) {
+        if (sink == null) return;
+        try {
+            sink.append(e);
+            if (sink.lastBodyRepeated()) repeatedBody = e.body;
+        } catch (IOException ex) {
+            disableSink(ex);
+        }
+    }
+
+    // Sends this process's batch to the capture owner, or as the owner writes other processes' batches
+    private int flushSink() {
+        if (sink == null) return 0;
+        try {
+            return sink.flush();
+        } catch (IOException ex) {
+            disableSink(ex);
+            return 0;
+        }
+    }
+
+    private void disableSink(IOException ex) {
+        // Keep logging even if the app's storage is unusable
+        Log.e(TAG, "Capture store disabled: " + ex.getMessage());
+        sink.close();
+        sink = null;
+    }
+
+    private void format(CaptureEvent e) {
+        if (e.exchange != 0 && e.kind != CaptureEvent.EXCHANGE) {
+            line("🔗 Exchange: #" + e.exchange);
+        }
+        switch (e.kind) {
+            case CaptureEvent.URL_DETECTED:
+                line("🎯 TARGET URL DETECTED!");
+                line("📍 URL: ", e.url);
+                line("📱 Package: ", e.packageName);
+                line("🕐 Timestamp: ", String.valueOf(e.timeMillis));
+                line("🌐 Protocol: ", protocol(e.url));
+                xposed("🚨 FOUND TARGET! " + e.url + " in " + e.packageName);
+                break;
+
+            case CaptureEvent.CONNECT: {
+                URL url = (URL) e.body;
+                line("🚨 INTERCEPTING CONNECTION!");
+                line("📍 Full URL: ", e.url);
+                line("🌐 Host: ", url.getHost());
+                line("🔢 Port: ", String.valueOf(url.getPort() == -1 ? url.getDefaultPort() : url.getPort()));
+                line("📱 Package: ", e.packageName);
+                line("🔧 Method: ", e.method);
+                line("📋 Headers: ", HeaderFormat.format(e.headers));
+                line("🔐 Protocol: ", url.getProtocol().toUpperCase());
+                line("🕐 Current Time (seconds): ", String.valueOf(e.timeMillis / 1000));
+                xposed("🎯 CONNECTING TO: " + e.url + " [" + e.method + "]");
+                break;
+            }
+
+            case CaptureEvent.REQUEST_STREAM:
+                line("📤 INTERCEPTING REQUEST DATA!");
+                line("📍 URL: ", e.url);
+                line("🔧 Method: ", e.method);
+                xposed("📤 Capturing POST data to: " + e.url);
+                break;
+
+            case CaptureEvent.RESPONSE_STREAM:
+                line("📥 INTERCEPTING RESPONSE!");
+                line("📍 URL: ", e.url);
+                line("📊 Response Code: ", String.valueOf(e.status));
+                line("📋 Response Headers: ", String.valueOf(e.headers));
+                line("📏 Content Length: ", String.valueOf(e.length));
+                line("📄 Content Type: ", e.detail);
+                xposed("📥 Capturing response from: " + e.url + " [" + e.status + "]");
+                break;
+
+            case CaptureEvent.REQUEST_BODY: {
+                line("📤 CAPTURED POST DATA!");
+                line("📍 URL: ", e.url);
+                line("📱 Package: ", e.packageName);
+                line("📄 Data: ", bodyString(e.body));
+                line("🕐 Timestamp: ", String.valueOf(e.timeMillis / 1000));
+                logJsonFields(e.body);
+                xposed("📤 POST Data captured: " + e.length + " bytes to " + e.url);
+                break;
+            }
+
+            case CaptureEvent.RESPONSE_BODY: {
+                line("📥 CAPTURED RESPONSE DATA!");
+                line("📍 URL: ", e.url);
+                if (e.source != null) line("📚 Library: ", e.source);
+                line("📱 Package: ", e.packageName);
+                line("📄 Response: ", bodyString(e.body));
+                line("🕐 Timestamp: ", String.valueOf(e.timeMillis / 1000));
+                logJsonFields(e.body);
+                xposed("📥 Response captured: " + e.length + " bytes from " + e.url);
+                break;
+            }
+
+            case CaptureEvent.RESPONSE_PROGRESS:
+                line("📶 STREAMING RESPONSE");
+                line("📍 URL: ", e.url);
+                line("📏 Received so far: ", e.length + " bytes");
+                line("🚀 Throughput: ", throughput(e.length, streamElapsedNanos));
+                line("⌛ Elapsed: ", EndpointStats.millis(streamElapsedNanos));
+                xposed("📶 " + e.length + " bytes so far from " + e.url);
+                break;
+
+            case CaptureEvent.RESPONSE_MODIFIED:
+                line("🔧 RESPONSE WILL BE MODIFIED!");
+                line("📍 URL: ", e.url);
+                if (e.source != null) line("📚 Library: ", e.source);
+                if (e.detail != null) line("📝 Original: ", e.detail);
+                line("📝 Modified Response: ", bodyString(e.body));
+                xposed("🔧 Response modified for: " + e.url);
+                break;
+
+            case CaptureEvent.LIBRARY_REQUEST:
+                line("🚨 " + e.source.toUpperCase() + " TARGET DETECTED!");
+                line("📍 URL: ", e.url);
+                if (e.method != null) line("🔧 Method: ", e.method);
+                if (e.detail != null) line("🏷️ API: ", e.detail);
+                if (e.headers != null) line("📋 Headers: ", HeaderFormat.format(e.headers));
+                if (e.body != null) line("📤 POST Data: ", bodyString(e.body));
+                line("📱 Package: ", e.packageName);
+                line("🌐 Protocol: ", protocol(e.url));
+                line("🕐 Current Time (seconds): ", String.valueOf(e.timeMillis / 1000));
+                xposed("🎯 " + e.source + ": " + (e.method != null ? e.method + " " : "") + e.url);
+                break;
+
+            case CaptureEvent.LIBRARY_RESPONSE:
+                line("📥 " + e.source.toUpperCase() + " RESPONSE!");
+                line("📍 URL: ", e.url);
+                line("📊 Response Code: ", String.valueOf(e.status));
+                if (e.headers != null) line("📋 Response Headers: ", HeaderFormat.format(e.headers));
+                if (e.length >= 0) line("📏 Content Length: ", String.valueOf(e.length));
+                if (e.body != null) {
+                    line("📄 Response: ", bodyString(e.body));
+                    logJsonFields(e.body);
+                }
+                xposed("📥 " + e.source + " response: " + e.status + " from " + e.url);
+                break;
+
+            case CaptureEvent.RETROFIT_CALL:
+                line("🔧 Retrofit service method called in ", e.packageName);
+                line("🏷️ API: ", e.detail);
+                line("📍 URL: ", e.url);
+                line("🔧 Method: ", e.method);
+                line("🕐 Current Time (seconds): ", String.valueOf(e.timeMillis / 1000));
+                xposed("🔧 Retrofit " + e.detail + ": " + e.method + " " + e.url);
+                break;
+
+            case CaptureEvent.EXCHANGE: {
+                Exchange exchange = (Exchange) e.body;
+                long ttfb = exchange.timeToFirstByte();
+                long total = exchange.totalLatency();
+                line("⏱️ EXCHANGE #" + e.exchange + " COMPLETE");
+                line("📍 URL: ", e.url);
+                if (exchange.context() != null) line("🏷️ API: ", exchange.context());
+                if (exchange.context() == null && e.source != null) line("📚 Library: ", e.source);
+                line("📊 Response Code: ", e.status != 0 ? String.valueOf(e.status) : "n/a");
+                line("⚡ Time to first byte: ", ttfb < 0 ? "n/a" : EndpointStats.millis(ttfb));
+                line("⌛ Total: ", total < 0 ? "n/a" : EndpointStats.millis(total));
+                if (exchange.subrequests() > 0) line("🧩 Page requests: ", String.valueOf(exchange.subrequests()));
+                line("🧭 Phases (ns): ", e.detail);
+                xposed("⏱️ #" + e.exchange + " " + e.url + " TTFB "
+                        + (ttfb < 0 ? "n/a" : EndpointStats.millis(ttfb))
+                        + ", total " + (total < 0 ? "n/a" : EndpointStats.millis(total)));
+                break;
+            }
+
+            default:
+                line("❓ Unknown event kind " + e.kind);
+                break;
+        }
+    }
+
+    // Logs the configured JSON fields without decoding or copying the rest of the body
+    private void logJsonFields(Object body) {
+        if (body == repeatedBody || StreamingBody.of(body) != null) return;
+        boolean json;
+        if (body instanceof CaptureBuffer && ((CaptureBuffer) body).contentCoding() != ContentCoding.IDENTITY) {
+            if (!inflate((CaptureBuffer) body)) return;
+            json = jsonFields.extract(decoder.bytes(), 0, decoder.length(), true);
+        } else if (body instanceof CaptureBuffer) {
+            json = jsonFields.extract((CaptureBuffer) body, true);
+        } else if (body instanceof byte[]) {
+            byte[] bytes = (byte[]) body;
+            json = jsonFields.extract(bytes, 0, bytes.length, true);
+        } else {
+            return;
+        }
+        if (!json) {
+            line("Body is not JSON");
+            return;
+        }
+        for (int i = 0; i < jsonFields.fieldCount(); i++) {
+            String value = jsonFields.value(i);
+            if (value != null) line("📋 " + jsonFields.path(i) + ": ", value);
+        }
+    }
+
+    // Decodes at most MAX_LOGGED_BODY_BYTES, so logging cost does not grow with the body
+    private String bodyString(Object body) {
+        StreamingBody streamed = StreamingBody.of(body);
+        if (streamed != null) return streamedString((CaptureBuffer) body, streamed);
+        if (body != null && body == repeatedBody) {
+            return "[same " + capturedBytes(body) + "-byte body as an earlier capture]";
+        }
+        if (body instanceof byte[]) {
+            byte[] bytes = (byte[]) body;
+            int n = Math.min(bytes.length, MAX_LOGGED_BODY_BYTES);
+            return new String(bytes, 0, n, StandardCharsets.UTF_8) + notLogged(bytes.length - n);
+        }
+        if (body instanceof CaptureBuffer) {
+            CaptureBuffer buffer = (CaptureBuffer) body;
+            String text;
+            if (buffer.contentCoding() == ContentCoding.IDENTITY) {
+                int n = buffer.copyTo(0, bodyPreview, 0, MAX_LOGGED_BODY_BYTES);
+                text = decoder.decode(bodyPreview, 0, n, buffer.contentType()) + notLogged(buffer.size() - n);
+            } else {
+                text = inflatedString(buffer);
+            }
+            if (buffer.isTruncated()) {
+                text += " …[truncated: " + buffer.size() + " of " + buffer.totalBytes() + " bytes captured]";
+            }
+            return text;
+        }
+        return String.valueOf(body);
+    }
+
+    // The body is in the capture files only; last is its final part
+    private String streamedString(CaptureBuffer last, StreamingBody body) {
+        if (body.failed()) return "[" + last.totalBytes() + " bytes streamed, not stored]";
+        String text = "[" + body.storedLength() + " bytes streamed to the capture files"
+            + (last == repeatedBody ? ", same as an earlier capture]" : "]");
+        if (last.isTruncated()) {
+            text += " …[truncated: " + body.storedLength() + " of " + last.totalBytes() + " bytes captured]";
+        }
+        return text;
+    }
+
+    private static String throughput(long bytes, long nanos) {
+        return nanos > 0 ? String.format(Locale.US, "%.1f KB/s", bytes / 1024.0 / (nanos / 1e9)) : "n/a";
+    }
+
+    // Compressed captures are inflated here, once per event, rather than on the app's thread
+    private String inflatedString(CaptureBuffer buffer) {
+        String coding = ContentCoding.name(buffer.contentCoding());
+        if (!inflate(buffer)) {
+            return "[" + buffer.size() + " " + coding + "-encoded bytes, not decodable]";
+        }
+        int n = Math.min(decoder.length(), MAX_LOGGED_BODY_BYTES);
+        return decoder.decode(decoder.bytes(), 0, n, buffer.contentType())
+            + notLogged(decoder.length() - n)
+            + " [" + coding + ": " + buffer.size() + " → " + decoder.length()
+            + (decoder.isComplete() ? "" : "+") + " bytes]";
+    }
+
+    private boolean inflate(CaptureBuffer buffer) {
+        if (inflated == buffer) return true;
+        if (!decoder.inflate(buffer)) return false;
+        inflated = buffer;
+        return true;
+    }
+
+    private static String notLogged(int bytes) {
+        return bytes > 0 ? " …[" + bytes + " more bytes not logged]" : "";
+    }
+
+    private static String protocol(String url) {
+        return url != null && url.startsWith("https") ? "HTTPS ✅" : "HTTP ⚠️";
+    }
+
+    private void line(String text) {
+        logBuffer.append(text).append('\n');
+    }
+
+    private void line(String label, String value) {
+        logBuffer.append(label).append(value).append('\n');
+    }
+
+    private void xposed(String text) {
+        xposedBuffer.append("CameraInterceptor: ").append(text).append('\n');
+    }
+
+    private void flushLog() {
+        int length = logBuffer.length();
+        for (int start = 0; start < length; start += MAX_LOG_CHUNK) {
+            Log.e(TAG, logBuffer.substring(start, Math.min(length, start + MAX_LOG_CHUNK)));
+        }
+        logBuffer.setLength(0);
+    }
+
+    private void flushXposed() {
+        if (xposedBuffer.length() == 0) return;
+        xposedBuffer.setLength(xposedBuffer.length() - 1);
+        XposedBridge.log(xposedBuffer.toString());
+        xposedBuffer.setLength(0);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.camerainterceptor;
+
+/**
+ * Per-thread stack for carrying a value from a hook's before callback to
+ * its after callback.
+ *
+ * Xposed calls afterHookedMethod for every beforeHookedMethod that ran, so
+ * a push in before and a pop in after stay balanced, including for nested
+ * calls of the same hooked method on one thread. Unlike
+ * MethodHookParam.setObjectExtra this does not allocate per call.
+ */
+final class HookFrames {
+    private static final ThreadLocal<HookFrames> CURRENT = new ThreadLocal<HookFrames>() {
+        @Override
+        protected HookFrames initialValue() {
+            return new HookFrames();
+        }
+    };
+
+    private Object[] values = new Object[8];
+    private int depth;
+
+    static HookFrames current() {
+        return CURRENT.get();
+    }
+
+    void push(Object value) {
+        if (depth == values.length) {
+            Object[] grown = new Object[depth * 2];
+            System.arraycopy(values, 0, grown, 0, depth);
+            values = grown;
+        }
+        values[depth++] = value;
+    }
+
+    Object pop() {
+        if (depth == 0) return null;
+        Object value = values[--depth];
+        values[depth] = null;
+        return value;
+    }
+
+    int depth() {
+        return depth;
+    }
+}
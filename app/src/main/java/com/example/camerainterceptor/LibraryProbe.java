@@ -0,0 +1,103 @@
+package com.example.camerainterceptor;
+
+import android.util.Log;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Detects third-party HTTP libraries and installs only the hooks of those
+ * an app ships.
+ *
+ * Most apps ship only one or two of the libraries we hook, and looking up
+ * the classes of a missing one through XposedHelpers throws, unwinds and
+ * logs for every class. Instead each library is probed once through a
+ * single marker class with Class.forName(name, false, loader), which
+ * neither initializes the class nor logs; results are cached per class
+ * loader. Probing and installing happen inline, before handleLoadPackage
+ * returns, so the hooks are in place before Application.onCreate and catch
+ * requests the app makes while starting up.
+ */
+final class LibraryProbe {
+    private static final String TAG = "CameraNetworkInterceptor";
+
+    static final class Library {
+        final String name;
+        final String markerClass;
+        final Runnable installer;
+
+        Library(String name, String markerClass, Runnable installer) {
+            this.name = name;
+            this.markerClass = markerClass;
+            this.installer = installer;
+        }
+    }
+
+    // Guarded by this
+    private final Map<ClassLoader, Map<String, Boolean>> presence = new WeakHashMap<>();
+    private final Map<ClassLoader, Set<String>> installed = new WeakHashMap<>();
+
+    /**
+     * Detects the given libraries in a class loader and installs the hooks
+     * of those that are present, once per loader. Returns when they are
+     * installed.
+     */
+    void installWhenPresent(ClassLoader classLoader, String packageName, Library... libraries) {
+        StringBuilder summary = new StringBuilder("📚 Libraries in ").append(packageName).append(':');
+        for (Library library : libraries) {
+            boolean present = isPresent(classLoader, library.markerClass);
+            summary.append(' ').append(library.name).append(present ? " ✅" : " ❌");
+            if (present && markInstalled(classLoader, library.name)) {
+                try {
+                    library.installer.run();
+                } catch (Throwable t) {
+                    Log.e(TAG, "Error hooking " + library.name + ": " + t.getMessage());
+                }
+            }
+        }
+        Log.d(TAG, summary.toString());
+    }
+
+    /**
+     * Returns whether a class can be loaded from the class loader, without
+     * initializing it. Results are cached per loader.
+     */
+    boolean isPresent(ClassLoader classLoader, String className) {
+        synchronized (this) {
+            Map<String, Boolean> known = presence.get(classLoader);
+            if (known != null) {
+                Boolean cached = known.get(className);
+                if (cached != null) return cached;
+            }
+        }
+
+        boolean present;
+        try {
+            Class.forName(className, false, classLoader);
+            present = true;
+        } catch (Throwable t) {
+            present = false;
+        }
+
+        synchronized (this) {
+            Map<String, Boolean> known = presence.get(classLoader);
+            if (known == null) {
+                known = new HashMap<>();
+                presence.put(classLoader, known);
+            }
+            known.put(className, present);
+        }
+        return present;
+    }
+
+    private synchronized boolean markInstalled(ClassLoader classLoader, String library) {
+        Set<String> done = installed.get(classLoader);
+        if (done == null) {
+            done = new HashSet<>();
+            installed.put(classLoader, done);
+        }
+        return done.add(library);
+    }
+}
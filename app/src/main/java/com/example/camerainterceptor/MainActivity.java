@@ -1,19 +1,36 @@
 package com.example.camerainterceptor;
 
+import android.content.Context;
+import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.text.TextUtils;
+import android.text.format.DateFormat;
+import android.widget.EditText;
+import android.widget.Switch;
 import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
+import com.example.camerainterceptor.core.CaptureConfig;
+import com.example.camerainterceptor.core.EndpointStats;
+import com.example.camerainterceptor.core.HookMetrics;
 
 public class MainActivity extends AppCompatActivity {
+    private SharedPreferences settings;
+    private boolean settingsReadable;
+    
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         
+        openSettings();
+        CaptureConfig config = CaptureConfig.parse(settings.getAll());
+        showSettings(config);
+        findViewById(R.id.save_settings).setOnClickListener(v -> saveSettings());
+        
         TextView statusText = findViewById(R.id.status_text);
         statusText.setText("🎯 Camera Network Interceptor\n\n" +
-                "📡 Target Endpoint:\n" +
-                "• /camera/useTimeCode (any IP/domain)\n" +
+                "📡 Target Endpoints:\n" +
+                "• " + TextUtils.join("\n• ", config.targetPatterns) + " (any IP/domain)\n" +
                 "• HTTP & HTTPS supported ✅\n\n" +
                 "🔍 Intercepts & Logs:\n" +
                 "• POST/GET requests & responses\n" +
@@ -49,6 +66,152 @@ public class MainActivity extends AppCompatActivity {
                 "• 'now': Current Unix timestamp\n" +
                 "• 'expiredTime': 4102444800000 (2099)\n" +
                 "• 'remain': Extended to 999999\n\n" +
-                "🔧 Modification: " + (true ? "ENABLED" : "DISABLED"));
+                "🔧 Modification: " + (config.modifyResponses ? "ENABLED" : "DISABLED"));
+    }
+    
+    // Hooked apps read this file through XSharedPreferences, which needs it world-readable.
+    // LSPosed allows that for modules declaring xposedsharedprefs; elsewhere the mode throws.
+    @SuppressWarnings("deprecation")
+    private void openSettings() {
+        try {
+            settings = getSharedPreferences(ConfigSource.PREFS_NAME, Context.MODE_WORLD_READABLE);
+            settingsReadable = true;
+        } catch (SecurityException e) {
+            settings = getSharedPreferences(ConfigSource.PREFS_NAME, Context.MODE_PRIVATE);
+            settingsReadable = false;
+        }
+    }
+    
+    private void showSettings(CaptureConfig config) {
+        ((EditText) findViewById(R.id.target_patterns)).setText(TextUtils.join("\n", config.targetPatterns));
+        ((EditText) findViewById(R.id.max_capture_kb)).setText(String.valueOf(config.maxCaptureBytes / 1024));
+        ((EditText) findViewById(R.id.body_sample_rate)).setText(String.valueOf(config.bodySampleRate));
+        ((EditText) findViewById(R.id.pattern_captures_per_second))
+            .setText(String.valueOf(config.patternCapturesPerSecond));
+        ((EditText) findViewById(R.id.host_captures_per_second))
+            .setText(String.valueOf(config.hostCapturesPerSecond));
+        ((Switch) findViewById(R.id.modify_responses)).setChecked(config.modifyResponses);
+        ((Switch) findViewById(R.id.hook_http_url_connection)).setChecked(config.hookHttpUrlConnection);
+        ((Switch) findViewById(R.id.hook_okhttp)).setChecked(config.hookOkHttp);
+        ((Switch) findViewById(R.id.hook_retrofit)).setChecked(config.hookRetrofit);
+        ((Switch) findViewById(R.id.hook_apache)).setChecked(config.hookApache);
+        ((Switch) findViewById(R.id.hook_volley)).setChecked(config.hookVolley);
+        ((Switch) findViewById(R.id.hook_webview)).setChecked(config.hookWebView);
+        if (!settingsReadable) {
+            ((TextView) findViewById(R.id.settings_status))
+                .setText("⚠️ Settings are private to this app; hooked apps keep the defaults");
+        }
+    }
+    
+    private void saveSettings() {
+        // Stored as entered; CaptureConfig.parse falls back to the defaults for anything malformed
+        SharedPreferences.Editor editor = settings.edit()
+            .putString(CaptureConfig.KEY_TARGET_PATTERNS, text(R.id.target_patterns))
+            .putString(CaptureConfig.KEY_BODY_SAMPLE_RATE, text(R.id.body_sample_rate))
+            .putString(CaptureConfig.KEY_PATTERN_CAPTURES_PER_SECOND, text(R.id.pattern_captures_per_second))
+            .putString(CaptureConfig.KEY_HOST_CAPTURES_PER_SECOND, text(R.id.host_captures_per_second))
+            .putBoolean(CaptureConfig.KEY_MODIFY_RESPONSES, checked(R.id.modify_responses))
+            .putBoolean(CaptureConfig.KEY_HOOK_HTTP_URL_CONNECTION, checked(R.id.hook_http_url_connection))
+            .putBoolean(CaptureConfig.KEY_HOOK_OKHTTP, checked(R.id.hook_okhttp))
+            .putBoolean(CaptureConfig.KEY_HOOK_RETROFIT, checked(R.id.hook_retrofit))
+            .putBoolean(CaptureConfig.KEY_HOOK_APACHE, checked(R.id.hook_apache))
+            .putBoolean(CaptureConfig.KEY_HOOK_VOLLEY, checked(R.id.hook_volley))
+            .putBoolean(CaptureConfig.KEY_HOOK_WEBVIEW, checked(R.id.hook_webview));
+        try {
+            long bytes = Long.parseLong(text(R.id.max_capture_kb)) * 1024;
+            editor.putInt(CaptureConfig.KEY_MAX_CAPTURE_BYTES, (int) Math.min(Integer.MAX_VALUE, bytes));
+        } catch (NumberFormatException e) {
+            editor.remove(CaptureConfig.KEY_MAX_CAPTURE_BYTES);
+        }
+        editor.apply();
+        
+        CaptureConfig config = CaptureConfig.parse(settings.getAll());
+        showSettings(config);
+        ((TextView) findViewById(R.id.settings_status)).setText(settingsReadable
+            ? "✅ Saved: " + config
+            : "⚠️ Saved, but only for this app; hooked apps keep the defaults");
+    }
+    
+    private String text(int id) {
+        return ((EditText) findViewById(id)).getText().toString().trim();
+    }
+    
+    private boolean checked(int id) {
+        return ((Switch) findViewById(id)).isChecked();
+    }
+    
+    @Override
+    protected void onResume() {
+        super.onResume();
+        
+        // Hooked apps report about once a minute, so refresh whenever we come back
+        TextView metricsText = findViewById(R.id.metrics_text);
+        try {
+            Bundle snapshot = getContentResolver().call(MetricsProvider.CONTENT_URI,
+                    MetricsProvider.METHOD_SNAPSHOT, null, null);
+            if (snapshot != null && !snapshot.isEmpty()) {
+                metricsText.setText(formatMetrics(snapshot));
+            }
+        } catch (Exception e) {
+            metricsText.setText("⚠️ Metrics unavailable: " + e.getMessage());
+        }
+    }
+    
+    private String formatMetrics(Bundle snapshot) {
+        StringBuilder text = new StringBuilder();
+        for (String process : snapshot.keySet()) {
+            Bundle metrics = snapshot.getBundle(process);
+            if (metrics == null) continue;
+            String[] hooks = metrics.getStringArray(MetricsProvider.KEY_HOOKS);
+            long[] invocations = metrics.getLongArray(MetricsProvider.KEY_INVOCATIONS);
+            long[] matches = metrics.getLongArray(MetricsProvider.KEY_MATCHES);
+            long[] capturedBytes = metrics.getLongArray(MetricsProvider.KEY_CAPTURED_BYTES);
+            long[] dropped = metrics.getLongArray(MetricsProvider.KEY_DROPPED);
+            long[] p50 = metrics.getLongArray(MetricsProvider.KEY_P50_NANOS);
+            long[] p99 = metrics.getLongArray(MetricsProvider.KEY_P99_NANOS);
+            long[] max = metrics.getLongArray(MetricsProvider.KEY_MAX_NANOS);
+            if (hooks == null) continue;
+            
+            text.append("📱 ").append(process).append(" (")
+                .append(DateFormat.format("HH:mm:ss", metrics.getLong(MetricsProvider.KEY_TIMESTAMP)))
+                .append(")\n");
+            for (int i = 0; i < hooks.length; i++) {
+                if (invocations[i] == 0) continue;
+                text.append("• ").append(hooks[i]).append('\n')
+                    .append("   ").append(invocations[i]).append(" calls, ")
+                    .append(matches[i]).append(" matches, ")
+                    .append(capturedBytes[i]).append(" B, ")
+                    .append(dropped[i]).append(" dropped\n")
+                    .append("   p50 ").append(HookMetrics.micros(p50[i]))
+                    .append("  p99 ").append(HookMetrics.micros(p99[i]))
+                    .append("  max ").append(HookMetrics.micros(max[i])).append('\n');
+            }
+            formatEndpoints(text, metrics);
+            text.append('\n');
+        }
+        return text.toString();
+    }
+    
+    private void formatEndpoints(StringBuilder text, Bundle metrics) {
+        String[] endpoints = metrics.getStringArray(MetricsProvider.KEY_ENDPOINTS);
+        long[] exchanges = metrics.getLongArray(MetricsProvider.KEY_ENDPOINT_EXCHANGES);
+        long[] ttfbP50 = metrics.getLongArray(MetricsProvider.KEY_TTFB_P50_NANOS);
+        long[] ttfbP90 = metrics.getLongArray(MetricsProvider.KEY_TTFB_P90_NANOS);
+        long[] ttfbP99 = metrics.getLongArray(MetricsProvider.KEY_TTFB_P99_NANOS);
+        long[] totalP50 = metrics.getLongArray(MetricsProvider.KEY_TOTAL_P50_NANOS);
+        long[] totalP90 = metrics.getLongArray(MetricsProvider.KEY_TOTAL_P90_NANOS);
+        long[] totalP99 = metrics.getLongArray(MetricsProvider.KEY_TOTAL_P99_NANOS);
+        if (endpoints == null || endpoints.length == 0) return;
+        
+        text.append("⏱️ Endpoint latency\n");
+        for (int i = 0; i < endpoints.length; i++) {
+            text.append("• ").append(endpoints[i]).append(" (").append(exchanges[i]).append(" exchanges)\n")
+                .append("   TTFB p50 ").append(EndpointStats.millis(ttfbP50[i]))
+                .append("  p90 ").append(EndpointStats.millis(ttfbP90[i]))
+                .append("  p99 ").append(EndpointStats.millis(ttfbP99[i])).append('\n')
+                .append("   total p50 ").append(EndpointStats.millis(totalP50[i]))
+                .append("  p90 ").append(EndpointStats.millis(totalP90[i]))
+                .append("  p99 ").append(EndpointStats.millis(totalP99[i])).append('\n');
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,171 @@
+package com.example.camerainterceptor;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Binder;
+import android.os.Bundle;
+import android.os.Process;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects hook metrics reported by monitored processes so MainActivity
+ * can show them.
+ *
+ * Hooked processes call METHOD_REPORT with their process name as the
+ * argument and a bundle built by MetricsReporter; METHOD_SNAPSHOT returns
+ * the latest bundle of every process, keyed by process name. Snapshots are
+ * kept in memory only.
+ *
+ * The provider is exported so hooked apps can report, but endpoint names
+ * are URL paths of those apps: only the module's own uid may take a
+ * snapshot. A report is accepted only for a process named after one of the
+ * calling uid's packages ("<package>" or "<package>:<name>"), so no app can
+ * speak for another. Only the known keys are kept, and a report with more
+ * rows than a real one, or arrays that do not line up, is dropped, as are
+ * processes beyond MAX_PROCESSES.
+ */
+public class MetricsProvider extends ContentProvider {
+    public static final String AUTHORITY = BuildConfig.APPLICATION_ID + ".metrics";
+    public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY);
+
+    public static final String METHOD_REPORT = "report";
+    public static final String METHOD_SNAPSHOT = "snapshot";
+
+    // Bundle keys; the long arrays are indexed like KEY_HOOKS
+    public static final String KEY_TIMESTAMP = "timestamp";
+    public static final String KEY_HOOKS = "hooks";
+    public static final String KEY_INVOCATIONS = "invocations";
+    public static final String KEY_MATCHES = "matches";
+    public static final String KEY_CAPTURED_BYTES = "capturedBytes";
+    public static final String KEY_DROPPED = "dropped";
+    public static final String KEY_P50_NANOS = "p50Nanos";
+    public static final String KEY_P99_NANOS = "p99Nanos";
+    public static final String KEY_MAX_NANOS = "maxNanos";
+
+    // Endpoint latency; these long arrays are indexed like KEY_ENDPOINTS
+    public static final String KEY_ENDPOINTS = "endpoints";
+    public static final String KEY_ENDPOINT_EXCHANGES = "endpointExchanges";
+    public static final String KEY_TTFB_P50_NANOS = "ttfbP50Nanos";
+    public static final String KEY_TTFB_P90_NANOS = "ttfbP90Nanos";
+    public static final String KEY_TTFB_P99_NANOS = "ttfbP99Nanos";
+    public static final String KEY_TOTAL_P50_NANOS = "totalP50Nanos";
+    public static final String KEY_TOTAL_P90_NANOS = "totalP90Nanos";
+    public static final String KEY_TOTAL_P99_NANOS = "totalP99Nanos";
+
+    // Columns copied from a report, each as long as its rows
+    private static final String[] HOOK_COLUMNS = {
+        KEY_INVOCATIONS, KEY_MATCHES, KEY_CAPTURED_BYTES, KEY_DROPPED, KEY_P50_NANOS, KEY_P99_NANOS, KEY_MAX_NANOS
+    };
+    private static final String[] ENDPOINT_COLUMNS = {
+        KEY_ENDPOINT_EXCHANGES, KEY_TTFB_P50_NANOS, KEY_TTFB_P90_NANOS, KEY_TTFB_P99_NANOS,
+        KEY_TOTAL_P50_NANOS, KEY_TOTAL_P90_NANOS, KEY_TOTAL_P99_NANOS
+    };
+    // Bounds on what reports may hold; real ones stay far below them
+    private static final int MAX_PROCESSES = 64;
+    private static final int MAX_ROWS = 256;
+    private static final int MAX_NAME_CHARS = 512;
+
+    private static final Map<String, Bundle> SNAPSHOTS = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        int uid = Binder.getCallingUid();
+        if (METHOD_REPORT.equals(method)) {
+            if (arg == null || extras == null || !ownsProcess(uid, arg)) return null;
+            Bundle report = copyReport(extras);
+            if (report != null && (SNAPSHOTS.containsKey(arg) || SNAPSHOTS.size() < MAX_PROCESSES)) {
+                SNAPSHOTS.put(arg, report);
+            }
+            return null;
+        }
+        if (METHOD_SNAPSHOT.equals(method)) {
+            if (uid != Process.myUid()) return null;
+            Bundle all = new Bundle();
+            for (Map.Entry<String, Bundle> entry : SNAPSHOTS.entrySet()) {
+                all.putBundle(entry.getKey(), entry.getValue());
+            }
+            return all;
+        }
+        return null;
+    }
+
+    private boolean ownsProcess(int uid, String processName) {
+        if (processName.length() > MAX_NAME_CHARS) return false;
+        int colon = processName.indexOf(':');
+        String packageName = colon >= 0 ? processName.substring(0, colon) : processName;
+        String[] packages = getContext().getPackageManager().getPackagesForUid(uid);
+        if (packages == null) return false;
+        for (String candidate : packages) {
+            if (candidate.equals(packageName)) return true;
+        }
+        return false;
+    }
+
+    // The known keys of a report, or null if it is malformed or oversized
+    private static Bundle copyReport(Bundle extras) {
+        try {
+            Bundle report = new Bundle();
+            report.putLong(KEY_TIMESTAMP, extras.getLong(KEY_TIMESTAMP));
+            if (!copyRows(extras, report, KEY_HOOKS, HOOK_COLUMNS)) return null;
+            // Reports from before endpoint latency have no endpoint rows
+            if (extras.getStringArray(KEY_ENDPOINTS) != null
+                    && !copyRows(extras, report, KEY_ENDPOINTS, ENDPOINT_COLUMNS)) {
+                return null;
+            }
+            return report;
+        } catch (RuntimeException e) {
+            // Unparcelling a bundle from another app can fail in many ways
+            return null;
+        }
+    }
+
+    private static boolean copyRows(Bundle from, Bundle to, String namesKey, String[] columns) {
+        String[] names = from.getStringArray(namesKey);
+        if (names == null || names.length > MAX_ROWS) return false;
+        String[] kept = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == null) return false;
+            kept[i] = names[i].length() <= MAX_NAME_CHARS ? names[i] : names[i].substring(0, MAX_NAME_CHARS);
+        }
+        to.putStringArray(namesKey, kept);
+        for (String column : columns) {
+            long[] values = from.getLongArray(column);
+            if (values == null || values.length != names.length) return false;
+            to.putLongArray(column, values.clone());
+        }
+        return true;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        return null;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        return null;
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        return 0;
+    }
+}
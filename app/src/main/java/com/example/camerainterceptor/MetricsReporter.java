@@ -0,0 +1,114 @@
+package com.example.camerainterceptor;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+import com.example.camerainterceptor.core.EndpointStats;
+import com.example.camerainterceptor.core.HookMetrics;
+import com.example.camerainterceptor.core.LatencyHistogram;
+import de.robv.android.xposed.XposedHelpers;
+import java.util.List;
+
+/**
+ * Sends this process's HookMetrics and EndpointStats to the module's
+ * MetricsProvider.
+ *
+ * Runs on the writer thread. The hooked app's Application context is
+ * looked up lazily, since it does not exist yet when handleLoadPackage
+ * runs.
+ */
+final class MetricsReporter {
+    private static final String TAG = "CameraNetworkInterceptor";
+
+    private final String processName;
+    private final HookMetrics metrics;
+    private final EndpointStats endpoints;
+    private boolean failed;
+
+    MetricsReporter(String processName, HookMetrics metrics, EndpointStats endpoints) {
+        this.processName = processName;
+        this.metrics = metrics;
+        this.endpoints = endpoints;
+    }
+
+    void report() {
+        if (failed) return;
+        try {
+            Context context = (Context) XposedHelpers.callStaticMethod(
+                XposedHelpers.findClass("android.app.ActivityThread", null), "currentApplication");
+            if (context == null) return;
+            context.getContentResolver().call(MetricsProvider.CONTENT_URI,
+                MetricsProvider.METHOD_REPORT, processName, toBundle(metrics, endpoints));
+        } catch (Throwable t) {
+            // Typically the module app is not visible to this app; stop trying
+            failed = true;
+            Log.w(TAG, "Metrics reporting disabled in " + processName + ": " + t.getMessage());
+        }
+    }
+
+    static Bundle toBundle(HookMetrics metrics, EndpointStats endpoints) {
+        List<HookMetrics.Hook> hooks = metrics.hooks();
+        int n = hooks.size();
+        String[] names = new String[n];
+        long[] invocations = new long[n];
+        long[] matches = new long[n];
+        long[] capturedBytes = new long[n];
+        long[] dropped = new long[n];
+        long[] p50 = new long[n];
+        long[] p99 = new long[n];
+        long[] max = new long[n];
+        for (int i = 0; i < n; i++) {
+            HookMetrics.Hook hook = hooks.get(i);
+            names[i] = hook.name;
+            invocations[i] = hook.invocations.get();
+            matches[i] = hook.matches.get();
+            capturedBytes[i] = hook.capturedBytes.get();
+            dropped[i] = hook.droppedEvents.get();
+            p50[i] = hook.latency.percentile(50);
+            p99[i] = hook.latency.percentile(99);
+            max[i] = hook.latency.max();
+        }
+
+        Bundle bundle = new Bundle();
+        bundle.putLong(MetricsProvider.KEY_TIMESTAMP, System.currentTimeMillis());
+        bundle.putStringArray(MetricsProvider.KEY_HOOKS, names);
+        bundle.putLongArray(MetricsProvider.KEY_INVOCATIONS, invocations);
+        bundle.putLongArray(MetricsProvider.KEY_MATCHES, matches);
+        bundle.putLongArray(MetricsProvider.KEY_CAPTURED_BYTES, capturedBytes);
+        bundle.putLongArray(MetricsProvider.KEY_DROPPED, dropped);
+        bundle.putLongArray(MetricsProvider.KEY_P50_NANOS, p50);
+        bundle.putLongArray(MetricsProvider.KEY_P99_NANOS, p99);
+        bundle.putLongArray(MetricsProvider.KEY_MAX_NANOS, max);
+        putEndpoints(bundle, endpoints.endpoints());
+        return bundle;
+    }
+
+    private static void putEndpoints(Bundle bundle, List<EndpointStats.Endpoint> endpoints) {
+        int n = endpoints.size();
+        String[] names = new String[n];
+        long[] exchanges = new long[n];
+        long[][] ttfb = new long[3][n];
+        long[][] total = new long[3][n];
+        for (int i = 0; i < n; i++) {
+            EndpointStats.Endpoint endpoint = endpoints.get(i);
+            names[i] = endpoint.name;
+            exchanges[i] = endpoint.exchanges();
+            putPercentiles(ttfb, i, endpoint.timeToFirstByte);
+            putPercentiles(total, i, endpoint.total);
+        }
+        bundle.putStringArray(MetricsProvider.KEY_ENDPOINTS, names);
+        bundle.putLongArray(MetricsProvider.KEY_ENDPOINT_EXCHANGES, exchanges);
+        bundle.putLongArray(MetricsProvider.KEY_TTFB_P50_NANOS, ttfb[0]);
+        bundle.putLongArray(MetricsProvider.KEY_TTFB_P90_NANOS, ttfb[1]);
+        bundle.putLongArray(MetricsProvider.KEY_TTFB_P99_NANOS, ttfb[2]);
+        bundle.putLongArray(MetricsProvider.KEY_TOTAL_P50_NANOS, total[0]);
+        bundle.putLongArray(MetricsProvider.KEY_TOTAL_P90_NANOS, total[1]);
+        bundle.putLongArray(MetricsProvider.KEY_TOTAL_P99_NANOS, total[2]);
+    }
+
+    private static void putPercentiles(long[][] out, int i, LatencyHistogram histogram) {
+        out[0][i] = histogram.percentile(50);
+        out[1][i] = histogram.percentile(90);
+        out[2][i] = histogram.percentile(99);
+    }
+}
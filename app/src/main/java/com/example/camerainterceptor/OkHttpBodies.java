@@ -0,0 +1,162 @@
+package com.example.camerainterceptor;
+
+import com.example.camerainterceptor.core.CaptureBuffer;
+import com.example.camerainterceptor.core.CapturingInputStream;
+import com.example.camerainterceptor.core.Exchange;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Tees OkHttp response bodies into a CaptureBuffer as the app reads them.
+ *
+ * The body's okio.Source is wrapped in a dynamic proxy for the app's Source
+ * interface, buffered with the app's Okio and put into a copy of the
+ * response in place of the original body, which is what the hooked call
+ * then returns. Each read() copies the bytes it appended to the app's
+ * Buffer into the capture; at end of stream or on close() the capture goes
+ * to the listener. Nothing is read ahead of the app, so its calls return as
+ * soon as the headers are in, however slow the body.
+ *
+ * The module cannot link against OkHttp or Okio, which the app bundles, so
+ * the classes are resolved reflectively once per class loader. If they are
+ * not all there, or the response cannot be copied, the response is left
+ * alone and its body is not captured.
+ */
+final class OkHttpBodies {
+    private static final Accessor BODY_SOURCE = new Accessor("source");
+    private static final Accessor BODY_CONTENT_TYPE = new Accessor("contentType");
+    private static final Accessor BODY_CONTENT_LENGTH = new Accessor("contentLength");
+    private static final Accessor RESPONSE_NEW_BUILDER = new Accessor("newBuilder");
+    private static final Accessor BUILDER_BUILD = new Accessor("build");
+    private static final Accessor BUFFER_SIZE = new Accessor("size");
+    private static final Accessor BUFFER_COPY_TO = new Accessor("copyTo", OutputStream.class, long.class, long.class);
+
+    private final ClassLoader classLoader;
+    private final Class<?> sourceInterface;
+    // Okio.buffer(Source) and ResponseBody.create(MediaType, long, BufferedSource), both static
+    private final Method buffer;
+    private final Method createBody;
+    private final Accessor builderBody;
+
+    private OkHttpBodies(ClassLoader classLoader, Class<?> sourceInterface, Method buffer, Method createBody,
+                         Accessor builderBody) {
+        this.classLoader = classLoader;
+        this.sourceInterface = sourceInterface;
+        this.buffer = buffer;
+        this.createBody = createBody;
+        this.builderBody = builderBody;
+    }
+
+    /** Resolves what tee() needs in an app's class loader; null if any of it is missing. */
+    static OkHttpBodies resolve(ClassLoader classLoader) {
+        try {
+            Class<?> source = Class.forName("okio.Source", false, classLoader);
+            Class<?> bufferedSource = Class.forName("okio.BufferedSource", false, classLoader);
+            Class<?> responseBody = Class.forName("okhttp3.ResponseBody", false, classLoader);
+            Class<?> mediaType = Class.forName("okhttp3.MediaType", false, classLoader);
+            Method buffer = Class.forName("okio.Okio", false, classLoader).getMethod("buffer", source);
+            Method createBody = responseBody.getMethod("create", mediaType, long.class, bufferedSource);
+            return new OkHttpBodies(classLoader, source, buffer, createBody, new Accessor("body", responseBody));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a copy of response whose body is teed into capture, which the
+     * listener gets once the app has read the body or closed it; or null if
+     * the body could not be wrapped, in which case response is unchanged.
+     */
+    Object tee(Object response, Object body, Exchange exchange, CaptureBuffer capture,
+               CapturingInputStream.Listener listener) {
+        try {
+            Object source = BODY_SOURCE.get(body);
+            Object teed = Proxy.newProxyInstance(classLoader, new Class<?>[] {sourceInterface},
+                new Tee(source, exchange, capture, listener));
+            Object content = buffer.invoke(null, teed);
+            Object teedBody = createBody.invoke(null, BODY_CONTENT_TYPE.get(body),
+                BODY_CONTENT_LENGTH.get(body), content);
+            Object builder = RESPONSE_NEW_BUILDER.get(response);
+            builderBody.invoke(builder, teedBody);
+            return BUILDER_BUILD.get(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // The app's okio.Source over the network; read on the thread that reads the body
+    private static final class Tee implements InvocationHandler {
+        private final Object source;
+        private final Exchange exchange;
+        private final CaptureBuffer capture;
+        private final CapturingInputStream.Listener listener;
+        private final OutputStream out;
+        private boolean done;
+
+        Tee(Object source, Exchange exchange, CaptureBuffer capture, CapturingInputStream.Listener listener) {
+            this.source = source;
+            this.exchange = exchange;
+            this.capture = capture;
+            this.listener = listener;
+            this.out = new OutputStream() {
+                @Override
+                public void write(int b) {
+                    capture.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    capture.write(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            int arity = args == null ? 0 : args.length;
+            if (name.equals("read") && arity == 2) {
+                Object result = delegate(method, args);
+                long read = (Long) result;
+                if (read > 0) {
+                    copy(args[0], read);
+                } else if (read < 0) {
+                    complete();
+                }
+                return result;
+            }
+            if (name.equals("close") && arity == 0) complete();
+            return delegate(method, args);
+        }
+
+        private Object delegate(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(source, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        // The bytes just read are the last ones in the app's Buffer
+        private void copy(Object sink, long read) {
+            if (done) return;
+            try {
+                long size = (Long) BUFFER_SIZE.get(sink);
+                BUFFER_COPY_TO.invoke(sink, out, size - read, read);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // The app's read already succeeded; only the capture stops here
+                complete();
+            }
+        }
+
+        private void complete() {
+            if (done) return;
+            done = true;
+            exchange.markClose();
+            listener.onResponseBody(capture);
+        }
+    }
+}
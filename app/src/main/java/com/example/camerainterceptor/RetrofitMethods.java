@@ -0,0 +1,139 @@
+package com.example.camerainterceptor;
+
+import android.util.Log;
+import com.example.camerainterceptor.core.CaptureConfig;
+import com.example.camerainterceptor.core.UrlMatcher;
+import com.example.camerainterceptor.core.WeakIdentityMap;
+import de.robv.android.xposed.XposedHelpers;
+import java.lang.reflect.Method;
+
+/**
+ * Match decisions for Retrofit ServiceMethods, made once per instance.
+ *
+ * Retrofit builds one ServiceMethod per interface method and reuses it for
+ * every call, so its HTTP method, URL and interface method never change.
+ * The first invoke() of an instance reads them from its RequestFactory
+ * (or, before Retrofit 2.5, from the ServiceMethod itself) and matches
+ * base URL plus relative URL against the target patterns; later invokes
+ * only look the decision up by identity. Methods taking their URL from a
+ * @Url parameter are matched per call against that argument. Decisions
+ * belong to one CaptureConfig and are dropped when the settings change.
+ *
+ * The interface method behind each resolved ServiceMethod is also kept,
+ * so the OkHttp hook can name the API call a request came from via the
+ * Invocation tag Retrofit puts on its requests.
+ */
+final class RetrofitMethods {
+    private static final String TAG = "CameraNetworkInterceptor";
+
+    static final class Decision {
+        final String httpMethod;
+        // Base plus relative URL, or null if it comes from the @Url argument
+        final String url;
+        final int urlArgument;
+        // UrlMatcher index of the static URL; NO_MATCH for dynamic URLs, which are matched per call
+        final int pattern;
+        // "Interface.method", or the relative URL if the method is unknown
+        final String context;
+
+        Decision(String httpMethod, String url, int urlArgument, int pattern, String context) {
+            this.httpMethod = httpMethod;
+            this.url = url;
+            this.urlArgument = urlArgument;
+            this.pattern = pattern;
+            this.context = context;
+        }
+
+        boolean isDynamic() {
+            return urlArgument >= 0;
+        }
+    }
+
+    // Stands in for ServiceMethods whose fields could not be read; never matches
+    private static final Decision UNRESOLVED = new Decision(null, null, -1, UrlMatcher.NO_MATCH, null);
+
+    private static final class Decisions {
+        final CaptureConfig config;
+        final WeakIdentityMap<Object, Decision> byServiceMethod = new WeakIdentityMap<>();
+
+        Decisions(CaptureConfig config) {
+            this.config = config;
+        }
+    }
+
+    private volatile Decisions decisions = new Decisions(null);
+    private final WeakIdentityMap<Method, String> contexts = new WeakIdentityMap<>();
+    // retrofit2.Invocation in the hooked app, once Retrofit was found
+    private volatile Class<?> invocationClass;
+
+    void setInvocationClass(Class<?> invocationClass) {
+        this.invocationClass = invocationClass;
+    }
+
+    Class<?> invocationClass() {
+        return invocationClass;
+    }
+
+    /** Returns the decision for a ServiceMethod under config; a map lookup once it was made. */
+    Decision decide(Object serviceMethod, CaptureConfig config) {
+        Decisions current = decisions;
+        if (current.config != config) {
+            current = new Decisions(config);
+            decisions = current;
+        }
+        Decision decision = current.byServiceMethod.get(serviceMethod);
+        if (decision != null) return decision;
+        return current.byServiceMethod.putIfAbsent(serviceMethod, resolve(serviceMethod, config));
+    }
+
+    /** The API context of an interface method resolved earlier, or null. */
+    String context(Method method) {
+        return method != null ? contexts.get(method) : null;
+    }
+
+    private Decision resolve(Object serviceMethod, CaptureConfig config) {
+        try {
+            Object factory = XposedHelpers.findFieldIfExists(serviceMethod.getClass(), "requestFactory") != null
+                ? XposedHelpers.getObjectField(serviceMethod, "requestFactory")
+                : serviceMethod;
+            String httpMethod = (String) XposedHelpers.getObjectField(factory, "httpMethod");
+            String relativeUrl = (String) XposedHelpers.getObjectField(factory, "relativeUrl");
+            Object baseUrl = XposedHelpers.getObjectField(factory, "baseUrl");
+            Method method = XposedHelpers.findFieldIfExists(factory.getClass(), "method") != null
+                ? (Method) XposedHelpers.getObjectField(factory, "method")
+                : null;
+
+            String context = method != null
+                ? method.getDeclaringClass().getSimpleName() + "." + method.getName()
+                : relativeUrl;
+            if (method != null) contexts.putIfAbsent(method, context);
+
+            if (relativeUrl == null) {
+                int urlArgument = urlArgument(factory);
+                return new Decision(httpMethod, null, urlArgument, UrlMatcher.NO_MATCH, context);
+            }
+            String url = absolute(String.valueOf(baseUrl), relativeUrl);
+            return new Decision(httpMethod, url, -1, config.matcher.indexOf(url), context);
+        } catch (Throwable t) {
+            Log.w(TAG, "Cannot resolve Retrofit method " + serviceMethod.getClass().getName() + ": " + t.getMessage());
+            return UNRESOLVED;
+        }
+    }
+
+    // Index of the @Url parameter, or -1; Retrofit represents it as ParameterHandler.RelativeUrl
+    private static int urlArgument(Object factory) {
+        Object[] handlers = (Object[]) XposedHelpers.getObjectField(factory, "parameterHandlers");
+        if (handlers == null) return -1;
+        for (int i = 0; i < handlers.length; i++) {
+            if (handlers[i] != null && handlers[i].getClass().getName().endsWith("$RelativeUrl")) return i;
+        }
+        return -1;
+    }
+
+    // Good enough for substring matching; Retrofit resolves the real URL with HttpUrl.resolve
+    private static String absolute(String baseUrl, String relativeUrl) {
+        if (relativeUrl.contains("://")) return relativeUrl;
+        if (baseUrl.endsWith("/") && relativeUrl.startsWith("/")) return baseUrl + relativeUrl.substring(1);
+        return baseUrl + relativeUrl;
+    }
+}
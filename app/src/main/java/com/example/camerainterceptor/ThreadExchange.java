@@ -0,0 +1,45 @@
+package com.example.camerainterceptor;
+
+import com.example.camerainterceptor.core.Exchange;
+
+/**
+ * The exchange a library hook has in progress on this thread.
+ *
+ * Volley's BasicNetwork and Apache's HttpClient run a whole request on the
+ * calling thread, often on top of another hooked client (Volley's HurlStack
+ * is HttpURLConnection, its HttpClientStack is Apache). Hooks further down
+ * adopt the outermost library's exchange instead of starting their own, so
+ * one request is one exchange record, with the policy decision made once.
+ * Only the hook that entered with a given request object can clear it.
+ */
+final class ThreadExchange {
+    private static final ThreadLocal<ThreadExchange> CURRENT = new ThreadLocal<ThreadExchange>() {
+        @Override
+        protected ThreadExchange initialValue() {
+            return new ThreadExchange();
+        }
+    };
+
+    private Object owner;
+    private Exchange exchange;
+
+    /** The outermost library exchange in progress on this thread, or null. */
+    static Exchange current() {
+        return CURRENT.get().exchange;
+    }
+
+    /** Makes exchange the thread's current one unless an outer hook already set one. */
+    static void enter(Object request, Exchange exchange) {
+        ThreadExchange frame = CURRENT.get();
+        if (frame.exchange != null) return;
+        frame.owner = request;
+        frame.exchange = exchange;
+    }
+
+    static void exit(Object request) {
+        ThreadExchange frame = CURRENT.get();
+        if (frame.owner != request) return;
+        frame.owner = null;
+        frame.exchange = null;
+    }
+}
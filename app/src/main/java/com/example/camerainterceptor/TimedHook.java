@@ -0,0 +1,46 @@
+package com.example.camerainterceptor;
+
+import com.example.camerainterceptor.core.HookMetrics;
+import de.robv.android.xposed.XC_MethodHook;
+
+/**
+ * XC_MethodHook that records its own overhead in a HookMetrics entry.
+ *
+ * Subclasses override before()/after() instead of the Xposed callbacks.
+ * The time spent in each callback goes into the hook's latency histogram,
+ * and each hooked call is counted once, in the after callback, which Xposed
+ * always runs.
+ */
+abstract class TimedHook extends XC_MethodHook {
+    protected final HookMetrics.Hook metric;
+
+    TimedHook(HookMetrics.Hook metric) {
+        this.metric = metric;
+    }
+
+    @Override
+    protected final void beforeHookedMethod(MethodHookParam param) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            before(param);
+        } finally {
+            metric.recordCallback(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    protected final void afterHookedMethod(MethodHookParam param) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            after(param);
+        } finally {
+            metric.recordCall(System.nanoTime() - start);
+        }
+    }
+
+    protected void before(MethodHookParam param) throws Throwable {
+    }
+
+    protected void after(MethodHookParam param) throws Throwable {
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.camerainterceptor;
+
+import com.example.camerainterceptor.core.HookMetrics;
+
+/**
+ * TimedHook for a WebViewClient callback that only handles the WebView's
+ * own call.
+ *
+ * Every class in a client's hierarchy is hooked, so an override calling
+ * super would otherwise be seen twice. Calls nested in a handled call of
+ * the same hook on this thread are skipped.
+ */
+abstract class WebViewClientHook extends TimedHook {
+    private final ThreadLocal<int[]> depth = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    WebViewClientHook(HookMetrics.Hook metric) {
+        super(metric);
+    }
+
+    @Override
+    protected final void before(MethodHookParam param) throws Throwable {
+        if (depth.get()[0]++ == 0) beforeCall(param);
+    }
+
+    @Override
+    protected final void after(MethodHookParam param) throws Throwable {
+        depth.get()[0]--;
+    }
+
+    protected abstract void beforeCall(MethodHookParam param) throws Throwable;
+}
@@ -0,0 +1,84 @@
+package com.example.camerainterceptor;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XposedBridge;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hooks shouldInterceptRequest/onPageStarted/onPageFinished on the
+ * WebViewClient classes this process actually uses.
+ *
+ * The WebView calls these on the client the app registered, so an app
+ * that overrides them never reaches WebViewClient's own methods. Each
+ * client class is inspected once per process, when it is first passed to
+ * setWebViewClient(): its hierarchy up to WebViewClient is walked and every
+ * declaration of the three methods is hooked once. WebViewClient itself is
+ * hooked up front, as a WebView without a client of the app's uses one.
+ * Only the shouldInterceptRequest overload taking a WebResourceRequest is
+ * hooked; WebViewClient's implementation calls the deprecated one.
+ */
+final class WebViewClients {
+    private static final String TAG = "CameraNetworkInterceptor";
+
+    private final Map<Class<?>, Boolean> seen = new ConcurrentHashMap<>();
+    // Guarded by this
+    private final Set<Method> hooked = new HashSet<>();
+    private volatile XC_MethodHook interceptHook;
+    private volatile XC_MethodHook startedHook;
+    private volatile XC_MethodHook finishedHook;
+
+    /**
+     * Sets the hooks to install; returns false if they were already set in
+     * this process, in which case the given hooks are not used.
+     */
+    synchronized boolean install(XC_MethodHook intercept, XC_MethodHook started, XC_MethodHook finished) {
+        if (interceptHook != null) return false;
+        startedHook = started;
+        finishedHook = finished;
+        interceptHook = intercept;
+        return true;
+    }
+
+    /** Hooks the class of a client unless that was already done; cheap once it was. */
+    void discover(Class<?> clientClass) {
+        if (seen.containsKey(clientClass) || interceptHook == null) return;
+        synchronized (this) {
+            if (seen.containsKey(clientClass)) return;
+            StringBuilder summary = new StringBuilder();
+            for (Class<?> c = clientClass; c != null && WebViewClient.class.isAssignableFrom(c); c = c.getSuperclass()) {
+                hook(c, "shouldInterceptRequest", interceptHook, summary, WebView.class, WebResourceRequest.class);
+                hook(c, "onPageStarted", startedHook, summary, WebView.class, String.class, Bitmap.class);
+                hook(c, "onPageFinished", finishedHook, summary, WebView.class, String.class);
+            }
+            seen.put(clientClass, Boolean.TRUE);
+            Log.d(TAG, "🌐 WebViewClient class " + clientClass.getName()
+                + (summary.length() > 0 ? ", hooked" + summary : ", nothing new to hook"));
+        }
+    }
+
+    private void hook(Class<?> c, String name, XC_MethodHook callback, StringBuilder summary,
+                      Class<?>... parameterTypes) {
+        Method method;
+        try {
+            method = c.getDeclaredMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return;
+        }
+        if (!hooked.add(method)) return;
+        try {
+            XposedBridge.hookMethod(method, callback);
+            summary.append(' ').append(c.getSimpleName()).append('.').append(name);
+        } catch (Throwable t) {
+            Log.e(TAG, "Error hooking " + c.getName() + "." + name + ": " + t.getMessage());
+        }
+    }
+}
@@ -1,32 +1,138 @@
 package com.example.camerainterceptor;
 
 import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebViewClient;
+import com.example.camerainterceptor.core.CaptureBuffer;
+import com.example.camerainterceptor.core.CaptureBufferPool;
+import com.example.camerainterceptor.core.CaptureConfig;
+import com.example.camerainterceptor.core.CaptureEvent;
+import com.example.camerainterceptor.core.CapturePolicy;
+import com.example.camerainterceptor.core.CapturingInputStream;
+import com.example.camerainterceptor.core.CapturingOutputStream;
+import com.example.camerainterceptor.core.ContentCoding;
+import com.example.camerainterceptor.core.EndpointStats;
+import com.example.camerainterceptor.core.Exchange;
+import com.example.camerainterceptor.core.ExchangeTracker;
+import com.example.camerainterceptor.core.HookMetrics;
+import com.example.camerainterceptor.core.JsonFieldExtractor;
+import com.example.camerainterceptor.core.StreamingBody;
+import com.example.camerainterceptor.core.TimeCodeJson;
+import com.example.camerainterceptor.core.UrlMatcher;
 import de.robv.android.xposed.IXposedHookLoadPackage;
-import de.robv.android.xposed.XC_MethodHook;
 import de.robv.android.xposed.XposedBridge;
 import de.robv.android.xposed.XposedHelpers;
 import de.robv.android.xposed.callbacks.XC_LoadPackage;
+import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.HttpURLConnection;
-import java.io.IOException;
+import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
-import java.io.ByteArrayOutputStream;
 import java.io.ByteArrayInputStream;
 import java.util.Map;
 import java.util.List;
-import java.nio.charset.StandardCharsets;
-import org.json.JSONObject;
-import org.json.JSONException;
+import java.util.Locale;
 
 public class XposedModule implements IXposedHookLoadPackage {
     private static final String TAG = "CameraNetworkInterceptor";
-    private static final String TARGET_ENDPOINT = "/camera/useTimeCode";
+    
+    // Target patterns, size caps, sampling and hook toggles; hot-reloaded from the settings screen
+    private static final ConfigSource CONFIG = new ConfigSource();
+    
+    // Overhead counters, one entry per hook point; summarized by the writer thread
+    private static final HookMetrics METRICS = new HookMetrics();
+    private static final HookMetrics.Hook HOOK_URL_INIT = METRICS.register("URL.<init>");
+    private static final HookMetrics.Hook HOOK_URL_OPEN = METRICS.register("URL.openConnection");
+    private static final HookMetrics.Hook HOOK_HUC_CONNECT = METRICS.register("HttpURLConnection.connect");
+    private static final HookMetrics.Hook HOOK_HUC_OUTPUT = METRICS.register("HttpURLConnection.getOutputStream");
+    private static final HookMetrics.Hook HOOK_HUC_INPUT = METRICS.register("HttpURLConnection.getInputStream");
+    private static final HookMetrics.Hook HOOK_OKHTTP_URL = METRICS.register("OkHttp Request.Builder.url");
+    private static final HookMetrics.Hook HOOK_OKHTTP_CALL = METRICS.register("OkHttp RealCall");
+    private static final HookMetrics.Hook HOOK_RETROFIT_INVOKE = METRICS.register("Retrofit ServiceMethod.invoke");
+    private static final HookMetrics.Hook HOOK_APACHE_EXECUTE = METRICS.register("Apache HttpClient.execute");
+    private static final HookMetrics.Hook HOOK_APACHE_ENTITY = METRICS.register("Apache HttpEntity");
+    private static final HookMetrics.Hook HOOK_VOLLEY_REQUEST = METRICS.register("Volley Request.<init>");
+    private static final HookMetrics.Hook HOOK_VOLLEY_NETWORK = METRICS.register("Volley BasicNetwork.performRequest");
+    private static final HookMetrics.Hook HOOK_WEBVIEW_LOAD = METRICS.register("WebView.loadUrl");
+    private static final HookMetrics.Hook HOOK_WEBVIEW_POST = METRICS.register("WebView.postUrl");
+    private static final HookMetrics.Hook HOOK_WEBVIEW_CLIENT = METRICS.register("WebView.setWebViewClient");
+    private static final HookMetrics.Hook HOOK_WEBVIEW_INTERCEPT = METRICS.register("WebViewClient.shouldInterceptRequest");
+    private static final HookMetrics.Hook HOOK_WEBVIEW_PAGE_STARTED = METRICS.register("WebViewClient.onPageStarted");
+    private static final HookMetrics.Hook HOOK_WEBVIEW_PAGE_FINISHED = METRICS.register("WebViewClient.onPageFinished");
+    
+    // Capacity of the event ring between hooks and the background writer
+    private static final int EVENT_RING_CAPACITY = 1024;
+    
+    // JSON field paths logged for captured bodies; the rest of the body is skipped
+    private static final String[] JSON_SUMMARY_FIELDS = {
+        "code", "now", "expiredTime", "token", "remain"
+    };
+    
+    // Match decisions per Retrofit ServiceMethod, and the interface methods behind them
+    private static final RetrofitMethods RETROFIT = new RetrofitMethods();
+    
+    // Concrete HttpURLConnection classes seen in this process and hooked once each
+    private static final ConnectionClasses CONNECTION_CLASSES = new ConnectionClasses();
+    
+    // WebViewClient classes seen in this process and hooked once each
+    private static final WebViewClients WEBVIEW_CLIENTS = new WebViewClients();
+    
+    // Apache response entities being captured, and their classes, hooked once each
+    private static final ApacheEntities APACHE_ENTITIES = new ApacheEntities(HOOK_APACHE_ENTITY);
+    
+    // Open HttpURLConnection exchanges, keyed weakly by connection identity;
+    // also each WebView's current page load, keyed by the WebView
+    private static final ExchangeTracker EXCHANGES = new ExchangeTracker();
+    
+    // Latency histograms for finished exchanges, for at most this many endpoints
+    private static final EndpointStats ENDPOINTS = new EndpointStats(64);
+    
+    // Shared by every hook; formatting and log output happen on the writer thread
+    private static final EventWriter EVENTS = new EventWriter(EVENT_RING_CAPACITY, METRICS, ENDPOINTS, CONFIG,
+        JsonFieldExtractor.compile(JSON_SUMMARY_FIELDS));
+    
+    // Reusable chunks backing the capture buffers of every wrapped stream
+    private static final CaptureBufferPool BUFFER_POOL = new CaptureBufferPool(8 * 1024, 64);
+    
+    // Response captures reaching this size are streamed to disk in parts of it instead of held whole
+    private static final int STREAM_PART_BYTES = 64 * 1024;
+    
+    // Binary capture segments kept per package under <dataDir>/files/camera-interceptor
+    private static final String STORE_DIRECTORY = "files/camera-interceptor";
+    private static final int STORE_SEGMENT_SIZE = 8 * 1024 * 1024;
+    private static final int STORE_MAX_SEGMENTS = 16;
+    
+    // Reflective accessors used on every library call, resolved once per receiver class
+    private static final Accessor OKHTTP_CALL_REQUEST = new Accessor("request");
+    private static final Accessor OKHTTP_REQUEST_URL = new Accessor("url");
+    private static final Accessor OKHTTP_REQUEST_METHOD = new Accessor("method");
+    private static final Accessor OKHTTP_HEADERS = new Accessor("headers");
+    private static final Accessor OKHTTP_RESPONSE_CODE = new Accessor("code");
+    private static final Accessor OKHTTP_RESPONSE_BODY = new Accessor("body");
+    private static final Accessor OKHTTP_BODY_CONTENT_TYPE = new Accessor("contentType");
+    private static final Accessor OKHTTP_BODY_CONTENT_LENGTH = new Accessor("contentLength");
+    private static final Accessor OKHTTP_RESPONSE_HEADER = new Accessor("header", String.class);
+    private static final Accessor APACHE_GET_URI = new Accessor("getURI");
+    private static final Accessor APACHE_GET_METHOD = new Accessor("getMethod");
+    private static final Accessor APACHE_STATUS_LINE = new Accessor("getStatusLine");
+    private static final Accessor APACHE_STATUS_CODE = new Accessor("getStatusCode");
+    private static final Accessor APACHE_ALL_HEADERS = new Accessor("getAllHeaders");
+    private static final Accessor APACHE_GET_ENTITY = new Accessor("getEntity");
+    private static final Accessor APACHE_CONTENT_LENGTH = new Accessor("getContentLength");
+    private static final Accessor APACHE_CONTENT_ENCODING = new Accessor("getContentEncoding");
+    private static final Accessor APACHE_CONTENT_TYPE = new Accessor("getContentType");
+    private static final Accessor APACHE_HEADER_VALUE = new Accessor("getValue");
+    private static final Accessor VOLLEY_GET_URL = new Accessor("getUrl");
+    private static final Accessor OKHTTP_REQUEST_TAG = new Accessor("tag", Class.class);
+    private static final Accessor RETROFIT_INVOCATION_METHOD = new Accessor("method");
+    
+    // Detects third-party HTTP libraries per class loader, off the startup path
+    private static final LibraryProbe PROBE = new LibraryProbe();
     
     // Configuration flags
-    private static final boolean MODIFY_RESPONSES = true; // Set to false to only log
     private static final long FUTURE_EXPIRED_TIME = 4102444800000L; // Jan 1, 2099 in milliseconds
     
     @Override
@@ -38,109 +144,182 @@ public class XposedModule implements IXposedHookLoadPackage {
             return;
         }
         
+        CaptureSink sink = null;
+        if (lpparam.appInfo != null && lpparam.appInfo.dataDir != null) {
+            // Opened lazily by the writer thread, so nothing touches the disk here
+            sink = new CaptureSink(new File(lpparam.appInfo.dataDir, STORE_DIRECTORY),
+                lpparam.packageName, lpparam.processName, STORE_SEGMENT_SIZE, STORE_MAX_SEGMENTS);
+        }
+        // Read the settings before anything is hooked; the writer thread picks up later changes
+        CONFIG.load();
+        EVENTS.start(sink, new MetricsReporter(lpparam.processName, METRICS, ENDPOINTS));
+        
         Log.d(TAG, "🔍 Monitoring network calls in: " + lpparam.packageName);
-        XposedBridge.log("CameraInterceptor: 🔍 Monitoring " + lpparam.packageName + " for /camera/useTimeCode calls");
+        XposedBridge.log("CameraInterceptor: 🔍 Monitoring " + lpparam.packageName + " for " + CONFIG.current().matcher.size() + " endpoint pattern(s)");
         
-        // Hook all major HTTP libraries
+        // Platform classes are always present, so hook them right away
         hookHttpURLConnection(lpparam);
-        hookOkHttp(lpparam);
-        hookRetrofit(lpparam);
-        hookApacheHttpClient(lpparam);
-        hookVolley(lpparam);
         hookWebView(lpparam);
+        
+        // Third-party libraries are hooked only if their classes exist in this app's class loader,
+        // before returning so requests made in Application.onCreate are seen
+        PROBE.installWhenPresent(lpparam.classLoader, lpparam.packageName,
+            new LibraryProbe.Library("OkHttp", "okhttp3.OkHttpClient", () -> hookOkHttp(lpparam)),
+            new LibraryProbe.Library("Retrofit", "retrofit2.Retrofit", () -> hookRetrofit(lpparam)),
+            new LibraryProbe.Library("Apache HttpClient", "org.apache.http.impl.client.DefaultHttpClient",
+                () -> hookApacheHttpClient(lpparam)),
+            new LibraryProbe.Library("Volley", "com.android.volley.Request", () -> hookVolley(lpparam)));
     }
     
     private void hookHttpURLConnection(XC_LoadPackage.LoadPackageParam lpparam) {
         try {
             // Hook URL constructor to catch all URL creations
             XposedHelpers.findAndHookConstructor("java.net.URL", lpparam.classLoader,
-                String.class, new XC_MethodHook() {
+                String.class, new TimedHook(HOOK_URL_INIT) {
                     @Override
-                    protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+                    protected void after(MethodHookParam param) throws Throwable {
+                        CaptureConfig config = CONFIG.current();
+                        if (!config.hookHttpUrlConnection) return;
                         String urlString = (String) param.args[0];
-                        if (urlString != null && urlString.contains(TARGET_ENDPOINT)) {
-                            Log.e(TAG, "🎯 TARGET URL DETECTED!");
-                            Log.e(TAG, "📍 URL: " + urlString);
-                            Log.e(TAG, "📱 Package: " + lpparam.packageName);
-                            Log.e(TAG, "🕐 Timestamp: " + System.currentTimeMillis());
-                            Log.e(TAG, "🌐 Protocol: " + (urlString.startsWith("https") ? "HTTPS ✅" : "HTTP ⚠️"));
-                            XposedBridge.log("CameraInterceptor: 🚨 FOUND TARGET! " + urlString + " in " + lpparam.packageName);
+                        if (config.matcher.matches(urlString)) {
+                            metric.recordMatch();
+                            // Repeats within a window are only counted, and logged by the writer
+                            if (config.policy.reportUrl(urlString)) {
+                                EVENTS.post(metric, CaptureEvent.URL_DETECTED, null, lpparam.packageName, urlString, null);
+                            }
                         }
                     }
                 });
             
-            // Hook HttpURLConnection.connect()
-            XposedHelpers.findAndHookMethod("java.net.HttpURLConnection", lpparam.classLoader,
-                "connect", new XC_MethodHook() {
-                    @Override
-                    protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                        HttpURLConnection connection = (HttpURLConnection) param.thisObject;
-                        URL url = connection.getURL();
+            // java.net.HttpURLConnection does not implement connect/getOutputStream/getInputStream,
+            // so these hooks go on each concrete connection class as it is discovered
+            ConnectionHook connectHook = new ConnectionHook(HOOK_HUC_CONNECT, ConnectionHook.CONNECT) {
+                @Override
+                protected void beforeCall(MethodHookParam param, HttpURLConnection connection) throws Throwable {
+                    CaptureConfig config = CONFIG.current();
+                    if (!config.hookHttpUrlConnection) return;
+                    URL url = connection.getURL();
+                    
+                    // The whole URL, as the other hooks match it, without building the string
+                    int pattern = config.matcher.indexOf(url);
+                    if (pattern != UrlMatcher.NO_MATCH) {
+                        metric.recordMatch();
                         String urlString = url.toString();
-                        
-                        if (urlString.contains(TARGET_ENDPOINT)) {
-                            Log.e(TAG, "🚨 INTERCEPTING CONNECTION!");
-                            Log.e(TAG, "📍 Full URL: " + urlString);
-                            Log.e(TAG, "🌐 Host: " + url.getHost());
-                            Log.e(TAG, "🔢 Port: " + (url.getPort() == -1 ? url.getDefaultPort() : url.getPort()));
-                            Log.e(TAG, "📱 Package: " + lpparam.packageName);
-                            Log.e(TAG, "🔧 Method: " + connection.getRequestMethod());
-                            Log.e(TAG, "📋 Headers: " + getConnectionHeaders(connection));
-                            Log.e(TAG, "🔐 Protocol: " + url.getProtocol().toUpperCase());
-                            Log.e(TAG, "🕐 Current Time (seconds): " + (System.currentTimeMillis() / 1000));
-                            
-                            XposedBridge.log("CameraInterceptor: 🎯 CONNECTING TO: " + urlString + " [" + connection.getRequestMethod() + "]");
-                        }
+                        Exchange exchange = openExchange(connection, urlString, config, url.getHost(), pattern);
+                        if (exchange.capture == CapturePolicy.SKIP) return;
+                        exchange.markConnect();
+                        EVENTS.post(metric, CaptureEvent.CONNECT, exchange.id, null, lpparam.packageName, urlString,
+                            connection.getRequestMethod(), null, 0, -1, getRequestProperties(connection), url);
                     }
-                });
+                }
+            };
             
             // Hook getOutputStream to intercept POST data
-            XposedHelpers.findAndHookMethod("java.net.HttpURLConnection", lpparam.classLoader,
-                "getOutputStream", new XC_MethodHook() {
-                    @Override
-                    protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                        HttpURLConnection connection = (HttpURLConnection) param.thisObject;
-                        URL url = connection.getURL();
+            ConnectionHook outputHook = new ConnectionHook(HOOK_HUC_OUTPUT, ConnectionHook.OUTPUT) {
+                @Override
+                protected void afterCall(MethodHookParam param, HttpURLConnection connection) throws Throwable {
+                    // The app must see the call's own exception, not a wrapper around no stream
+                    if (param.hasThrowable() || param.getResult() == null) {
+                        abandonExchange(metric, connection, lpparam.packageName);
+                        return;
+                    }
+                    CaptureConfig config = CONFIG.current();
+                    if (!config.hookHttpUrlConnection) return;
+                    URL url = connection.getURL();
+                    
+                    // The whole URL, as the other hooks match it, without building the string
+                    int pattern = config.matcher.indexOf(url);
+                    if (pattern != UrlMatcher.NO_MATCH) {
+                        metric.recordMatch();
                         String urlString = url.toString();
+                        OutputStream originalStream = (OutputStream) param.getResult();
+                        Exchange exchange = openExchange(connection, urlString, config, url.getHost(), pattern);
+                        if (exchange.capture == CapturePolicy.SKIP) return;
+                        EVENTS.post(metric, CaptureEvent.REQUEST_STREAM, exchange.id, null, lpparam.packageName,
+                            urlString, connection.getRequestMethod(), null, 0, -1, null, null);
                         
-                        if (urlString.contains(TARGET_ENDPOINT)) {
-                            OutputStream originalStream = (OutputStream) param.getResult();
-                            Log.e(TAG, "📤 INTERCEPTING REQUEST DATA!");
-                            Log.e(TAG, "📍 URL: " + urlString);
-                            Log.e(TAG, "🔧 Method: " + connection.getRequestMethod());
-                            
-                            // Wrap the output stream to capture data
-                            OutputStream wrappedStream = new OutputStreamWrapper(originalStream, urlString, lpparam.packageName);
-                            param.setResult(wrappedStream);
-                            
-                            XposedBridge.log("CameraInterceptor: 📤 Capturing POST data to: " + urlString);
-                        }
+                        // Wrap the output stream to capture data; without a body it only counts and times the bytes
+                        OutputStream wrappedStream = new CapturingOutputStream(originalStream,
+                            BUFFER_POOL.newBuffer(exchange.capture == CapturePolicy.FULL ? config.maxCaptureBytes : 0),
+                            exchange, new RequestCapture(urlString, lpparam.packageName, exchange));
+                        param.setResult(wrappedStream);
                     }
-                });
+                }
+            };
             
             // Hook getInputStream to intercept responses
-            XposedHelpers.findAndHookMethod("java.net.HttpURLConnection", lpparam.classLoader,
-                "getInputStream", new XC_MethodHook() {
-                    @Override
-                    protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                        HttpURLConnection connection = (HttpURLConnection) param.thisObject;
-                        URL url = connection.getURL();
+            ConnectionHook inputHook = new ConnectionHook(HOOK_HUC_INPUT, ConnectionHook.INPUT) {
+                @Override
+                protected void afterCall(MethodHookParam param, HttpURLConnection connection) throws Throwable {
+                    // e.g. FileNotFoundException for a 4xx, which apps answer with getErrorStream()
+                    if (param.hasThrowable() || param.getResult() == null) {
+                        abandonExchange(metric, connection, lpparam.packageName);
+                        return;
+                    }
+                    CaptureConfig config = CONFIG.current();
+                    if (!config.hookHttpUrlConnection) return;
+                    URL url = connection.getURL();
+                    
+                    // The whole URL, as the other hooks match it, without building the string
+                    int pattern = config.matcher.indexOf(url);
+                    if (pattern != UrlMatcher.NO_MATCH) {
+                        metric.recordMatch();
                         String urlString = url.toString();
+                        InputStream originalStream = (InputStream) param.getResult();
+                        // getInputStream() returns once the status line and headers are in
+                        int responseCode = connection.getResponseCode();
+                        Exchange exchange = openExchange(connection, urlString, config, url.getHost(), pattern);
+                        if (exchange.capture == CapturePolicy.SKIP && !config.modifyResponses) {
+                            EXCHANGES.finish(connection);
+                            return;
+                        }
+                        exchange.markResponseStart(responseCode);
+                        if (exchange.capture != CapturePolicy.SKIP) {
+                            EVENTS.post(metric, CaptureEvent.RESPONSE_STREAM, exchange.id, null, lpparam.packageName,
+                                urlString, null, connection.getContentType(), responseCode,
+                                connection.getContentLength(), connection.getHeaderFields(), null);
+                        }
                         
-                        if (urlString.contains(TARGET_ENDPOINT)) {
-                            InputStream originalStream = (InputStream) param.getResult();
-                            Log.e(TAG, "📥 INTERCEPTING RESPONSE!");
-                            Log.e(TAG, "📍 URL: " + urlString);
-                            Log.e(TAG, "📊 Response Code: " + connection.getResponseCode());
-                            Log.e(TAG, "📋 Response Headers: " + connection.getHeaderFields());
-                            Log.e(TAG, "📏 Content Length: " + connection.getContentLength());
-                            Log.e(TAG, "📄 Content Type: " + connection.getContentType());
-                            
-                            // Wrap the input stream to capture and potentially modify response data
-                            InputStream wrappedStream = new InputStreamWrapper(originalStream, urlString, lpparam.packageName);
-                            param.setResult(wrappedStream);
-                            
-                            XposedBridge.log("CameraInterceptor: 📥 Capturing response from: " + urlString + " [" + connection.getResponseCode() + "]");
+                        // Wrap the input stream to capture and potentially modify response data. Rewriting
+                        // needs the whole body even when the policy keeps none of it.
+                        boolean buffer = exchange.capture == CapturePolicy.FULL || config.modifyResponses;
+                        CaptureBuffer capture = BUFFER_POOL.newBuffer(buffer ? config.maxCaptureBytes : 0);
+                        // Apps that ask for compression themselves get the encoded bytes; they are
+                        // captured as-is and inflated by the writer thread
+                        capture.setContent(ContentCoding.of(connection.getContentEncoding()),
+                            connection.getContentType());
+                        // A body the rewrite may need has to stay whole; with rewriting on, only media
+                        // and event streams are streamed
+                        StreamingBody.Sink parts = null;
+                        if (exchange.capture == CapturePolicy.FULL && (!config.modifyResponses
+                                || connection.getContentType() != null
+                                && !isCapturableContentType(connection.getContentType()))) {
+                            parts = part -> EVENTS.post(metric, CaptureEvent.RESPONSE_PROGRESS, exchange.id, null,
+                                lpparam.packageName, urlString, null, null, responseCode, part.totalBytes(), null, part);
+                        }
+                        InputStream wrappedStream = new CapturingInputStream(originalStream, capture, exchange,
+                            new ResponseCapture(HOOK_HUC_INPUT, null, urlString,
+                                lpparam.packageName, connection, exchange, config.modifyResponses),
+                            STREAM_PART_BYTES, parts);
+                        param.setResult(wrappedStream);
+                    }
+                }
+            };
+            
+            // Connection classes are shared by every package in the process, so hook them once
+            if (!CONNECTION_CLASSES.install(connectHook, outputHook, inputHook)) return;
+            
+            // The classes URL.openConnection() returns by default; opening does not connect
+            CONNECTION_CLASSES.discover(new URL("http://localhost/").openConnection().getClass());
+            CONNECTION_CLASSES.discover(new URL("https://localhost/").openConnection().getClass());
+            
+            // Connections from other URL stream handlers are hooked before the app first uses one
+            XposedBridge.hookAllMethods(URL.class, "openConnection", new TimedHook(HOOK_URL_OPEN) {
+                    @Override
+                    protected void after(MethodHookParam param) throws Throwable {
+                        Object connection = param.getResult();
+                        if (connection instanceof HttpURLConnection) {
+                            CONNECTION_CLASSES.discover(connection.getClass());
                         }
                     }
                 });
@@ -154,104 +333,130 @@ public class XposedModule implements IXposedHookLoadPackage {
         try {
             // Hook OkHttp Request.Builder.url()
             Class<?> requestBuilderClass = XposedHelpers.findClass("okhttp3.Request$Builder", lpparam.classLoader);
-            XposedHelpers.findAndHookMethod(requestBuilderClass, "url", String.class, new XC_MethodHook() {
+            XposedHelpers.findAndHookMethod(requestBuilderClass, "url", String.class, new TimedHook(HOOK_OKHTTP_URL) {
                 @Override
-                protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+                protected void before(MethodHookParam param) throws Throwable {
+                    CaptureConfig config = CONFIG.current();
+                    if (!config.hookOkHttp) return;
                     String url = (String) param.args[0];
-                    if (url != null && url.contains(TARGET_ENDPOINT)) {
-                        Log.e(TAG, "🚨 OKHTTP TARGET DETECTED!");
-                        Log.e(TAG, "📍 URL: " + url);
-                        Log.e(TAG, "📱 Package: " + lpparam.packageName);
-                        Log.e(TAG, "🌐 Protocol: " + (url.startsWith("https") ? "HTTPS ✅" : "HTTP ⚠️"));
-                        Log.e(TAG, "🕐 Current Time (seconds): " + (System.currentTimeMillis() / 1000));
-                        XposedBridge.log("CameraInterceptor: 🎯 OkHttp building request to: " + url);
+                    if (config.matcher.matches(url)) {
+                        metric.recordMatch();
+                        if (config.policy.reportUrl(url)) {
+                            EVENTS.post(metric, CaptureEvent.LIBRARY_REQUEST, "OkHttp", lpparam.packageName, url, null);
+                        }
                     }
                 }
             });
             
-            // Hook OkHttp Call.execute()
-            Class<?> callClass = XposedHelpers.findClass("okhttp3.Call", lpparam.classLoader);
-            XposedHelpers.findAndHookMethod(callClass, "execute", new XC_MethodHook() {
+            // Hook the interceptor chain entry point shared by Call.execute() and Call.enqueue().
+            // It is internal in OkHttp 4, so its JVM name carries a suffix ("...$okhttp").
+            Method chainMethod = findOkHttpChainMethod(lpparam.classLoader);
+            if (chainMethod == null) {
+                Log.d(TAG, "OkHttp call chain not found in " + lpparam.packageName);
+                return;
+            }
+            OkHttpBodies bodies = OkHttpBodies.resolve(lpparam.classLoader);
+            if (bodies == null) Log.d(TAG, "OkHttp response bodies cannot be teed in " + lpparam.packageName);
+            XposedBridge.hookMethod(chainMethod, new TimedHook(HOOK_OKHTTP_CALL) {
                 @Override
-                protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                    Object call = param.thisObject;
-                    Object request = XposedHelpers.callMethod(call, "request");
-                    Object url = XposedHelpers.callMethod(request, "url");
-                    String urlString = url.toString();
-                    
-                    if (urlString.contains(TARGET_ENDPOINT)) {
-                        Object method = XposedHelpers.callMethod(request, "method");
-                        Object headers = XposedHelpers.callMethod(request, "headers");
-                        
-                        Log.e(TAG, "🚨 OKHTTP EXECUTE!");
-                        Log.e(TAG, "📍 URL: " + urlString);
-                        Log.e(TAG, "🔧 Method: " + method);
-                        Log.e(TAG, "📋 Headers: " + headers);
-                        Log.e(TAG, "📱 Package: " + lpparam.packageName);
-                        Log.e(TAG, "🕐 Current Time (seconds): " + (System.currentTimeMillis() / 1000));
-                        XposedBridge.log("CameraInterceptor: 🎯 OkHttp executing: " + method + " " + urlString);
+                protected void before(MethodHookParam param) throws Throwable {
+                    Exchange exchange = null;
+                    try {
+                        CaptureConfig config = CONFIG.current();
+                        if (!config.hookOkHttp) return;
+                        Object request = OKHTTP_CALL_REQUEST.get(param.thisObject);
+                        String urlString = OKHTTP_REQUEST_URL.get(request).toString();
+                        int pattern = config.matcher.indexOf(urlString);
+                        if (pattern != UrlMatcher.NO_MATCH) {
+                            metric.recordMatch();
+                            exchange = openExchange(param.thisObject, urlString, config, CapturePolicy.host(urlString), pattern);
+                            if (exchange.capture != CapturePolicy.SKIP) {
+                                exchange.markConnect();
+                                if (config.hookRetrofit) exchange.setContext(retrofitContext(request));
+                                Object method = OKHTTP_REQUEST_METHOD.get(request);
+                                Object headers = OKHTTP_HEADERS.get(request);
+                                EVENTS.post(metric, CaptureEvent.LIBRARY_REQUEST, exchange.id, "OkHttp", lpparam.packageName,
+                                    urlString, String.valueOf(method), exchange.context(), 0, -1, headers, null);
+                            }
+                        }
+                    } finally {
+                        // Carry the exchange to after() instead of recomputing the match there;
+                        // always pushed so the frames stay balanced
+                        HookFrames.current().push(exchange);
                     }
                 }
                 
                 @Override
-                protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                    Object call = param.thisObject;
-                    Object request = XposedHelpers.callMethod(call, "request");
-                    Object url = XposedHelpers.callMethod(request, "url");
-                    String urlString = url.toString();
+                protected void after(MethodHookParam param) throws Throwable {
+                    Exchange exchange = (Exchange) HookFrames.current().pop();
+                    if (exchange == null) return;
+                    EXCHANGES.finish(param.thisObject);
+                    Object response = param.getResult();
+                    if (exchange.capture == CapturePolicy.SKIP || response == null) return;
                     
-                    if (urlString.contains(TARGET_ENDPOINT)) {
-                        Object response = param.getResult();
-                        Object code = XposedHelpers.callMethod(response, "code");
-                        Object headers = XposedHelpers.callMethod(response, "headers");
-                        
-                        Log.e(TAG, "📥 OKHTTP RESPONSE!");
-                        Log.e(TAG, "📍 URL: " + urlString);
-                        Log.e(TAG, "📊 Response Code: " + code);
-                        Log.e(TAG, "📋 Response Headers: " + headers);
-                        XposedBridge.log("CameraInterceptor: 📥 OkHttp response: " + code + " from " + urlString);
-                        
-                        // Try to modify OkHttp response if enabled
-                        if (MODIFY_RESPONSES) {
-                            try {
-                                Object responseBody = XposedHelpers.callMethod(response, "body");
-                                if (responseBody != null) {
-                                    String bodyString = (String) XposedHelpers.callMethod(responseBody, "string");
-                                    String modifiedBody = modifyJsonResponse(bodyString, urlString);
-                                    if (!bodyString.equals(modifiedBody)) {
-                                        Log.e(TAG, "🔧 MODIFIED OKHTTP RESPONSE!");
-                                        Log.e(TAG, "📍 URL: " + urlString);
-                                        Log.e(TAG, "📝 Modified JSON: " + modifiedBody);
-                                        XposedBridge.log("CameraInterceptor: 🔧 Modified OkHttp response for: " + urlString);
-                                    }
-                                }
-                            } catch (Exception e) {
-                                Log.d(TAG, "Could not modify OkHttp response: " + e.getMessage());
-                            }
-                        }
+                    // The chain returns with the headers; the app reads the body afterwards
+                    int code = (Integer) OKHTTP_RESPONSE_CODE.get(response);
+                    exchange.markResponseStart(code);
+                    Object headers = OKHTTP_HEADERS.get(response);
+                    Object responseBody = OKHTTP_RESPONSE_BODY.get(response);
+                    long contentLength = responseBody != null ? (Long) OKHTTP_BODY_CONTENT_LENGTH.get(responseBody) : -1;
+                    EVENTS.post(metric, CaptureEvent.LIBRARY_RESPONSE, exchange.id, "OkHttp", lpparam.packageName,
+                        exchange.url, null, null, code, contentLength, headers, null);
+                    
+                    // The body is captured as the app reads it; the listener then ends the exchange
+                    Object teed = exchange.capture == CapturePolicy.FULL && bodies != null
+                        ? teeOkHttpBody(bodies, response, responseBody, exchange,
+                            new ResponseCapture(metric, "OkHttp", exchange.url, lpparam.packageName,
+                                param.thisObject, exchange, false)) : null;
+                    if (teed != null) {
+                        param.setResult(teed);
+                        return;
                     }
+                    // Without a body to wait for, the exchange ends with the headers
+                    exchange.markClose();
+                    EVENTS.post(metric, CaptureEvent.EXCHANGE, exchange.id, "OkHttp", lpparam.packageName,
+                        exchange.url, null, null, 0, -1, null, exchange);
                 }
             });
             
         } catch (Throwable t) {
-            Log.d(TAG, "OkHttp not found in " + lpparam.packageName);
+            Log.e(TAG, "Error hooking OkHttp: " + t.getMessage());
         }
     }
     
     private void hookRetrofit(XC_LoadPackage.LoadPackageParam lpparam) {
         try {
-            // Hook Retrofit service method calls
-            Class<?> serviceMethodClass = XposedHelpers.findClass("retrofit2.ServiceMethod", lpparam.classLoader);
-            XposedHelpers.findAndHookMethod(serviceMethodClass, "invoke", Object[].class, new XC_MethodHook() {
+            // ServiceMethod.invoke is abstract since Retrofit 2.5; HttpServiceMethod implements it
+            Class<?> serviceMethodClass = XposedHelpers.findClassIfExists("retrofit2.HttpServiceMethod", lpparam.classLoader);
+            if (serviceMethodClass == null) {
+                serviceMethodClass = XposedHelpers.findClass("retrofit2.ServiceMethod", lpparam.classLoader);
+            }
+            RETROFIT.setInvocationClass(XposedHelpers.findClassIfExists("retrofit2.Invocation", lpparam.classLoader));
+            XposedHelpers.findAndHookMethod(serviceMethodClass, "invoke", Object[].class, new TimedHook(HOOK_RETROFIT_INVOKE) {
                 @Override
-                protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                    Log.d(TAG, "🔧 Retrofit service method called in " + lpparam.packageName);
-                    Log.d(TAG, "🕐 Current Time (seconds): " + (System.currentTimeMillis() / 1000));
-                    XposedBridge.log("CameraInterceptor: Retrofit call detected in " + lpparam.packageName);
+                protected void before(MethodHookParam param) throws Throwable {
+                    CaptureConfig config = CONFIG.current();
+                    if (!config.hookRetrofit) return;
+                    // Non-matching methods stop at this lookup after their first call
+                    RetrofitMethods.Decision decision = RETROFIT.decide(param.thisObject, config);
+                    String url = decision.url;
+                    if (decision.isDynamic()) {
+                        Object[] args = (Object[]) param.args[0];
+                        if (args == null || decision.urlArgument >= args.length) return;
+                        url = String.valueOf(args[decision.urlArgument]);
+                        if (!config.matcher.matches(url)) return;
+                    } else if (decision.pattern == UrlMatcher.NO_MATCH) {
+                        return;
+                    }
+                    metric.recordMatch();
+                    if (config.policy.reportUrl(url)) {
+                        EVENTS.post(metric, CaptureEvent.RETROFIT_CALL, 0, "Retrofit", lpparam.packageName, url,
+                            decision.httpMethod, decision.context, 0, -1, null, null);
+                    }
                 }
             });
         } catch (Throwable t) {
-            Log.d(TAG, "Retrofit not found in " + lpparam.packageName);
+            Log.e(TAG, "Error hooking Retrofit: " + t.getMessage());
         }
     }
     
@@ -259,27 +464,71 @@ public class XposedModule implements IXposedHookLoadPackage {
         try {
             // Hook Apache HttpClient
             Class<?> httpClientClass = XposedHelpers.findClass("org.apache.http.impl.client.DefaultHttpClient", lpparam.classLoader);
-            XposedHelpers.findAndHookMethod(httpClientClass, "execute", "org.apache.http.client.methods.HttpUriRequest", new XC_MethodHook() {
+            XposedHelpers.findAndHookMethod(httpClientClass, "execute", "org.apache.http.client.methods.HttpUriRequest", new TimedHook(HOOK_APACHE_EXECUTE) {
+                @Override
+                protected void before(MethodHookParam param) throws Throwable {
+                    Exchange exchange = null;
+                    try {
+                        CaptureConfig config = CONFIG.current();
+                        if (!config.hookApache) return;
+                        Object request = param.args[0];
+                        Object uri = APACHE_GET_URI.get(request);
+                        String uriString = String.valueOf(uri);
+                        
+                        int pattern = config.matcher.indexOf(uriString);
+                        if (pattern != UrlMatcher.NO_MATCH) {
+                            metric.recordMatch();
+                            exchange = openExchange(request, uriString, config, CapturePolicy.host(uriString), pattern);
+                            ThreadExchange.enter(request, exchange);
+                            if (exchange.capture != CapturePolicy.SKIP) {
+                                exchange.markConnect();
+                                Object method = APACHE_GET_METHOD.get(request);
+                                EVENTS.post(metric, CaptureEvent.LIBRARY_REQUEST, exchange.id, "Apache HTTP",
+                                    lpparam.packageName, uriString, String.valueOf(method), null, 0, -1, null, null);
+                            }
+                        }
+                    } finally {
+                        // Carry the exchange to after(); always pushed so the frames stay balanced
+                        HookFrames.current().push(exchange);
+                    }
+                }
+                
                 @Override
-                protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+                protected void after(MethodHookParam param) throws Throwable {
+                    Exchange exchange = (Exchange) HookFrames.current().pop();
+                    if (exchange == null) return;
                     Object request = param.args[0];
-                    Object uri = XposedHelpers.callMethod(request, "getURI");
-                    String uriString = uri.toString();
+                    ThreadExchange.exit(request);
+                    Object response = param.getResult();
+                    if (exchange.capture == CapturePolicy.SKIP || response == null) {
+                        EXCHANGES.finish(request);
+                        return;
+                    }
                     
-                    if (uriString.contains(TARGET_ENDPOINT)) {
-                        Object method = XposedHelpers.callMethod(request, "getMethod");
-                        Log.e(TAG, "🚨 APACHE HTTP CLIENT TARGET!");
-                        Log.e(TAG, "📍 URI: " + uriString);
-                        Log.e(TAG, "🔧 Method: " + method);
-                        Log.e(TAG, "📱 Package: " + lpparam.packageName);
-                        Log.e(TAG, "🌐 Protocol: " + (uriString.startsWith("https") ? "HTTPS ✅" : "HTTP ⚠️"));
-                        Log.e(TAG, "🕐 Current Time (seconds): " + (System.currentTimeMillis() / 1000));
-                        XposedBridge.log("CameraInterceptor: 🎯 Apache HTTP: " + method + " " + uriString);
+                    int status = (Integer) APACHE_STATUS_CODE.get(APACHE_STATUS_LINE.get(response));
+                    exchange.markResponseStart(status);
+                    Object entity = APACHE_GET_ENTITY.get(response);
+                    long contentLength = entity != null ? (Long) APACHE_CONTENT_LENGTH.get(entity) : -1;
+                    EVENTS.post(metric, CaptureEvent.LIBRARY_RESPONSE, exchange.id, "Apache HTTP", lpparam.packageName,
+                        exchange.url, null, null, status, contentLength, APACHE_ALL_HEADERS.get(response), null);
+                    
+                    ResponseCapture listener = new ResponseCapture(metric, "Apache HTTP", exchange.url,
+                        lpparam.packageName, request, exchange, false);
+                    CaptureBuffer capture = BUFFER_POOL.newBuffer(
+                        exchange.capture == CapturePolicy.FULL ? CONFIG.current().maxCaptureBytes : 0);
+                    if (entity == null) {
+                        exchange.markClose();
+                        listener.onResponseBody(capture);
+                        return;
                     }
+                    // The body is captured as the app reads it from the entity; nothing is read ahead
+                    capture.setContent(ContentCoding.of(apacheHeaderValue(APACHE_CONTENT_ENCODING.get(entity))),
+                        apacheHeaderValue(APACHE_CONTENT_TYPE.get(entity)));
+                    APACHE_ENTITIES.track(entity, exchange, capture, listener);
                 }
             });
         } catch (Throwable t) {
-            Log.d(TAG, "Apache HttpClient not found in " + lpparam.packageName);
+            Log.e(TAG, "Error hooking Apache HttpClient: " + t.getMessage());
         }
     }
     
@@ -287,25 +536,94 @@ public class XposedModule implements IXposedHookLoadPackage {
         try {
             // Hook Volley Request
             Class<?> requestClass = XposedHelpers.findClass("com.android.volley.Request", lpparam.classLoader);
-            XposedHelpers.findAndHookConstructor(requestClass, int.class, String.class, "com.android.volley.Response$ErrorListener", new XC_MethodHook() {
+            XposedHelpers.findAndHookConstructor(requestClass, int.class, String.class, "com.android.volley.Response$ErrorListener", new TimedHook(HOOK_VOLLEY_REQUEST) {
                 @Override
-                protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+                protected void after(MethodHookParam param) throws Throwable {
+                    CaptureConfig config = CONFIG.current();
+                    if (!config.hookVolley) return;
                     String url = (String) param.args[1];
                     int method = (Integer) param.args[0];
-                    if (url != null && url.contains(TARGET_ENDPOINT)) {
-                        String methodName = getVolleyMethodName(method);
-                        Log.e(TAG, "🚨 VOLLEY TARGET DETECTED!");
-                        Log.e(TAG, "📍 URL: " + url);
-                        Log.e(TAG, "🔧 Method: " + methodName + " (" + method + ")");
-                        Log.e(TAG, "📱 Package: " + lpparam.packageName);
-                        Log.e(TAG, "🌐 Protocol: " + (url.startsWith("https") ? "HTTPS ✅" : "HTTP ⚠️"));
-                        Log.e(TAG, "🕐 Current Time (seconds): " + (System.currentTimeMillis() / 1000));
-                        XposedBridge.log("CameraInterceptor: 🎯 Volley request: " + methodName + " " + url);
+                    if (config.matcher.matches(url)) {
+                        metric.recordMatch();
+                        if (config.policy.reportUrl(url)) {
+                            EVENTS.post(metric, CaptureEvent.LIBRARY_REQUEST, "Volley", lpparam.packageName, url,
+                                getVolleyMethodName(method));
+                        }
+                    }
+                }
+            });
+            
+            // The network dispatcher runs each request, retries included, through Network.performRequest.
+            // Volley hands over a response only once its body is read, so time to first byte equals the total.
+            Class<?> networkClass = XposedHelpers.findClassIfExists("com.android.volley.toolbox.BasicNetwork",
+                lpparam.classLoader);
+            if (networkClass == null) {
+                Log.d(TAG, "Volley BasicNetwork not found in " + lpparam.packageName);
+                return;
+            }
+            XposedHelpers.findAndHookMethod(networkClass, "performRequest", requestClass, new TimedHook(HOOK_VOLLEY_NETWORK) {
+                @Override
+                protected void before(MethodHookParam param) throws Throwable {
+                    Exchange exchange = null;
+                    try {
+                        CaptureConfig config = CONFIG.current();
+                        if (!config.hookVolley) return;
+                        Object request = param.args[0];
+                        String url = (String) VOLLEY_GET_URL.get(request);
+                        int pattern = config.matcher.indexOf(url);
+                        if (pattern != UrlMatcher.NO_MATCH) {
+                            metric.recordMatch();
+                            exchange = openExchange(request, url, config, CapturePolicy.host(url), pattern);
+                            // The HTTP stack underneath (HurlStack, HttpClientStack) joins this exchange
+                            ThreadExchange.enter(request, exchange);
+                        }
+                    } finally {
+                        HookFrames.current().push(exchange);
+                    }
+                }
+                
+                @Override
+                protected void after(MethodHookParam param) throws Throwable {
+                    Exchange exchange = (Exchange) HookFrames.current().pop();
+                    if (exchange == null) return;
+                    Object request = param.args[0];
+                    ThreadExchange.exit(request);
+                    EXCHANGES.finish(request);
+                    if (exchange.capture == CapturePolicy.SKIP) return;
+                    
+                    // Error statuses arrive as a VolleyError carrying the response
+                    Object response = param.getResult();
+                    if (response == null) response = volleyErrorResponse(param.getThrowable());
+                    int status = response != null ? XposedHelpers.getIntField(response, "statusCode") : 0;
+                    byte[] data = response != null ? (byte[]) XposedHelpers.getObjectField(response, "data") : null;
+                    Object headers = response != null ? XposedHelpers.getObjectField(response, "headers") : null;
+                    
+                    // A hooked client underneath already captured the body and recorded the exchange
+                    boolean recorded = exchange.isClosed();
+                    CaptureBuffer capture = null;
+                    if (!recorded) {
+                        exchange.markResponseStart(status);
+                        exchange.markClose();
+                        if (data != null && exchange.capture == CapturePolicy.FULL) {
+                            capture = BUFFER_POOL.newBuffer(CONFIG.current().maxCaptureBytes);
+                            capture.write(data, 0, data.length);
+                            capture.setContent(ContentCoding.of(volleyHeaderValue(headers, "Content-Encoding")),
+                                volleyHeaderValue(headers, "Content-Type"));
+                        }
+                    }
+                    if (!EVENTS.post(metric, CaptureEvent.LIBRARY_RESPONSE, exchange.id, "Volley", lpparam.packageName,
+                            exchange.url, null, null, status, data != null ? data.length : -1, headers, capture)
+                            && capture != null) {
+                        capture.release();
+                    }
+                    if (!recorded) {
+                        EVENTS.post(metric, CaptureEvent.EXCHANGE, exchange.id, "Volley", lpparam.packageName,
+                            exchange.url, null, null, 0, -1, null, exchange);
                     }
                 }
             });
         } catch (Throwable t) {
-            Log.d(TAG, "Volley not found in " + lpparam.packageName);
+            Log.e(TAG, "Error hooking Volley: " + t.getMessage());
         }
     }
     
@@ -313,55 +631,252 @@ public class XposedModule implements IXposedHookLoadPackage {
         try {
             // Hook WebView loadUrl
             XposedHelpers.findAndHookMethod("android.webkit.WebView", lpparam.classLoader,
-                "loadUrl", String.class, new XC_MethodHook() {
+                "loadUrl", String.class, new TimedHook(HOOK_WEBVIEW_LOAD) {
                     @Override
-                    protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+                    protected void before(MethodHookParam param) throws Throwable {
+                        CaptureConfig config = CONFIG.current();
+                        if (!config.hookWebView) return;
                         String url = (String) param.args[0];
-                        if (url != null && url.contains(TARGET_ENDPOINT)) {
-                            Log.e(TAG, "🚨 WEBVIEW TARGET DETECTED!");
-                            Log.e(TAG, "📍 URL: " + url);
-                            Log.e(TAG, "📱 Package: " + lpparam.packageName);
-                            Log.e(TAG, "🌐 Protocol: " + (url.startsWith("https") ? "HTTPS ✅" : "HTTP ⚠️"));
-                            Log.e(TAG, "🕐 Current Time (seconds): " + (System.currentTimeMillis() / 1000));
-                            XposedBridge.log("CameraInterceptor: 🎯 WebView loading: " + url);
+                        if (config.matcher.matches(url)) {
+                            metric.recordMatch();
+                            if (config.policy.reportUrl(url)) {
+                                EVENTS.post(metric, CaptureEvent.LIBRARY_REQUEST, "WebView", lpparam.packageName, url, "GET");
+                            }
                         }
                     }
                 });
                 
             // Hook WebView postUrl for POST requests
             XposedHelpers.findAndHookMethod("android.webkit.WebView", lpparam.classLoader,
-                "postUrl", String.class, byte[].class, new XC_MethodHook() {
+                "postUrl", String.class, byte[].class, new TimedHook(HOOK_WEBVIEW_POST) {
                     @Override
-                    protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+                    protected void before(MethodHookParam param) throws Throwable {
+                        CaptureConfig config = CONFIG.current();
+                        if (!config.hookWebView) return;
                         String url = (String) param.args[0];
                         byte[] postData = (byte[]) param.args[1];
-                        if (url != null && url.contains(TARGET_ENDPOINT)) {
-                            String postDataString = new String(postData, StandardCharsets.UTF_8);
-                            Log.e(TAG, "🚨 WEBVIEW POST TARGET!");
-                            Log.e(TAG, "📍 URL: " + url);
-                            Log.e(TAG, "📤 POST Data: " + postDataString);
-                            Log.e(TAG, "📱 Package: " + lpparam.packageName);
-                            Log.e(TAG, "🌐 Protocol: " + (url.startsWith("https") ? "HTTPS ✅" : "HTTP ⚠️"));
-                            Log.e(TAG, "🕐 Current Time (seconds): " + (System.currentTimeMillis() / 1000));
-                            XposedBridge.log("CameraInterceptor: 🎯 WebView POST: " + url);
+                        int pattern = config.matcher.indexOf(url);
+                        if (pattern != UrlMatcher.NO_MATCH) {
+                            metric.recordMatch();
+                            if (config.policy.admit(CapturePolicy.host(url), pattern)) {
+                                EVENTS.post(metric, CaptureEvent.LIBRARY_REQUEST, "WebView", lpparam.packageName, url,
+                                    "POST", null, 0, postData != null ? postData.length : 0, null,
+                                    config.policy.sampleBody() ? postData : null);
+                            }
                         }
                     }
                 });
+            
+            // Requests made inside pages (sub-resources, XHR, fetch) only show up in the client's
+            // callbacks. They are observed, never answered: each page load is an exchange keyed by
+            // its WebView that counts the page's requests, and matching requests are posted under it.
+            // A page that is not a target stays untracked until one of its requests matches.
+            WebViewClientHook interceptHook = new WebViewClientHook(HOOK_WEBVIEW_INTERCEPT) {
+                @Override
+                protected void beforeCall(MethodHookParam param) throws Throwable {
+                    CaptureConfig config = CONFIG.current();
+                    if (!config.hookWebView) return;
+                    WebResourceRequest request = (WebResourceRequest) param.args[1];
+                    if (request == null || request.getUrl() == null) return;
+                    String url = request.getUrl().toString();
+                    int pattern = config.matcher.indexOf(url);
+                    // The main-frame request starts a navigation; onPageStarted only follows once it commits
+                    Exchange page;
+                    if (request.isForMainFrame()) {
+                        page = startPage(param.args[0], url, config, pattern);
+                    } else {
+                        page = EXCHANGES.get(param.args[0]);
+                        if (page != null) page.markSubrequest();
+                    }
+                    if (pattern == UrlMatcher.NO_MATCH) return;
+                    metric.recordMatch();
+                    // Promoted only while loading, so onPageFinished still posts the page
+                    if (page != null && !page.isTracked() && !page.isClosed()) {
+                        page = EXCHANGES.promote(param.args[0], config.policy, CapturePolicy.host(page.url), pattern);
+                    }
+                    if (config.policy.admit(CapturePolicy.host(url), pattern)) {
+                        EVENTS.post(metric, CaptureEvent.LIBRARY_REQUEST, page != null ? page.id : 0, "WebView",
+                            lpparam.packageName, url, request.getMethod(), null, 0, -1,
+                            request.getRequestHeaders(), null);
+                    }
+                }
+            };
+            
+            WebViewClientHook startedHook = new WebViewClientHook(HOOK_WEBVIEW_PAGE_STARTED) {
+                @Override
+                protected void beforeCall(MethodHookParam param) throws Throwable {
+                    CaptureConfig config = CONFIG.current();
+                    if (!config.hookWebView) return;
+                    Exchange page = EXCHANGES.get(param.args[0]);
+                    // Navigations served without a request (history, cache, about:blank) start here
+                    if (page == null || page.timeToFirstByte() >= 0) {
+                        String url = (String) param.args[1];
+                        if (url == null) return;
+                        page = startPage(param.args[0], url, config, config.matcher.indexOf(url));
+                    }
+                    // The WebView reports no status for the main document
+                    page.markResponseStart(0);
+                }
+            };
+            
+            WebViewClientHook finishedHook = new WebViewClientHook(HOOK_WEBVIEW_PAGE_FINISHED) {
+                @Override
+                protected void beforeCall(MethodHookParam param) throws Throwable {
+                    if (!CONFIG.current().hookWebView) return;
+                    // Stays the WebView's page until the next navigation, so later XHRs are grouped under it;
+                    // onPageFinished can come more than once per load
+                    Exchange page = EXCHANGES.get(param.args[0]);
+                    if (page == null || page.isClosed()) return;
+                    page.markClose();
+                    if (!page.isTracked()) {
+                        // A request that matched while the page finished may have promoted it meanwhile
+                        page = EXCHANGES.get(param.args[0]);
+                        if (page == null || !page.isTracked()) return;
+                        page.markClose();
+                    }
+                    if (page.capture == CapturePolicy.SKIP) return;
+                    EVENTS.post(metric, CaptureEvent.EXCHANGE, page.id, "WebView", lpparam.packageName,
+                        page.url, null, null, 0, -1, null, page);
+                }
+            };
+            
+            // Client classes are shared by every package in the process, so hook them once
+            if (!WEBVIEW_CLIENTS.install(interceptHook, startedHook, finishedHook)) return;
+            
+            // A WebView without a client of the app's calls a plain WebViewClient
+            WEBVIEW_CLIENTS.discover(WebViewClient.class);
+            XposedHelpers.findAndHookMethod("android.webkit.WebView", lpparam.classLoader,
+                "setWebViewClient", "android.webkit.WebViewClient", new TimedHook(HOOK_WEBVIEW_CLIENT) {
+                    @Override
+                    protected void after(MethodHookParam param) throws Throwable {
+                        Object client = param.args[0];
+                        if (client != null) WEBVIEW_CLIENTS.discover(client.getClass());
+                    }
+                });
         } catch (Throwable t) {
             Log.e(TAG, "Error hooking WebView: " + t.getMessage());
         }
     }
     
-    private String getConnectionHeaders(HttpURLConnection connection) {
-        try {
-            Map<String, List<String>> headers = connection.getRequestProperties();
-            StringBuilder sb = new StringBuilder();
-            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
-                sb.append(entry.getKey()).append(": ").append(entry.getValue()).append("; ");
+    // Ends the exchange of a connection whose stream call threw; it has no body to wait for
+    private static void abandonExchange(HookMetrics.Hook metric, HttpURLConnection connection, String packageName) {
+        Exchange exchange = EXCHANGES.finish(connection);
+        if (exchange == null) return;
+        exchange.markClose();
+        if (exchange.capture != CapturePolicy.SKIP) {
+            EVENTS.post(metric, CaptureEvent.EXCHANGE, exchange.id, null, packageName, exchange.url,
+                null, null, 0, -1, null, exchange);
+        }
+    }
+    
+    // Starts a WebView's next page load; one that never finished is dropped without being reported.
+    // An untargeted page takes no id and no policy decision, only counting its requests.
+    private static Exchange startPage(Object webView, String url, CaptureConfig config, int pattern) {
+        EXCHANGES.finish(webView);
+        Exchange page = pattern != UrlMatcher.NO_MATCH
+            ? EXCHANGES.open(webView, url, config.policy, CapturePolicy.host(url), pattern)
+            : EXCHANGES.openUntracked(webView, url);
+        page.markConnect();
+        return page;
+    }
+    
+    private static Method findOkHttpChainMethod(ClassLoader classLoader) {
+        Class<?> realCall = XposedHelpers.findClassIfExists("okhttp3.internal.connection.RealCall", classLoader);
+        if (realCall == null) {
+            realCall = XposedHelpers.findClassIfExists("okhttp3.RealCall", classLoader);
+        }
+        if (realCall == null) return null;
+        for (Method method : realCall.getDeclaredMethods()) {
+            if (method.getName().startsWith("getResponseWithInterceptorChain")
+                    && method.getParameterTypes().length == 0) {
+                return method;
             }
-            return sb.toString();
+        }
+        return null;
+    }
+    
+    /**
+     * Returns a copy of an OkHttp response whose body is captured as the app
+     * reads it (see OkHttpBodies), or null to leave the response alone:
+     * streams and media, which would hold a capture buffer for as long as
+     * they run, and bodies that cannot be wrapped.
+     */
+    private static Object teeOkHttpBody(OkHttpBodies bodies, Object response, Object body, Exchange exchange,
+                                        ResponseCapture listener) {
+        if (body == null) return null;
+        CaptureBuffer capture = null;
+        try {
+            Object contentType = OKHTTP_BODY_CONTENT_TYPE.get(body);
+            String type = contentType != null ? contentType.toString() : null;
+            if (type != null && !isCapturableContentType(type)) return null;
+            // Set only if the app asked for the encoding itself; OkHttp decodes the bodies it asked for
+            String encoding = (String) OKHTTP_RESPONSE_HEADER.invoke(response, "Content-Encoding");
+            capture = BUFFER_POOL.newBuffer(CONFIG.current().maxCaptureBytes);
+            capture.setContent(ContentCoding.of(encoding), type);
+            Object teed = bodies.tee(response, body, exchange, capture, listener);
+            if (teed != null) return teed;
+        } catch (Throwable t) {
+            // Fall through; the response is returned as it is
+        }
+        if (capture != null) capture.release();
+        return null;
+    }
+    
+    private static boolean isCapturableContentType(String contentType) {
+        String type = contentType.toLowerCase();
+        return !type.contains("event-stream")
+            && !type.startsWith("image/")
+            && !type.startsWith("video/")
+            && !type.startsWith("audio/")
+            && !type.contains("octet-stream");
+    }
+    
+    // Starts the request's exchange, or joins one a library hook opened further up this thread's stack
+    private static Exchange openExchange(Object connection, String url, CaptureConfig config, String host, int pattern) {
+        Exchange outer = ThreadExchange.current();
+        if (outer != null) return EXCHANGES.adopt(connection, outer);
+        return EXCHANGES.open(connection, url, config.policy, host, pattern);
+    }
+    
+    // The Retrofit interface method an OkHttp request was made for (Retrofit 2.6+ tags requests), or null
+    private static String retrofitContext(Object request) {
+        Class<?> invocationClass = RETROFIT.invocationClass();
+        if (invocationClass == null) return null;
+        try {
+            Object invocation = OKHTTP_REQUEST_TAG.invoke(request, invocationClass);
+            return invocation != null ? RETROFIT.context((Method) RETROFIT_INVOCATION_METHOD.get(invocation)) : null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // OkHttp 3.10 and older have no typed tags
+            return null;
+        }
+    }
+    
+    // Value of an Apache Header, or null
+    private static String apacheHeaderValue(Object header) throws ReflectiveOperationException {
+        return header != null ? (String) APACHE_HEADER_VALUE.get(header) : null;
+    }
+    
+    // Volley keeps response headers in a case-insensitive map in current versions, but not in old ones
+    private static String volleyHeaderValue(Object headers, String name) {
+        if (!(headers instanceof Map)) return null;
+        Map<?, ?> map = (Map<?, ?>) headers;
+        Object value = map.get(name);
+        if (value == null) value = map.get(name.toLowerCase(Locale.ROOT));
+        return value != null ? value.toString() : null;
+    }
+    
+    // The NetworkResponse a VolleyError carries for error statuses, or null
+    private static Object volleyErrorResponse(Throwable error) {
+        if (error == null || XposedHelpers.findFieldIfExists(error.getClass(), "networkResponse") == null) return null;
+        return XposedHelpers.getObjectField(error, "networkResponse");
+    }
+    
+    private static Map<String, List<String>> getRequestProperties(HttpURLConnection connection) {
+        try {
+            return connection.getRequestProperties();
         } catch (Exception e) {
-            return "Unable to read headers";
+            // Throws once the connection is already established
+            return null;
         }
     }
     
@@ -379,254 +894,83 @@ public class XposedModule implements IXposedHookLoadPackage {
         }
     }
     
-    // Method to modify JSON response with dynamic timing
-    private String modifyJsonResponse(String originalJson, String url) {
-        try {
-            JSONObject json = new JSONObject(originalJson);
-            
-            // Check if this looks like a camera/useTimeCode response
-            if (json.has("code") || json.has("now") || json.has("expiredTime") || json.has("token")) {
-                long currentTimeSeconds = System.currentTimeMillis() / 1000;
-                
-                Log.e(TAG, "🔧 MODIFYING JSON RESPONSE!");
-                Log.e(TAG, "📍 URL: " + url);
-                Log.e(TAG, "📝 Original: " + originalJson);
-                
-                // Update timing fields with current time and future expiration
-                if (json.has("now")) {
-                    json.put("now", currentTimeSeconds);
-                    Log.e(TAG, "🕐 Updated 'now' to: " + currentTimeSeconds);
-                }
-                
-                if (json.has("expiredTime")) {
-                    json.put("expiredTime", FUTURE_EXPIRED_TIME);
-                    Log.e(TAG, "⏰ Updated 'expiredTime' to: " + FUTURE_EXPIRED_TIME + " (2099)");
-                }
-                
-                // Keep remain time high if it exists
-                if (json.has("remain")) {
-                    json.put("remain", 999999);
-                    Log.e(TAG, "⏳ Updated 'remain' to: 999999");
-                }
-                
-                // Ensure success code
-                if (json.has("code")) {
-                    json.put("code", 200);
-                    Log.e(TAG, "✅ Updated 'code' to: 200");
-                }
-                
-                String modifiedJson = json.toString();
-                Log.e(TAG, "📝 Modified: " + modifiedJson);
-                XposedBridge.log("CameraInterceptor: 🔧 Modified response timing for: " + url);
-                
-                return modifiedJson;
-            }
-        } catch (JSONException e) {
-            Log.d(TAG, "Not a JSON response or parsing error: " + e.getMessage());
-        }
-        
-        return originalJson; // Return original if not modifiable
-    }
-    
-    // Wrapper class to capture POST data
-    private static class OutputStreamWrapper extends OutputStream {
-        private final OutputStream originalStream;
-        private final ByteArrayOutputStream captureStream;
+    // Hands a captured request body to the writer thread
+    private static class RequestCapture implements CapturingOutputStream.Listener {
         private final String url;
         private final String packageName;
+        private final Exchange exchange;
         
-        public OutputStreamWrapper(OutputStream original, String url, String packageName) {
-            this.originalStream = original;
-            this.captureStream = new ByteArrayOutputStream();
+        RequestCapture(String url, String packageName, Exchange exchange) {
             this.url = url;
             this.packageName = packageName;
+            this.exchange = exchange;
         }
         
         @Override
-        public void write(int b) throws IOException {
-            originalStream.write(b);
-            captureStream.write(b);
-        }
-        
-        @Override
-        public void write(byte[] b) throws IOException {
-            originalStream.write(b);
-            captureStream.write(b);
-        }
-        
-        @Override
-        public void write(byte[] b, int off, int len) throws IOException {
-            originalStream.write(b, off, len);
-            captureStream.write(b, off, len);
-        }
-        
-        @Override
-        public void close() throws IOException {
-            String postData = captureStream.toString(StandardCharsets.UTF_8.name());
-            Log.e(TAG, "📤 CAPTURED POST DATA!");
-            Log.e(TAG, "📍 URL: " + url);
-            Log.e(TAG, "📱 Package: " + packageName);
-            Log.e(TAG, "📄 Data: " + postData);
-            Log.e(TAG, "🕐 Timestamp: " + (System.currentTimeMillis() / 1000));
-            
-            // Try to parse and log JSON structure
-            try {
-                JSONObject json = new JSONObject(postData);
-                Log.e(TAG, "📋 JSON Structure: " + json.toString(2));
-            } catch (JSONException e) {
-                Log.d(TAG, "POST data is not JSON: " + e.getMessage());
+        public void onRequestBody(CaptureBuffer capture) {
+            // Hand the buffer to the writer thread; it is not touched here again
+            if (exchange.capture != CapturePolicy.FULL
+                    || !EVENTS.post(HOOK_HUC_OUTPUT, CaptureEvent.REQUEST_BODY, exchange.id, null, packageName, url,
+                    null, null, 0, capture.totalBytes(), null, capture)) {
+                capture.release();
             }
-            
-            XposedBridge.log("CameraInterceptor: 📤 POST Data captured: " + postData.length() + " bytes to " + url);
-            
-            originalStream.close();
-            captureStream.close();
-        }
-        
-        @Override
-        public void flush() throws IOException {
-            originalStream.flush();
         }
     }
     
-    // Wrapper class to capture and modify response data
-    private static class InputStreamWrapper extends InputStream {
-        private final InputStream originalStream;
-        private final ByteArrayOutputStream captureStream;
+    // Rewrites a captured response if enabled, then hands it and the finished exchange to the writer thread.
+    // connection is whatever the exchange is tracked under; source names the library, or null.
+    private static class ResponseCapture implements CapturingInputStream.Listener {
+        private final HookMetrics.Hook metric;
+        private final String source;
         private final String url;
         private final String packageName;
-        private boolean captured = false;
-        private byte[] modifiedData = null;
-        private int modifiedDataIndex = 0;
+        private final Object connection;
+        private final Exchange exchange;
+        private final boolean modify;
         
-        public InputStreamWrapper(InputStream original, String url, String packageName) {
-            this.originalStream = original;
-            this.captureStream = new ByteArrayOutputStream();
+        ResponseCapture(HookMetrics.Hook metric, String source, String url, String packageName, Object connection,
+                        Exchange exchange, boolean modify) {
+            this.metric = metric;
+            this.source = source;
             this.url = url;
             this.packageName = packageName;
+            this.connection = connection;
+            this.exchange = exchange;
+            this.modify = modify;
         }
         
         @Override
-        public int read() throws IOException {
-            // If we have modified data, serve it first
-            if (modifiedData != null) {
-                if (modifiedDataIndex < modifiedData.length) {
-                    return modifiedData[modifiedDataIndex++] & 0xFF;
-                } else {
-                    return -1; // End of modified data
-                }
-            }
+        public byte[] onResponseBody(CaptureBuffer capture) {
+            byte[] modifiedData = null;
             
-            int b = originalStream.read();
-            if (b != -1) {
-                captureStream.write(b);
-            } else if (!captured) {
-                processAndModifyResponse();
-            }
-            return b;
-        }
-        
-        @Override
-        public int read(byte[] b) throws IOException {
-            // If we have modified data, serve it
-            if (modifiedData != null) {
-                int remaining = modifiedData.length - modifiedDataIndex;
-                if (remaining <= 0) return -1;
-                
-                int toRead = Math.min(b.length, remaining);
-                System.arraycopy(modifiedData, modifiedDataIndex, b, 0, toRead);
-                modifiedDataIndex += toRead;
-                return toRead;
-            }
-            
-            int bytesRead = originalStream.read(b);
-            if (bytesRead > 0) {
-                captureStream.write(b, 0, bytesRead);
-            } else if (!captured) {
-                processAndModifyResponse();
-            }
-            return bytesRead;
-        }
-        
-        @Override
-        public int read(byte[] b, int off, int len) throws IOException {
-            // If we have modified data, serve it
-            if (modifiedData != null) {
-                int remaining = modifiedData.length - modifiedDataIndex;
-                if (remaining <= 0) return -1;
-                
-                int toRead = Math.min(len, remaining);
-                System.arraycopy(modifiedData, modifiedDataIndex, b, off, toRead);
-                modifiedDataIndex += toRead;
-                return toRead;
+            // Modify response if enabled; this has to happen before the app reads further
+            // and before the buffer is handed to the writer thread. The original body is
+            // logged with the RESPONSE_BODY event that follows. Compressed bodies are left
+            // alone, since inflating and recompressing here would cost the app's thread, and so
+            // are streamed ones, of which only the last part is still in memory.
+            boolean keepBody = exchange.capture == CapturePolicy.FULL;
+            if (modify && capture.streamed() == null && !capture.isTruncated()
+                    && capture.contentCoding() == ContentCoding.IDENTITY) {
+                modifiedData = TimeCodeJson.rewrite(capture, FUTURE_EXPIRED_TIME);
+                if (modifiedData != null && keepBody) {
+                    EVENTS.post(metric, CaptureEvent.RESPONSE_MODIFIED, exchange.id, source, packageName, url,
+                        null, null, 0, modifiedData.length, null, modifiedData);
+                }
             }
             
-            int bytesRead = originalStream.read(b, off, len);
-            if (bytesRead > 0) {
-                captureStream.write(b, off, bytesRead);
-            } else if (!captured) {
-                processAndModifyResponse();
+            // Formatting and JSON field extraction for the log happen on the writer thread
+            if (!keepBody || !EVENTS.post(metric, CaptureEvent.RESPONSE_BODY, exchange.id, source, packageName,
+                    url, null, null, 0, capture.totalBytes(), null, capture)) {
+                // Only the writer thread may close a streamed body's file; tell it the end is not coming
+                if (capture.streamed() != null) capture.streamed().abandon();
+                capture.release();
             }
-            return bytesRead;
-        }
-        
-        @Override
-        public void close() throws IOException {
-            if (!captured) {
-                processAndModifyResponse();
-            }
-            originalStream.close();
-            captureStream.close();
-        }
-        
-        private void processAndModifyResponse() {
-            if (captured) return;
-            captured = true;
             
-            String responseData = captureStream.toString();
-            Log.e(TAG, "📥 CAPTURED RESPONSE DATA!");
-            Log.e(TAG, "📍 URL: " + url);
-            Log.e(TAG, "📱 Package: " + packageName);
-            Log.e(TAG, "📄 Response: " + responseData);
-            Log.e(TAG, "🕐 Timestamp: " + (System.currentTimeMillis() / 1000));
-            
-            // Try to parse and log JSON structure
-            try {
-                JSONObject json = new JSONObject(responseData);
-                Log.e(TAG, "📋 JSON Structure: " + json.toString(2));
-                
-                // Log specific fields if they exist
-                if (json.has("code")) Log.e(TAG, "📊 Response Code: " + json.get("code"));
-                if (json.has("now")) Log.e(TAG, "🕐 Server Time: " + json.get("now"));
-                if (json.has("expiredTime")) Log.e(TAG, "⏰ Expires: " + json.get("expiredTime"));
-                if (json.has("token")) Log.e(TAG, "🔑 Token: " + json.get("token"));
-                if (json.has("remain")) Log.e(TAG, "⏳ Remaining: " + json.get("remain"));
-                
-            } catch (JSONException e) {
-                Log.d(TAG, "Response is not JSON: " + e.getMessage());
-            }
-            
-            XposedBridge.log("CameraInterceptor: 📥 Response captured: " + responseData.length() + " bytes from " + url);
-            
-            // Modify response if enabled
-            if (MODIFY_RESPONSES) {
-                String modifiedResponse = modifyJsonResponse(responseData, url);
-                if (!responseData.equals(modifiedResponse)) {
-                    modifiedData = modifiedResponse.getBytes(StandardCharsets.UTF_8);
-                    modifiedDataIndex = 0;
-                    Log.e(TAG, "🔧 RESPONSE WILL BE MODIFIED!");
-                    Log.e(TAG, "📝 Modified Response: " + modifiedResponse);
-                    XposedBridge.log("CameraInterceptor: 🔧 Response modified for: " + url);
-                }
-            }
-        }
-        
-        @Override
-        public int available() throws IOException {
-            if (modifiedData != null) {
-                return modifiedData.length - modifiedDataIndex;
-            }
-            return originalStream.available();
+            // The close was stamped just before this call; latencies are derived on the writer thread
+            EXCHANGES.finish(connection);
+            if (exchange.capture != CapturePolicy.SKIP) EVENTS.post(metric, CaptureEvent.EXCHANGE, exchange.id, source, packageName, url,
+                null, null, 0, -1, null, exchange);
+            return modifiedData;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,84 @@
+package com.example.camerainterceptor.benchmark;
+
+import com.example.camerainterceptor.core.BodyDecoder;
+import com.example.camerainterceptor.core.CaptureBuffer;
+import com.example.camerainterceptor.core.CaptureBufferPool;
+import com.example.camerainterceptor.core.ContentCoding;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Writer-thread cost of making a gzip-encoded capture readable, by
+ * decompressed payload size. gzipStream is the GZIPInputStream plus
+ * new String() approach, which allocates its inflater, buffers and a copy
+ * of the capture for every body.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BodyDecoderBenchmark {
+    private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+    @Param({"4096", "65536"})
+    public int payloadBytes;
+
+    private final CaptureBufferPool pool = new CaptureBufferPool(8 * 1024, 64);
+    private final BodyDecoder decoder = new BodyDecoder(256 * 1024, 2048);
+    private CaptureBuffer body;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StringBuilder json = new StringBuilder("{\"code\":0,\"items\":[");
+        for (int i = 0; json.length() < payloadBytes - 20; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"id\":").append(i).append(",\"name\":\"item ").append(i).append("\"}");
+        }
+        json.append("],\"remain\":3600}");
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(json.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] bytes = compressed.toByteArray();
+        body = pool.newBuffer(bytes.length);
+        body.write(bytes, 0, bytes.length);
+        body.setContent(ContentCoding.GZIP, CONTENT_TYPE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        body.release();
+    }
+
+    @Benchmark
+    public int bodyDecoder() {
+        if (!decoder.inflate(body)) return -1;
+        return decoder.decode(decoder.bytes(), 0, Math.min(decoder.length(), 2048), CONTENT_TYPE).length();
+    }
+
+    @Benchmark
+    public int gzipStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()))) {
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) > 0) out.write(chunk, 0, n);
+        }
+        String text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        return Math.min(text.length(), 2048);
+    }
+}
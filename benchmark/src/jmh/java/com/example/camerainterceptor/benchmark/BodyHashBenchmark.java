@@ -0,0 +1,70 @@
+package com.example.camerainterceptor.benchmark;
+
+import com.example.camerainterceptor.core.CaptureBuffer;
+import com.example.camerainterceptor.core.CaptureBufferPool;
+import com.example.camerainterceptor.core.XxHash64;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Writer-thread cost of content-addressing a captured body, by body size.
+ * sha1 is the obvious cryptographic content address; crc32 is cheap but
+ * too narrow to name blobs by.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BodyHashBenchmark {
+    @Param({"4096", "65536"})
+    public int payloadBytes;
+
+    private final CaptureBufferPool pool = new CaptureBufferPool(8 * 1024, 64);
+    private final XxHash64 xxHash = new XxHash64();
+    private final CRC32 crc = new CRC32();
+    private MessageDigest sha1;
+    private CaptureBuffer body;
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchAlgorithmException {
+        sha1 = MessageDigest.getInstance("SHA-1");
+        byte[] bytes = new byte[payloadBytes];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) ("{\"id\":0,\"name\":\"item\"}".charAt(i % 23));
+        body = pool.newBuffer(bytes.length);
+        body.write(bytes, 0, bytes.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        body.release();
+    }
+
+    @Benchmark
+    public long xxHash64() {
+        return xxHash.reset().update(body).digest();
+    }
+
+    @Benchmark
+    public long crc32() {
+        crc.reset();
+        for (int i = 0; i < body.chunkCount(); i++) crc.update(body.chunk(i), 0, body.chunkLength(i));
+        return crc.getValue();
+    }
+
+    @Benchmark
+    public byte[] sha1() {
+        for (int i = 0; i < body.chunkCount(); i++) sha1.update(body.chunk(i), 0, body.chunkLength(i));
+        return sha1.digest();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.camerainterceptor.benchmark;
+
+import com.example.camerainterceptor.core.CapturePolicy;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost of the capture policy on a request flood far above its limits, the
+ * case it exists for: almost every decision is a refusal from a token
+ * bucket, and almost every URL construction is an aggregated repeat. The
+ * threaded variants show the contention on the shared buckets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CapturePolicyBenchmark {
+    private static final String URL = "https://45.12.52.108/camera/useTimeCode";
+    private static final String HOST = "45.12.52.108";
+
+    private CapturePolicy policy;
+
+    @Setup
+    public void setUp() {
+        policy = new CapturePolicy(1, 10, 40, 5, 20, 64, 1.0, 256);
+    }
+
+    @Benchmark
+    public int decide() {
+        return policy.decide(HOST, 0);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int decideContended() {
+        return policy.decide(HOST, 0);
+    }
+
+    @Benchmark
+    public boolean reportUrl() {
+        return policy.reportUrl(URL);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean reportUrlContended() {
+        return policy.reportUrl(URL);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.camerainterceptor.benchmark;
+
+import com.example.camerainterceptor.core.CaptureBuffer;
+import com.example.camerainterceptor.core.CaptureBufferPool;
+import com.example.camerainterceptor.core.CapturingInputStream;
+import com.example.camerainterceptor.core.CapturingOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost the capture wrappers add to the app's own stream calls, per byte.
+ *
+ * Each invocation moves one BODY_SIZE body through a wrapper, either one
+ * byte at a time or in chunkSize reads/writes, and reports the average
+ * time per byte. The raw* variants do the same against the unwrapped
+ * streams, so the difference is the wrapper's overhead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CaptureStreamBenchmark {
+    static final int BODY_SIZE = 64 * 1024;
+
+    @Param({"64", "1024", "8192"})
+    public int chunkSize;
+
+    private final CaptureBufferPool pool = new CaptureBufferPool(8 * 1024, 64);
+    private final OutputStream sink = new CountingOutputStream();
+    private final CapturingOutputStream.Listener releaseRequest = CaptureBuffer::release;
+    private final CapturingInputStream.Listener releaseResponse = capture -> {
+        capture.release();
+        return null;
+    };
+    private byte[] body;
+    private byte[] chunk;
+
+    @Setup
+    public void setUp() {
+        body = new byte[BODY_SIZE];
+        new Random(42).nextBytes(body);
+        chunk = new byte[chunkSize];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BODY_SIZE)
+    public void rawWritePerByte() throws IOException {
+        for (byte b : body) sink.write(b);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BODY_SIZE)
+    public void wrappedWritePerByte() throws IOException {
+        OutputStream out = new CapturingOutputStream(sink, pool.newBuffer(BODY_SIZE), null, releaseRequest);
+        for (byte b : body) out.write(b);
+        out.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BODY_SIZE)
+    public void rawWriteChunked() throws IOException {
+        for (int off = 0; off < BODY_SIZE; off += chunkSize) {
+            sink.write(body, off, Math.min(chunkSize, BODY_SIZE - off));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BODY_SIZE)
+    public void wrappedWriteChunked() throws IOException {
+        OutputStream out = new CapturingOutputStream(sink, pool.newBuffer(BODY_SIZE), null, releaseRequest);
+        for (int off = 0; off < BODY_SIZE; off += chunkSize) {
+            out.write(body, off, Math.min(chunkSize, BODY_SIZE - off));
+        }
+        out.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BODY_SIZE)
+    public int rawReadPerByte() throws IOException {
+        return drainPerByte(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BODY_SIZE)
+    public int wrappedReadPerByte() throws IOException {
+        return drainPerByte(new CapturingInputStream(new ByteArrayInputStream(body),
+            pool.newBuffer(BODY_SIZE), null, releaseResponse));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BODY_SIZE)
+    public int rawReadChunked() throws IOException {
+        return drainChunked(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BODY_SIZE)
+    public int wrappedReadChunked() throws IOException {
+        return drainChunked(new CapturingInputStream(new ByteArrayInputStream(body),
+            pool.newBuffer(BODY_SIZE), null, releaseResponse));
+    }
+
+    private static int drainPerByte(InputStream in) throws IOException {
+        int sum = 0;
+        int b;
+        while ((b = in.read()) != -1) sum += b;
+        in.close();
+        return sum;
+    }
+
+    private int drainChunked(InputStream in) throws IOException {
+        int total = 0;
+        int n;
+        while ((n = in.read(chunk, 0, chunkSize)) != -1) total += n;
+        in.close();
+        return total;
+    }
+
+    // Stands in for the socket stream, so only the wrapper's work is measured; the
+    // count keeps the JIT from discarding the raw writes
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
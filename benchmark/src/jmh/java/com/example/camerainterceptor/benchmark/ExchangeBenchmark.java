@@ -0,0 +1,195 @@
+package com.example.camerainterceptor.benchmark;
+
+import com.example.camerainterceptor.core.CaptureBuffer;
+import com.example.camerainterceptor.core.CaptureBufferPool;
+import com.example.camerainterceptor.core.CaptureEvent;
+import com.example.camerainterceptor.core.CapturingInputStream;
+import com.example.camerainterceptor.core.CapturingOutputStream;
+import com.example.camerainterceptor.core.EndpointStats;
+import com.example.camerainterceptor.core.EventRing;
+import com.example.camerainterceptor.core.Exchange;
+import com.example.camerainterceptor.core.ExchangeTracker;
+import com.example.camerainterceptor.core.HeaderFormat;
+import com.example.camerainterceptor.core.HookMetrics;
+import com.example.camerainterceptor.core.JsonFieldExtractor;
+import com.example.camerainterceptor.core.TimeCodeJson;
+import com.example.camerainterceptor.core.UrlMatcher;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One captured useTimeCode exchange end to end, as the HttpURLConnection
+ * hooks see it: match the URL, track the exchange, capture the request
+ * body, capture and rewrite the response, post the events, then drain and
+ * format them and record the exchange's latency the way the writer thread
+ * does.
+ *
+ * Run with the gc profiler (the default in build.gradle) and read
+ * gc.alloc.rate.norm for the bytes allocated per exchange. hookSide covers
+ * only what runs on the app's thread; withWriter adds the writer's share.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExchangeBenchmark {
+    private static final String URL = "https://45.12.52.108/camera/useTimeCode";
+    private static final String PACKAGE = "com.example.camera";
+    private static final long FUTURE_EXPIRED_TIME = 4102444800000L;
+    private static final byte[] REQUEST = "{\"deviceId\":\"ABCD-1234\",\"timeCode\":\"7F3A-22C1\"}"
+        .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESPONSE = ("{\"code\":0,\"msg\":\"ok\",\"now\":1700000000,"
+        + "\"expiredTime\":1700003600000,\"token\":\"eyJhbGciOiJIUzI1NiJ9.c2Vzc2lvbg.sig\",\"remain\":3600}")
+        .getBytes(StandardCharsets.UTF_8);
+
+    private final UrlMatcher matcher = UrlMatcher.compile("/camera/useTimeCode");
+    private final CaptureBufferPool pool = new CaptureBufferPool(8 * 1024, 64);
+    private final EventRing ring = new EventRing(64);
+    private final HookMetrics.Hook hook = new HookMetrics().register("benchmark");
+    private final ExchangeTracker exchanges = new ExchangeTracker();
+    private final EndpointStats endpoints = new EndpointStats(64);
+    private Exchange current;
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+    private final byte[] readBuffer = new byte[8 * 1024];
+    private final byte[] preview = new byte[2048];
+    private final StringBuilder log = new StringBuilder(8 * 1024);
+    private final JsonFieldExtractor jsonFields =
+        JsonFieldExtractor.compile("code", "now", "expiredTime", "token", "remain");
+    private Map<String, List<String>> headers;
+
+    private final CapturingOutputStream.Listener requestListener = capture ->
+        post(CaptureEvent.REQUEST_BODY, capture.totalBytes(), capture);
+
+    private final CapturingInputStream.Listener responseListener = capture -> {
+        byte[] modifiedData = TimeCodeJson.rewrite(capture, FUTURE_EXPIRED_TIME);
+        if (modifiedData != null) {
+            post(CaptureEvent.RESPONSE_MODIFIED, modifiedData.length, modifiedData);
+        }
+        post(CaptureEvent.RESPONSE_BODY, capture.totalBytes(), capture);
+        return modifiedData;
+    };
+
+    @Setup
+    public void setUp() {
+        headers = new LinkedHashMap<>();
+        headers.put("Content-Type", Collections.singletonList("application/json"));
+        headers.put("User-Agent", Collections.singletonList("Dalvik/2.1.0 (Linux; U; Android 13)"));
+        headers.put("Accept-Encoding", Arrays.asList("gzip", "deflate"));
+    }
+
+    @Benchmark
+    public int hookSide() throws IOException {
+        int read = exchange();
+        discard();
+        return read;
+    }
+
+    @Benchmark
+    public int withWriter() throws IOException {
+        int read = exchange();
+        return read + drain();
+    }
+
+    private int exchange() throws IOException {
+        if (!matcher.matches(URL)) return 0;
+        // Stands in for the HttpURLConnection the hooks key exchanges by
+        Object connection = new Object();
+        current = exchanges.open(connection, URL);
+        current.markConnect();
+        OutputStream out = new CapturingOutputStream(sink, pool.newBuffer(256 * 1024), current, requestListener);
+        out.write(REQUEST, 0, REQUEST.length);
+        out.close();
+
+        current.markResponseStart(200);
+        InputStream in = new CapturingInputStream(new ByteArrayInputStream(RESPONSE),
+            pool.newBuffer(256 * 1024), current, responseListener);
+        int total = 0;
+        int n;
+        while ((n = in.read(readBuffer, 0, readBuffer.length)) != -1) total += n;
+        in.close();
+        exchanges.finish(connection);
+        post(CaptureEvent.EXCHANGE, -1, current);
+        return total;
+    }
+
+    private void post(int kind, long length, Object body) {
+        CaptureEvent event = ring.claim();
+        if (event == null) {
+            hook.recordDrop();
+            if (body instanceof CaptureBuffer) ((CaptureBuffer) body).release();
+            return;
+        }
+        event.hook = hook;
+        event.kind = kind;
+        event.exchange = current.id;
+        event.timeMillis = System.currentTimeMillis();
+        event.timeNanos = System.nanoTime();
+        event.packageName = PACKAGE;
+        event.url = URL;
+        event.length = length;
+        event.headers = headers;
+        event.body = body;
+        ring.publish(event);
+    }
+
+    // Writer-side work: header formatting, body preview and JSON field lines
+    private int drain() {
+        int formatted = 0;
+        CaptureEvent event;
+        while ((event = ring.poll()) != null) {
+            log.setLength(0);
+            log.append("📋 Headers: ").append(HeaderFormat.format(event.headers)).append('\n');
+            if (event.body instanceof CaptureBuffer) {
+                CaptureBuffer buffer = (CaptureBuffer) event.body;
+                int n = buffer.copyTo(0, preview, 0, preview.length);
+                log.append("📄 Data: ").append(new String(preview, 0, n, StandardCharsets.UTF_8)).append('\n');
+                if (jsonFields.extract(buffer, true)) {
+                    for (int i = 0; i < jsonFields.fieldCount(); i++) {
+                        String value = jsonFields.value(i);
+                        if (value == null) continue;
+                        log.append("📋 ").append(jsonFields.path(i)).append(": ").append(value).append('\n');
+                    }
+                }
+                buffer.release();
+            } else if (event.body instanceof Exchange) {
+                Exchange exchange = (Exchange) event.body;
+                log.append("🧭 Phases (ns): ").append(exchange.timings()).append('\n');
+                endpoints.record(exchange);
+            }
+            formatted += log.length();
+            ring.release(event);
+        }
+        return formatted;
+    }
+
+    private void discard() {
+        CaptureEvent event;
+        while ((event = ring.poll()) != null) {
+            if (event.body instanceof CaptureBuffer) ((CaptureBuffer) event.body).release();
+            ring.release(event);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.camerainterceptor.benchmark;
+
+import com.example.camerainterceptor.core.CaptureBuffer;
+import com.example.camerainterceptor.core.CaptureBufferPool;
+import com.example.camerainterceptor.core.JsonFieldExtractor;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Summary logging of one captured JSON body, by payload size.
+ *
+ * The body carries the five useTimeCode fields split around a filler list,
+ * so the extractor has to scan all of it. jsonObject is the JSONObject
+ * parse plus toString(2) the writer used to do; compare time and
+ * gc.alloc.rate.norm across payloadBytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonFieldExtractorBenchmark {
+    private static final String[] FIELDS = {"code", "now", "expiredTime", "token", "remain"};
+
+    @Param({"256", "4096", "65536"})
+    public int payloadBytes;
+
+    private final CaptureBufferPool pool = new CaptureBufferPool(8 * 1024, 64);
+    private final JsonFieldExtractor extractor = JsonFieldExtractor.compile(FIELDS);
+    private CaptureBuffer body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder json = new StringBuilder("{\"code\":0,\"now\":1700000000,\"items\":[");
+        for (int i = 0; json.length() < payloadBytes - 120; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"id\":").append(i).append(",\"name\":\"item ").append(i)
+                .append("\",\"tags\":[\"a\",\"b\"],\"price\":").append(i * 1.5).append('}');
+        }
+        json.append("],\"expiredTime\":1700003600000,\"token\":\"eyJhbGciOiJIUzI1NiJ9.c2Vzc2lvbg.sig\",")
+            .append("\"remain\":3600}");
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        body = pool.newBuffer(bytes.length);
+        body.write(bytes, 0, bytes.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        body.release();
+    }
+
+    @Benchmark
+    public int extractor() {
+        if (!extractor.extract(body, true)) return -1;
+        int length = 0;
+        for (int i = 0; i < FIELDS.length; i++) {
+            String value = extractor.value(i);
+            if (value != null) length += value.length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int jsonObject() throws JSONException {
+        JSONObject json = new JSONObject(body.toString(StandardCharsets.UTF_8));
+        int length = json.toString(2).length();
+        for (String field : FIELDS) {
+            if (json.has(field)) length += String.valueOf(json.get(field)).length();
+        }
+        return length;
+    }
+}
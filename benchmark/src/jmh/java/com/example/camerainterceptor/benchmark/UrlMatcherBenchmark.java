@@ -0,0 +1,75 @@
+package com.example.camerainterceptor.benchmark;
+
+import com.example.camerainterceptor.core.UrlMatcher;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Matcher throughput on a mix of typical app URLs, almost all of which
+ * miss, as they do on-device. String.contains over the same patterns is
+ * the baseline the matcher replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UrlMatcherBenchmark {
+    private static final String[] URLS = {
+        "https://www.googleapis.com/oauth2/v4/token",
+        "https://firebaseinstallations.googleapis.com/v1/projects/app-1234/installations",
+        "https://graph.facebook.com/v17.0/app?fields=supports_implicit_sdk_logging",
+        "https://api.example.com/v2/users/42/profile?include=avatar,settings",
+        "https://cdn.example.com/static/img/banner-1080x1920.webp",
+        "https://45.12.52.108/camera/useTimeCode",
+        "http://192.168.1.100/api/device/status?serial=ABCD-1234-EFGH",
+        "https://app-measurement.com/a",
+    };
+
+    @Param({"1", "16", "128"})
+    public int patternCount;
+
+    private String[] patterns;
+    private UrlMatcher matcher;
+
+    @Setup
+    public void setUp() {
+        patterns = new String[patternCount];
+        patterns[0] = "/camera/useTimeCode";
+        for (int i = 1; i < patternCount; i++) {
+            patterns[i] = "/api/v" + (i % 4) + "/endpoint" + i;
+        }
+        matcher = UrlMatcher.compile(patterns);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public int matcher() {
+        int hits = 0;
+        for (String url : URLS) {
+            if (matcher.matches(url)) hits++;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public int stringContains() {
+        int hits = 0;
+        for (String url : URLS) {
+            for (String pattern : patterns) {
+                if (url.contains(pattern)) {
+                    hits++;
+                    break;
+                }
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.camerainterceptor.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Content-addressed body storage next to the capture segments.
+ *
+ * Each distinct body is one file named by its XXH64 hash; capture records
+ * refer to it by hash (CaptureFormat.FLAG_BODY_BLOB), so an app polling the
+ * same response stores and writes it once. A small LRU of recently stored
+ * hashes lets repeats skip the file system entirely.
+ *
+ * Blobs live as long as a retained segment may refer to them. A blob's
+ * modification time is bumped the first time each segment refers to it,
+ * so when segments are deleted every blob older than the oldest remaining
+ * segment is unreferenced and collect() removes it.
+ *
+ * Only the EventWriter thread may use a blob store.
+ */
+public final class BlobStore {
+    public static final String BLOB_SUFFIX = ".blob";
+    // Slack for file systems that keep modification times in whole seconds
+    private static final long MTIME_SLACK_MILLIS = 2000;
+
+    private final File directory;
+    // Hash -> creation time of the segment that last referred to the blob
+    private final LinkedHashMap<Long, Long> recent;
+
+    private long stored;
+    private long deduplicated;
+    private long bytesSaved;
+
+    public BlobStore(File directory, final int recentHashes) {
+        this.directory = directory;
+        this.recent = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > recentHashes;
+            }
+        };
+    }
+
+    /**
+     * Makes sure the first length bytes of body (a CaptureBuffer or byte[])
+     * are stored under hash, for a record in the segment created at
+     * segmentMillis. Returns false if they were already stored.
+     */
+    public boolean put(long hash, Object body, int length, long segmentMillis) throws IOException {
+        return put(hash, body, 0, length, segmentMillis);
+    }
+
+    /** Like put() for length bytes of body starting at offset. */
+    public boolean put(long hash, byte[] body, int offset, int length, long segmentMillis) throws IOException {
+        return put(hash, (Object) body, offset, length, segmentMillis);
+    }
+
+    private boolean put(long hash, Object body, int offset, int length, long segmentMillis) throws IOException {
+        Long referenced = recent.get(hash);
+        if (referenced != null && referenced >= segmentMillis) {
+            deduplicated(length);
+            return false;
+        }
+        File file = file(hash);
+        // Refreshing the time also tells whether the blob still exists
+        if (file.setLastModified(System.currentTimeMillis())) {
+            recent.put(hash, segmentMillis);
+            deduplicated(length);
+            return false;
+        }
+        write(file, body, offset, length);
+        recent.put(hash, segmentMillis);
+        stored++;
+        return true;
+    }
+
+    /**
+     * Moves a finished file of length bytes (see StreamingBody) in as the
+     * blob for hash, or deletes it if that blob is already stored. Returns
+     * false in that case, like put().
+     */
+    public boolean adopt(long hash, File body, int length, long segmentMillis) throws IOException {
+        Long referenced = recent.get(hash);
+        File file = file(hash);
+        if (referenced != null && referenced >= segmentMillis || file.setLastModified(System.currentTimeMillis())) {
+            body.delete();
+            recent.put(hash, segmentMillis);
+            deduplicated(length);
+            return false;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        // The file is complete, so the rename alone publishes it
+        if (!body.renameTo(file)) {
+            body.delete();
+            throw new IOException("Cannot store " + file);
+        }
+        recent.put(hash, segmentMillis);
+        stored++;
+        return true;
+    }
+
+    /** Deletes blobs no record in a segment created at or after oldestSegmentMillis refers to. */
+    public void collect(long oldestSegmentMillis) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(BLOB_SUFFIX));
+        if (files == null) return;
+        long cutoff = oldestSegmentMillis - MTIME_SLACK_MILLIS;
+        for (File file : files) {
+            if (file.lastModified() < cutoff) file.delete();
+        }
+    }
+
+    public File file(long hash) {
+        return new File(directory, XxHash64.hex(hash) + BLOB_SUFFIX);
+    }
+
+    public void appendSummary(StringBuilder out) {
+        if (stored == 0 && deduplicated == 0) return;
+        out.append("💾 Bodies: ").append(stored).append(" stored, ").append(deduplicated)
+            .append(" repeats not rewritten (").append(bytesSaved / 1024).append(" KB)\n");
+    }
+
+    private void deduplicated(int length) {
+        deduplicated++;
+        bytesSaved += length;
+    }
+
+    // Written under a temporary name, so a crash never leaves a partial blob behind a valid hash
+    private void write(File file, Object body, int offset, int length) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File temp = new File(directory, file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            if (body instanceof CaptureBuffer) {
+                CaptureBuffer buffer = (CaptureBuffer) body;
+                for (int i = 0; i < buffer.chunkCount() && length > 0; i++) {
+                    int n = Math.min(length, buffer.chunkLength(i));
+                    out.write(buffer.chunk(i), 0, n);
+                    length -= n;
+                }
+            } else if (body instanceof byte[]) {
+                out.write((byte[]) body, offset, length);
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot store " + file);
+        }
+    }
+}
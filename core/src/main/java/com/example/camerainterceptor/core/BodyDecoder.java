@@ -0,0 +1,182 @@
+package com.example.camerainterceptor.core;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Turns captured bodies into readable text on the writer thread.
+ *
+ * inflate() streams a gzip or deflate CaptureBuffer chunk by chunk through
+ * one reused Inflater into a fixed output buffer; output past its size is
+ * not produced. decode() runs bytes through a CharsetDecoder for the
+ * charset named in the Content-Type (UTF-8 if none), cached for the last
+ * charset seen, into a reused CharBuffer. Nothing is allocated per body
+ * except the returned String. The gzip CRC and size trailer is not
+ * checked. Not thread-safe; one instance per writer thread.
+ */
+public final class BodyDecoder {
+    private static final int GZIP_MAGIC = 0x1f8b;
+    private static final int GZIP_FHCRC = 2;
+    private static final int GZIP_FEXTRA = 4;
+    private static final int GZIP_FNAME = 8;
+    private static final int GZIP_FCOMMENT = 16;
+
+    // Raw deflate; gzip and zlib headers are skipped by hand
+    private final Inflater inflater = new Inflater(true);
+    private final byte[] output;
+    private int length;
+    private boolean complete;
+
+    private final CharBuffer chars;
+    private String charsetName;
+    private CharsetDecoder decoder;
+
+    /** maxDecodedBytes caps inflated output, maxChars the length of decoded text. */
+    public BodyDecoder(int maxDecodedBytes, int maxChars) {
+        this.output = new byte[maxDecodedBytes];
+        this.chars = CharBuffer.allocate(maxChars);
+    }
+
+    /**
+     * Inflates a GZIP or DEFLATE body into bytes(). Returns false if the
+     * body has another coding or is not valid compressed data; a body
+     * truncated at capture inflates as far as it goes.
+     */
+    public boolean inflate(CaptureBuffer body) {
+        int coding = body.contentCoding();
+        if (coding != ContentCoding.GZIP && coding != ContentCoding.DEFLATE) return false;
+        inflater.reset();
+        length = 0;
+        complete = false;
+        if (body.chunkCount() == 0) return false;
+        int skip = coding == ContentCoding.GZIP
+            ? gzipHeader(body.chunk(0), body.chunkLength(0))
+            : zlibHeader(body.chunk(0), body.chunkLength(0));
+        if (skip < 0) return false;
+        try {
+            for (int i = 0; i < body.chunkCount(); i++) {
+                int off = i == 0 ? skip : 0;
+                int len = body.chunkLength(i) - off;
+                if (len <= 0) continue;
+                inflater.setInput(body.chunk(i), off, len);
+                while (!inflater.needsInput() && !inflater.finished()) {
+                    if (length == output.length) return true;
+                    int n = inflater.inflate(output, length, output.length - length);
+                    if (n == 0 && inflater.needsDictionary()) return false;
+                    length += n;
+                }
+                if (inflater.finished()) {
+                    complete = true;
+                    return true;
+                }
+            }
+            return true;
+        } catch (DataFormatException e) {
+            return false;
+        }
+    }
+
+    /** Inflated bytes from the last successful inflate(); valid until the next call. */
+    public byte[] bytes() {
+        return output;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /** Whether the last inflate() reached the end of the compressed stream. */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Decodes up to maxChars characters from bytes in the charset of
+     * contentType; malformed input becomes U+FFFD.
+     */
+    public String decode(byte[] bytes, int offset, int count, String contentType) {
+        CharsetDecoder charsetDecoder = decoder(charset(contentType));
+        chars.clear();
+        charsetDecoder.reset();
+        charsetDecoder.decode(ByteBuffer.wrap(bytes, offset, count), chars, true);
+        charsetDecoder.flush(chars);
+        chars.flip();
+        return chars.toString();
+    }
+
+    private CharsetDecoder decoder(String name) {
+        if (decoder != null && name.equals(charsetName)) return decoder;
+        Charset charset;
+        try {
+            charset = Charset.forName(name);
+        } catch (RuntimeException e) {
+            // Unknown or malformed charset name
+            charset = StandardCharsets.UTF_8;
+        }
+        charsetName = name;
+        decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        return decoder;
+    }
+
+    /** The charset parameter of a Content-Type value, or UTF-8. */
+    static String charset(String contentType) {
+        if (contentType == null) return "UTF-8";
+        int length = contentType.length();
+        for (int i = contentType.indexOf(';'); i >= 0 && i < length; i = contentType.indexOf(';', i + 1)) {
+            int start = i + 1;
+            while (start < length && contentType.charAt(start) == ' ') start++;
+            if (contentType.regionMatches(true, start, "charset=", 0, 8)) {
+                start += 8;
+                int end = contentType.indexOf(';', start);
+                if (end < 0) end = length;
+                String name = contentType.substring(start, end).trim();
+                if (name.length() > 1 && name.charAt(0) == '"' && name.charAt(name.length() - 1) == '"') {
+                    name = name.substring(1, name.length() - 1);
+                }
+                return name.isEmpty() ? "UTF-8" : name;
+            }
+        }
+        return "UTF-8";
+    }
+
+    // Length of the gzip member header (RFC 1952), or -1; it must fit in the first chunk
+    private static int gzipHeader(byte[] b, int n) {
+        if (n < 10 || ((b[0] & 0xff) << 8 | (b[1] & 0xff)) != GZIP_MAGIC || b[2] != 8) return -1;
+        int flags = b[3] & 0xff;
+        int pos = 10;
+        if ((flags & GZIP_FEXTRA) != 0) {
+            if (pos + 2 > n) return -1;
+            pos += 2 + ((b[pos] & 0xff) | (b[pos + 1] & 0xff) << 8);
+        }
+        if ((flags & GZIP_FNAME) != 0) pos = skipZeroTerminated(b, pos, n);
+        if (pos >= 0 && (flags & GZIP_FCOMMENT) != 0) pos = skipZeroTerminated(b, pos, n);
+        if (pos >= 0 && (flags & GZIP_FHCRC) != 0) pos += 2;
+        return pos >= 0 && pos <= n ? pos : -1;
+    }
+
+    private static int skipZeroTerminated(byte[] b, int pos, int n) {
+        while (pos < n) {
+            if (b[pos++] == 0) return pos;
+        }
+        return -1;
+    }
+
+    // HTTP "deflate" is meant to be zlib-wrapped, but some servers send raw deflate
+    private static int zlibHeader(byte[] b, int n) {
+        if (n < 2) return 0;
+        int cmf = b[0] & 0xff;
+        int flg = b[1] & 0xff;
+        boolean zlib = (cmf & 0x0f) == 8 && (cmf >> 4) <= 7 && ((cmf << 8) | flg) % 31 == 0;
+        if (!zlib) return 0;
+        // A preset dictionary cannot be supplied
+        return (flg & 0x20) != 0 ? -1 : 2;
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.camerainterceptor.core;
+
+import java.nio.charset.Charset;
+
+/**
+ * Capped, chunked byte buffer for one captured body.
+ *
+ * A buffer has a single owner at a time: the app thread that reads or
+ * writes the wrapped stream, then the writer thread once the buffer has
+ * been posted. It is therefore not synchronized, and the single-byte path
+ * is just an array store. Bytes past maxBytes are counted but not kept.
+ * The bytes are kept as the stream carried them; contentCoding and
+ * contentType describe them for whoever decodes the capture later.
+ *
+ * A body streamed to disk (see StreamingBody) is captured in a series of
+ * buffers, each one part of it; offset is where the part starts in the
+ * body, so totalBytes() counts the whole body up to the part's end.
+ */
+public final class CaptureBuffer {
+    private final CaptureBufferPool pool;
+    private final int maxBytes;
+
+    private byte[][] chunks = new byte[4][];
+    private int chunkCount;
+    // Current chunk and the write position / usable end inside it
+    private byte[] current;
+    private int position;
+    private int end;
+    // Bytes held in chunks before the current one
+    private int filled;
+    // Bytes seen after the cap was reached
+    private long overflow;
+    private int contentCoding = ContentCoding.IDENTITY;
+    private String contentType;
+    private StreamingBody streamed;
+    private long offset;
+
+    CaptureBuffer(CaptureBufferPool pool, int maxBytes) {
+        this.pool = pool;
+        this.maxBytes = maxBytes;
+    }
+
+    public void write(int b) {
+        if (position < end) {
+            current[position++] = (byte) b;
+            return;
+        }
+        if (nextChunk()) {
+            current[position++] = (byte) b;
+        } else {
+            overflow++;
+        }
+    }
+
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            if (position == end && !nextChunk()) {
+                overflow += len;
+                return;
+            }
+            int n = Math.min(len, end - position);
+            System.arraycopy(b, off, current, position, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    // Moves to a fresh chunk; returns false once the cap is reached
+    private boolean nextChunk() {
+        int captured = filled + position;
+        if (captured >= maxBytes) return false;
+        if (current != null) filled = captured;
+        if (chunkCount == chunks.length) {
+            byte[][] grown = new byte[chunks.length * 2][];
+            System.arraycopy(chunks, 0, grown, 0, chunkCount);
+            chunks = grown;
+        }
+        current = pool.acquire();
+        chunks[chunkCount++] = current;
+        position = 0;
+        end = Math.min(current.length, maxBytes - filled);
+        return true;
+    }
+
+    /** Records the body's ContentCoding constant and Content-Type header, which may be null. */
+    public void setContent(int contentCoding, String contentType) {
+        this.contentCoding = contentCoding;
+        this.contentType = contentType;
+    }
+
+    public int contentCoding() {
+        return contentCoding;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    /** Number of bytes kept in the buffer. */
+    public int size() {
+        return filled + position;
+    }
+
+    /** Number of bytes written, including those dropped past the cap and earlier parts of a streamed body. */
+    public long totalBytes() {
+        return offset + size() + overflow;
+    }
+
+    public boolean isTruncated() {
+        return overflow > 0 || streamed != null && streamed.hasGap();
+    }
+
+    /** The body this buffer is a part of, or null if the buffer holds the whole capture. */
+    public StreamingBody streamed() {
+        return streamed;
+    }
+
+    void startPart(StreamingBody body, long offset) {
+        this.streamed = body;
+        this.offset = offset;
+    }
+
+    int maxBytes() {
+        return maxBytes;
+    }
+
+    CaptureBufferPool pool() {
+        return pool;
+    }
+
+    public int chunkCount() {
+        return chunkCount;
+    }
+
+    public byte[] chunk(int index) {
+        return chunks[index];
+    }
+
+    public int chunkLength(int index) {
+        return index == chunkCount - 1 ? position : chunks[index].length;
+    }
+
+    public byte[] toByteArray() {
+        byte[] out = new byte[size()];
+        int offset = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            int n = chunkLength(i);
+            System.arraycopy(chunks[i], 0, out, offset, n);
+            offset += n;
+        }
+        return out;
+    }
+
+    /**
+     * Copies up to length bytes starting at offset from into dest and
+     * returns how many were copied.
+     */
+    public int copyTo(int from, byte[] dest, int destOffset, int length) {
+        length = Math.max(0, Math.min(length, size() - from));
+        int copied = 0;
+        int chunkStart = 0;
+        for (int i = 0; i < chunkCount && copied < length; i++) {
+            int chunkLength = chunkLength(i);
+            int chunkEnd = chunkStart + chunkLength;
+            int start = from + copied;
+            if (start < chunkEnd) {
+                int n = Math.min(length - copied, chunkEnd - start);
+                System.arraycopy(chunks[i], start - chunkStart, dest, destOffset + copied, n);
+                copied += n;
+            }
+            chunkStart = chunkEnd;
+        }
+        return copied;
+    }
+
+    public String toString(Charset charset) {
+        return new String(toByteArray(), charset);
+    }
+
+    /**
+     * Returns all chunks to the pool. The buffer is empty afterwards and
+     * must not be used by its previous owner.
+     */
+    public void release() {
+        for (int i = 0; i < chunkCount; i++) {
+            pool.release(chunks[i]);
+            chunks[i] = null;
+        }
+        chunkCount = 0;
+        current = null;
+        position = 0;
+        end = 0;
+        filled = 0;
+        overflow = 0;
+        contentCoding = ContentCoding.IDENTITY;
+        contentType = null;
+        streamed = null;
+        offset = 0;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.camerainterceptor.core;
+
+/**
+ * Per-process pool of fixed-size chunks backing CaptureBuffers.
+ *
+ * Chunks are taken when a buffer grows and given back once the writer
+ * thread is done with the captured body, so steady-state capture does not
+ * allocate. The pool only keeps a bounded number of idle chunks; anything
+ * beyond that is left to the GC.
+ */
+public final class CaptureBufferPool {
+    private final int chunkSize;
+    private final byte[][] idle;
+    private int idleCount;
+
+    public CaptureBufferPool(int chunkSize, int maxIdleChunks) {
+        this.chunkSize = chunkSize;
+        this.idle = new byte[maxIdleChunks][];
+    }
+
+    public CaptureBuffer newBuffer(int maxBytes) {
+        return new CaptureBuffer(this, maxBytes);
+    }
+
+    byte[] acquire() {
+        synchronized (this) {
+            if (idleCount > 0) {
+                byte[] chunk = idle[--idleCount];
+                idle[idleCount] = null;
+                return chunk;
+            }
+        }
+        return new byte[chunkSize];
+    }
+
+    void release(byte[] chunk) {
+        if (chunk == null || chunk.length != chunkSize) return;
+        synchronized (this) {
+            if (idleCount < idle.length) {
+                idle[idleCount++] = chunk;
+            }
+        }
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    public synchronized int idleChunks() {
+        return idleCount;
+    }
+}
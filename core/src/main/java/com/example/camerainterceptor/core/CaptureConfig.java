@@ -0,0 +1,163 @@
+package com.example.camerainterceptor.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the capture settings.
+ *
+ * Built from the key/value map of the module's preferences (missing or
+ * malformed values fall back to the defaults below) and published behind
+ * a single volatile reference, so hooks read settings with one volatile
+ * load and no locks. The snapshot owns the compiled UrlMatcher and a
+ * CapturePolicy built for it; a new snapshot therefore starts with fresh
+ * token buckets and policy counters.
+ */
+public final class CaptureConfig {
+    // Preference keys, shared by the settings screen and the hooked processes
+    public static final String KEY_TARGET_PATTERNS = "target_patterns"; // one pattern per line
+    public static final String KEY_MAX_CAPTURE_BYTES = "max_capture_bytes";
+    public static final String KEY_BODY_SAMPLE_RATE = "body_sample_rate";
+    public static final String KEY_PATTERN_CAPTURES_PER_SECOND = "pattern_captures_per_second";
+    public static final String KEY_HOST_CAPTURES_PER_SECOND = "host_captures_per_second";
+    public static final String KEY_MODIFY_RESPONSES = "modify_responses";
+    public static final String KEY_HOOK_HTTP_URL_CONNECTION = "hook_http_url_connection";
+    public static final String KEY_HOOK_OKHTTP = "hook_okhttp";
+    public static final String KEY_HOOK_RETROFIT = "hook_retrofit";
+    public static final String KEY_HOOK_APACHE = "hook_apache";
+    public static final String KEY_HOOK_VOLLEY = "hook_volley";
+    public static final String KEY_HOOK_WEBVIEW = "hook_webview";
+
+    public static final String DEFAULT_TARGET_PATTERNS = "/camera/useTimeCode";
+    public static final int DEFAULT_MAX_CAPTURE_BYTES = 256 * 1024;
+    public static final double DEFAULT_BODY_SAMPLE_RATE = 1.0;
+    public static final double DEFAULT_PATTERN_CAPTURES_PER_SECOND = 10;
+    public static final double DEFAULT_HOST_CAPTURES_PER_SECOND = 5;
+
+    // Token buckets allow this many seconds' worth of captures at once
+    private static final int BURST_SECONDS = 4;
+    private static final int MAX_RATE_LIMITED_HOSTS = 64;
+    // Distinct URLs whose repeated constructions are counted per window
+    private static final int MAX_AGGREGATED_URLS = 256;
+
+    public static final CaptureConfig DEFAULT = parse(Collections.<String, Object>emptyMap());
+
+    public final List<String> targetPatterns;
+    public final UrlMatcher matcher;
+    public final int maxCaptureBytes;
+    public final double bodySampleRate;
+    public final double patternCapturesPerSecond;
+    public final double hostCapturesPerSecond;
+    public final boolean modifyResponses;
+    public final boolean hookHttpUrlConnection;
+    public final boolean hookOkHttp;
+    public final boolean hookRetrofit;
+    public final boolean hookApache;
+    public final boolean hookVolley;
+    public final boolean hookWebView;
+    public final CapturePolicy policy;
+
+    private CaptureConfig(Map<String, ?> values) {
+        targetPatterns = patterns(string(values, KEY_TARGET_PATTERNS, DEFAULT_TARGET_PATTERNS));
+        matcher = UrlMatcher.compile(targetPatterns.toArray(new String[0]));
+        maxCaptureBytes = (int) clamp(number(values, KEY_MAX_CAPTURE_BYTES, DEFAULT_MAX_CAPTURE_BYTES),
+            0, Integer.MAX_VALUE);
+        bodySampleRate = clamp(number(values, KEY_BODY_SAMPLE_RATE, DEFAULT_BODY_SAMPLE_RATE), 0, 1);
+        patternCapturesPerSecond = clamp(number(values, KEY_PATTERN_CAPTURES_PER_SECOND,
+            DEFAULT_PATTERN_CAPTURES_PER_SECOND), 0.01, 1e6);
+        hostCapturesPerSecond = clamp(number(values, KEY_HOST_CAPTURES_PER_SECOND,
+            DEFAULT_HOST_CAPTURES_PER_SECOND), 0.01, 1e6);
+        modifyResponses = bool(values, KEY_MODIFY_RESPONSES, true);
+        hookHttpUrlConnection = bool(values, KEY_HOOK_HTTP_URL_CONNECTION, true);
+        hookOkHttp = bool(values, KEY_HOOK_OKHTTP, true);
+        hookRetrofit = bool(values, KEY_HOOK_RETROFIT, true);
+        hookApache = bool(values, KEY_HOOK_APACHE, true);
+        hookVolley = bool(values, KEY_HOOK_VOLLEY, true);
+        hookWebView = bool(values, KEY_HOOK_WEBVIEW, true);
+        policy = new CapturePolicy(matcher.size(),
+            patternCapturesPerSecond, burst(patternCapturesPerSecond),
+            hostCapturesPerSecond, burst(hostCapturesPerSecond),
+            MAX_RATE_LIMITED_HOSTS, bodySampleRate, MAX_AGGREGATED_URLS);
+    }
+
+    /** Builds a snapshot from preference values, such as SharedPreferences.getAll(). */
+    public static CaptureConfig parse(Map<String, ?> values) {
+        return new CaptureConfig(values);
+    }
+
+    /** Whether this snapshot has the same settings as another; the policy state is not compared. */
+    public boolean sameSettings(CaptureConfig other) {
+        return other != null
+            && targetPatterns.equals(other.targetPatterns)
+            && maxCaptureBytes == other.maxCaptureBytes
+            && bodySampleRate == other.bodySampleRate
+            && patternCapturesPerSecond == other.patternCapturesPerSecond
+            && hostCapturesPerSecond == other.hostCapturesPerSecond
+            && modifyResponses == other.modifyResponses
+            && hookHttpUrlConnection == other.hookHttpUrlConnection
+            && hookOkHttp == other.hookOkHttp
+            && hookRetrofit == other.hookRetrofit
+            && hookApache == other.hookApache
+            && hookVolley == other.hookVolley
+            && hookWebView == other.hookWebView;
+    }
+
+    @Override
+    public String toString() {
+        return "patterns=" + targetPatterns
+            + " maxCaptureBytes=" + maxCaptureBytes
+            + " bodySampleRate=" + bodySampleRate
+            + " patternCapturesPerSecond=" + patternCapturesPerSecond
+            + " hostCapturesPerSecond=" + hostCapturesPerSecond
+            + " modifyResponses=" + modifyResponses
+            + " hooks=" + (hookHttpUrlConnection ? "HttpURLConnection " : "")
+            + (hookOkHttp ? "OkHttp " : "") + (hookRetrofit ? "Retrofit " : "")
+            + (hookApache ? "Apache " : "") + (hookVolley ? "Volley " : "")
+            + (hookWebView ? "WebView" : "");
+    }
+
+    private static int burst(double perSecond) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, perSecond * BURST_SECONDS));
+    }
+
+    private static List<String> patterns(String text) {
+        List<String> patterns = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            String pattern = line.trim();
+            if (!pattern.isEmpty() && !patterns.contains(pattern)) patterns.add(pattern);
+        }
+        return Collections.unmodifiableList(patterns);
+    }
+
+    private static String string(Map<String, ?> values, String key, String fallback) {
+        Object value = values.get(key);
+        return value instanceof String ? (String) value : fallback;
+    }
+
+    private static double number(Map<String, ?> values, String key, double fallback) {
+        Object value = values.get(key);
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        if (value instanceof String) {
+            try {
+                return Double.parseDouble(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+        return fallback;
+    }
+
+    private static boolean bool(Map<String, ?> values, String key, boolean fallback) {
+        Object value = values.get(key);
+        if (value instanceof Boolean) return (Boolean) value;
+        if (value instanceof String) return Boolean.parseBoolean((String) value);
+        return fallback;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        if (Double.isNaN(value)) return min;
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.camerainterceptor.core;
+
+/**
+ * Compact record pushed by hooks into the EventRing.
+ *
+ * Slots are preallocated and reused: a hook only copies references and
+ * primitives into the slot, and all string building happens later on the
+ * writer thread.
+ */
+public final class CaptureEvent {
+    // Event kinds
+    public static final int URL_DETECTED = 1;      // java.net.URL constructed for a target
+    public static final int CONNECT = 2;           // HttpURLConnection.connect()
+    public static final int REQUEST_STREAM = 3;    // request body stream wrapped
+    public static final int RESPONSE_STREAM = 4;   // response body stream wrapped
+    public static final int REQUEST_BODY = 5;      // request body fully captured
+    public static final int RESPONSE_BODY = 6;     // response body fully captured
+    public static final int RESPONSE_MODIFIED = 7; // response body rewritten for the app
+    public static final int LIBRARY_REQUEST = 8;   // request seen by a third-party library hook
+    public static final int LIBRARY_RESPONSE = 9;  // response seen by a third-party library hook
+    public static final int RETROFIT_CALL = 10;    // Retrofit service method invoked
+    public static final int EXCHANGE = 11;         // exchange finished; body is the Exchange
+    public static final int RESPONSE_PROGRESS = 12; // part of a streamed response body handed to the writer
+
+    // Ring bookkeeping
+    final int index;
+    long position;
+
+    public HookMetrics.Hook hook;  // hook that posted the event, for byte/drop accounting
+    public int kind;
+    public long exchange;  // Exchange id, or 0 outside a tracked exchange
+    public long timeMillis;
+    public long timeNanos;
+    public String source;
+    public String packageName;
+    public String url;
+    public String method;
+    public String detail;
+    public int status;
+    public long length;
+    public Object headers;
+    public Object body;
+
+    CaptureEvent(int index) {
+        this.index = index;
+    }
+
+    void clear() {
+        hook = null;
+        source = null;
+        packageName = null;
+        url = null;
+        method = null;
+        detail = null;
+        headers = null;
+        body = null;
+    }
+}
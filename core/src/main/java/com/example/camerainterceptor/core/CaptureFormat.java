@@ -0,0 +1,70 @@
+package com.example.camerainterceptor.core;
+
+/**
+ * Layout of the binary capture segment files written by CaptureStore.
+ *
+ * All values are big-endian. A segment starts with a fixed header:
+ *
+ *   int   MAGIC
+ *   short VERSION
+ *   short SEGMENT_HEADER_SIZE
+ *   long  creation time (epoch millis)
+ *
+ * followed by records until a zero length or the end of the file:
+ *
+ *   int   record length (bytes after this field)
+ *   byte  event kind (CaptureEvent constants)
+ *   byte  flags
+ *   long  wall time (epoch millis)
+ *   long  monotonic time (System.nanoTime)
+ *   long  exchange id, or 0
+ *   int   status code, or 0
+ *   long  total body length seen, or -1
+ *   str   package, url, method, source, detail
+ *   short header count, then name/value str pairs
+ *   int   body length, then the body bytes
+ *
+ * where str is an unsigned short byte length followed by UTF-8 bytes.
+ * Records of kind EXCHANGE carry the finished exchange's phase times in
+ * detail, as space-separated name=nanos pairs relative to connect (see
+ * Exchange.timings()), its response code in status and, if the request
+ * was made through an annotated API (Retrofit), the API method as
+ * "Interface.method" in source. A WebView page load is an EXCHANGE
+ * record with source "WebView", whose detail adds lastSubrequest and
+ * subrequests=<count> for the requests the page made before it finished
+ * loading; requests seen inside it carry the page's exchange id.
+ * A response body streamed to disk has RESPONSE_PROGRESS records while
+ * it is read, each without a body, with the bytes received so far as its
+ * length and "elapsed=<ns>" since capture started as its detail; its
+ * RESPONSE_BODY record always refers to a blob, or has no body and
+ * FLAG_BODY_TRUNCATED if nothing could be stored.
+ * Body records keep the body as the stream carried it: FLAG_GZIP or
+ * FLAG_DEFLATE mark a compressed body (both set for any other
+ * Content-Encoding), and detail carries its Content-Type when the hook
+ * knew it.
+ * With FLAG_BODY_BLOB the body field is just the long XXH64 hash of the
+ * body, which is stored once as <package>-blobs/<16 hex digits>.blob
+ * (see BlobStore); the other flags and the total length still describe it.
+ * The length field is written last, so a record cut short by a crash
+ * reads as the end of the segment.
+ */
+public final class CaptureFormat {
+    public static final int MAGIC = 0x43494331; // "CIC1"
+    public static final short VERSION = 3;
+    public static final short SEGMENT_HEADER_SIZE = 16;
+    public static final String SEGMENT_SUFFIX = ".cap";
+
+    // Record flags
+    public static final int FLAG_BODY_TRUNCATED = 1;
+    public static final int FLAG_GZIP = 2;
+    public static final int FLAG_DEFLATE = 4;
+    public static final int FLAG_BODY_BLOB = 8;
+
+    // Fixed part of a record after the length field
+    public static final int RECORD_FIXED_SIZE = 1 + 1 + 8 + 8 + 8 + 4 + 8;
+    public static final int MAX_STRING_BYTES = 0xFFFF;
+    public static final int MAX_HEADERS = 0xFFFF;
+
+    private CaptureFormat() {
+    }
+}
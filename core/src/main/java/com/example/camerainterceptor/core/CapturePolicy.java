@@ -0,0 +1,176 @@
+package com.example.camerainterceptor.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides how much of a matched request is captured, so capture cost stays
+ * bounded however often the app calls a target.
+ *
+ * An exchange is admitted only if both its pattern's and its host's token
+ * buckets have a token; otherwise it is skipped entirely. An admitted
+ * exchange always keeps its headers and timings, and its bodies are kept
+ * with probability bodySampleRate. Repeated URL constructions are counted
+ * per window by a UrlAggregator instead of being reported one by one.
+ *
+ * The writer thread reports its backlog after every drain. While the ring
+ * is more than a quarter full, each further quarter halves the bucket rates
+ * and the sample rate; in the last quarter, or for a while after events
+ * were dropped, no bodies are kept at all. The ring's drop count is
+ * cumulative, so a policy built by a config reload starts from the drop
+ * count its predecessor last saw rather than from zero.
+ */
+public final class CapturePolicy {
+    public static final int SKIP = 0;
+    public static final int METADATA = 1;
+    public static final int FULL = 2;
+
+    public static final int MAX_PRESSURE = 3;
+    // How long pressure stays at MAX_PRESSURE after the ring dropped events
+    private static final long DROP_HOLD_NANOS = 5_000_000_000L;
+
+    private final TokenBucket[] patternBuckets;
+    private final ConcurrentHashMap<String, TokenBucket> hostBuckets = new ConcurrentHashMap<>();
+    private final TokenBucket otherHosts;
+    private final double hostRate;
+    private final int hostBurst;
+    private final int maxHosts;
+    private final double bodySampleRate;
+    private final UrlAggregator urls;
+
+    private volatile int pressure;
+    private long lastDropped;
+    private long holdUntilNanos;
+
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong sampledOut = new AtomicLong();
+
+    /**
+     * Rates are admitted exchanges per second, per pattern (one bucket for
+     * each of the UrlMatcher's patterns) and per host. The first maxHosts
+     * hosts get their own bucket; the rest share one.
+     */
+    public CapturePolicy(int patterns, double patternRate, int patternBurst, double hostRate, int hostBurst,
+                         int maxHosts, double bodySampleRate, int maxUrls) {
+        this.patternBuckets = new TokenBucket[patterns];
+        for (int i = 0; i < patterns; i++) {
+            patternBuckets[i] = new TokenBucket(patternRate, patternBurst);
+        }
+        this.hostRate = hostRate;
+        this.hostBurst = hostBurst;
+        this.maxHosts = maxHosts;
+        this.otherHosts = new TokenBucket(hostRate, hostBurst);
+        this.bodySampleRate = bodySampleRate;
+        this.urls = new UrlAggregator(maxUrls);
+        this.holdUntilNanos = System.nanoTime();
+    }
+
+    /** Returns SKIP, METADATA or FULL for a new exchange. */
+    public int decide(String host, int pattern) {
+        if (!admit(host, pattern)) return SKIP;
+        return sampleBody() ? FULL : METADATA;
+    }
+
+    /** Takes a token from the pattern's and the host's bucket; pattern is a UrlMatcher index. */
+    public boolean admit(String host, int pattern) {
+        long now = System.nanoTime();
+        int slowdown = pressure;
+        if (pattern >= 0 && pattern < patternBuckets.length
+                && !patternBuckets[pattern].tryAcquire(now, slowdown)) {
+            skipped.incrementAndGet();
+            return false;
+        }
+        if (host != null && !hostBucket(host).tryAcquire(now, slowdown)) {
+            skipped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /** Whether to keep the bodies of an admitted exchange. */
+    public boolean sampleBody() {
+        int level = pressure;
+        double rate = level >= MAX_PRESSURE ? 0 : bodySampleRate / (1 << level);
+        if (rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate)) return true;
+        sampledOut.incrementAndGet();
+        return false;
+    }
+
+    private TokenBucket hostBucket(String host) {
+        TokenBucket bucket = hostBuckets.get(host);
+        if (bucket != null) return bucket;
+        if (hostBuckets.size() >= maxHosts) return otherHosts;
+        bucket = new TokenBucket(hostRate, hostBurst);
+        TokenBucket existing = hostBuckets.putIfAbsent(host, bucket);
+        return existing != null ? existing : bucket;
+    }
+
+    /** Host part of an absolute URL (the bucket key), or null; cheaper than parsing a java.net.URI. */
+    public static String host(String url) {
+        if (url == null) return null;
+        int start = url.indexOf("://");
+        if (start < 0) return null;
+        start += 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == ':' || c == '?' || c == '#') break;
+            end++;
+        }
+        return end > start ? url.substring(start, end) : null;
+    }
+
+    /** Returns true if the URL should be reported now rather than counted; see UrlAggregator. */
+    public boolean reportUrl(String url) {
+        return urls.record(url);
+    }
+
+    /** Closes the URL aggregation window; writer thread only. */
+    public void drainRepeatedUrls(UrlAggregator.Sink sink) {
+        urls.drain(sink);
+    }
+
+    /**
+     * Takes over the drop baseline and any drop hold of the policy this one
+     * replaces, so the drops it already saw are not read as new ones;
+     * writer thread only.
+     */
+    public void continueFrom(CapturePolicy previous) {
+        lastDropped = previous.lastDropped;
+        holdUntilNanos = previous.holdUntilNanos;
+    }
+
+    /** Sets the pressure from the writer's backlog; writer thread only. */
+    public void updateBacklog(int backlog, int capacity, long dropped) {
+        long now = System.nanoTime();
+        if (dropped != lastDropped) {
+            lastDropped = dropped;
+            holdUntilNanos = now + DROP_HOLD_NANOS;
+        }
+        int level = now - holdUntilNanos < 0
+            ? MAX_PRESSURE
+            : Math.min(MAX_PRESSURE, (int) (4L * backlog / Math.max(1, capacity)));
+        if (level != pressure) pressure = level;
+    }
+
+    public int pressure() {
+        return pressure;
+    }
+
+    public long skipped() {
+        return skipped.get();
+    }
+
+    public long sampledOut() {
+        return sampledOut.get();
+    }
+
+    public void appendSummary(StringBuilder out) {
+        out.append("🎚️ Capture policy: pressure ").append(pressure).append('/').append(MAX_PRESSURE)
+            .append(", ").append(skipped.get()).append(" exchanges skipped, ")
+            .append(sampledOut.get()).append(" bodies sampled out, ")
+            .append(urls.aggregated()).append(" URL repeats aggregated, ")
+            .append(urls.overflow()).append(" URLs over the window limit\n");
+    }
+}
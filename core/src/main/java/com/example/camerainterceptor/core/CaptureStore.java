@@ -0,0 +1,436 @@
+package com.example.camerainterceptor.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only capture sink backed by memory-mapped segment files.
+ *
+ * Records (see CaptureFormat) are appended to the current segment of the
+ * package; when a record no longer fits, a new segment is started and the
+ * oldest segments beyond the retention limit are deleted. Small bodies are
+ * copied straight from the capture buffers into the mapping; larger ones
+ * go to the package's BlobStore once per distinct content, and the record
+ * keeps only their hash. A streamed body (see StreamingBody) is already
+ * in a file by the time its record is written; the file is moved into the
+ * BlobStore as it is.
+ *
+ * Only the EventWriter thread may use a store.
+ */
+public final class CaptureStore implements Closeable {
+    private static final byte[] EMPTY = new byte[0];
+    // Smaller bodies stay inline; a blob file costs a file system block anyway
+    private static final int BLOB_MIN_BYTES = 512;
+    // Recently stored body hashes remembered to skip rewriting repeats
+    private static final int RECENT_BLOBS = 256;
+
+    private final File directory;
+    private final String packageName;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private MappedByteBuffer segment;
+    private File segmentFile;
+    private long segmentMillis;
+    private int sequence;
+
+    private final BlobStore blobs;
+    private final XxHash64 hasher = new XxHash64();
+    private boolean lastBodyRepeated;
+
+    // Scratch space reused between records
+    private final List<byte[]> headerNames = new ArrayList<>();
+    private final List<byte[]> headerValues = new ArrayList<>();
+
+    // The record being written, from prepare() to put()
+    private byte[] pkg;
+    private byte[] url;
+    private byte[] method;
+    private byte[] source;
+    private byte[] detail;
+    private int flags;
+    private int bodyLength;
+    private int recordBodyLength;
+    private boolean bodyBlob;
+    private long bodyHash;
+    private StreamingBody streamed;
+
+    public CaptureStore(File directory, String packageName, int segmentSize, int maxSegments) {
+        this.directory = directory;
+        this.packageName = packageName;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.blobs = new BlobStore(new File(directory, packageName + "-blobs"), RECENT_BLOBS);
+    }
+
+    public void append(CaptureEvent e) throws IOException {
+        int recordLength = prepare(e, maxRecord(), true);
+        if (segment == null || segment.remaining() < 4 + recordLength) {
+            rotate();
+        }
+        // After rotating, so the blob is dated to the segment that refers to it
+        if (!bodyBlob) {
+            lastBodyRepeated = false;
+        } else if (streamed != null) {
+            lastBodyRepeated = !blobs.adopt(bodyHash, streamed.file(), bodyLength, segmentMillis);
+        } else {
+            lastBodyRepeated = !blobs.put(bodyHash, e.body, bodyLength, segmentMillis);
+        }
+        put(segment, e, recordLength);
+    }
+
+    /**
+     * Encodes e into out as a record with its body inline, e.g. to hand it
+     * to the store of another process. Bodies are cut to what fits an empty
+     * out. Returns false, writing nothing, if the record does not fit the
+     * space left or its body is streamed, which only append() stores.
+     */
+    public boolean encode(CaptureEvent e, ByteBuffer out) {
+        if (StreamingBody.of(e.body) != null) return false;
+        int recordLength = prepare(e, out.capacity() - 4, false);
+        if (out.remaining() < 4 + recordLength) {
+            headerNames.clear();
+            headerValues.clear();
+            return false;
+        }
+        put(out, e, recordLength);
+        return true;
+    }
+
+    /**
+     * Appends a record made by encode(), starting at the buffer's position
+     * and advancing past it. A large inline body goes to the blob store as
+     * it would in append(). exchangeBase is added to a non-zero exchange
+     * id, to keep the ids of records from different processes apart.
+     */
+    public void appendRecord(ByteBuffer record, long exchangeBase) throws IOException {
+        int start = record.position();
+        int recordLength = record.remaining() >= 4 ? record.getInt(start) : -1;
+        int end = start + 4 + recordLength;
+        if (recordLength < CaptureFormat.RECORD_FIXED_SIZE || end > record.limit()) {
+            throw new IOException("Malformed record at " + start);
+        }
+        // The body field follows the fixed part, five strings and the headers
+        int p = start + 4 + CaptureFormat.RECORD_FIXED_SIZE;
+        for (int i = 0; i < 5 && p + 2 <= end; i++) p += 2 + (record.getShort(p) & 0xFFFF);
+        int headers = p + 2 <= end ? record.getShort(p) & 0xFFFF : 0;
+        p += 2;
+        for (int i = 0; i < 2 * headers && p + 2 <= end; i++) p += 2 + (record.getShort(p) & 0xFFFF);
+        if (p + 4 > end) throw new IOException("Malformed record at " + start);
+        int length = record.getInt(p);
+        int flags = record.get(start + 5) & 0xFF;
+        long exchange = record.getLong(start + 4 + 18);
+        record.position(end);
+
+        boolean blob = length >= BLOB_MIN_BYTES && (flags & CaptureFormat.FLAG_BODY_BLOB) == 0
+                && p + 4 + length == end && record.hasArray();
+        int storedLength = blob ? p + 4 + 8 - start - 4 : recordLength;
+        if (storedLength > maxRecord()) return;
+        if (segment == null || segment.remaining() < 4 + storedLength) {
+            rotate();
+        }
+        lastBodyRepeated = false;
+        MappedByteBuffer out = segment;
+        int outStart = out.position();
+        ByteBuffer copy = record.duplicate();
+        copy.limit(blob ? p : end).position(start + 4);
+        out.position(outStart + 4);
+        out.put(copy);
+        if (blob) {
+            int bodyStart = record.arrayOffset() + p + 4;
+            long hash = hasher.reset().update(record.array(), bodyStart, length).digest();
+            lastBodyRepeated = !blobs.put(hash, record.array(), bodyStart, length, segmentMillis);
+            out.put(outStart + 5, (byte) (flags | CaptureFormat.FLAG_BODY_BLOB));
+            out.putInt(8);
+            out.putLong(hash);
+        }
+        if (exchange != 0) out.putLong(outStart + 4 + 18, exchange + exchangeBase);
+        out.putInt(outStart, storedLength);
+    }
+
+    // Largest record a segment holds, after its header and the record's length field
+    private int maxRecord() {
+        return segmentSize - CaptureFormat.SEGMENT_HEADER_SIZE - 4;
+    }
+
+    // Encodes e's fields and decides its body's form; returns the record length
+    private int prepare(CaptureEvent e, int maxRecord, boolean useBlobs) {
+        pkg = utf8(e.packageName);
+        url = utf8(e.url);
+        method = utf8(e.method);
+        source = utf8(e.source);
+        String detailText = e.detail;
+        int headerBytes = collectHeaders(e.headers);
+
+        flags = 0;
+        streamed = StreamingBody.of(e.body);
+        bodyLength = streamed != null ? streamed.storedLength() : bodyLength(e.body);
+        if (e.body instanceof CaptureBuffer) {
+            CaptureBuffer buffer = (CaptureBuffer) e.body;
+            if (buffer.isTruncated()) flags |= CaptureFormat.FLAG_BODY_TRUNCATED;
+            flags |= codingFlags(buffer.contentCoding());
+            if (detailText == null) detailText = buffer.contentType();
+        }
+        detail = utf8(detailText);
+
+        if (streamed != null) {
+            // Only the file holds the body; without it the record has none
+            bodyBlob = useBlobs && streamed.file() != null && bodyLength >= BLOB_MIN_BYTES;
+            if (bodyBlob) {
+                bodyHash = streamed.hash();
+            } else {
+                bodyLength = 0;
+                flags |= CaptureFormat.FLAG_BODY_TRUNCATED;
+            }
+        } else {
+            bodyBlob = useBlobs && bodyLength >= BLOB_MIN_BYTES;
+            if (bodyBlob) bodyHash = hash(e.body, bodyLength);
+        }
+        if (bodyBlob) flags |= CaptureFormat.FLAG_BODY_BLOB;
+        recordBodyLength = bodyBlob ? 8 : bodyLength;
+
+        int fixed = CaptureFormat.RECORD_FIXED_SIZE
+                + 5 * 2 + pkg.length + url.length + method.length + source.length + detail.length
+                + 2 + headerBytes + 4;
+        if (fixed > maxRecord) {
+            // Oversized headers; keep the record but drop them
+            fixed -= headerBytes;
+            headerNames.clear();
+            headerValues.clear();
+        }
+        if (!bodyBlob && fixed + bodyLength > maxRecord) {
+            bodyLength = recordBodyLength = Math.max(0, maxRecord - fixed);
+            flags |= CaptureFormat.FLAG_BODY_TRUNCATED;
+        }
+        return fixed + recordBodyLength;
+    }
+
+    private void put(ByteBuffer out, CaptureEvent e, int recordLength) {
+        int start = out.position();
+        out.position(start + 4);
+        out.put((byte) e.kind);
+        out.put((byte) flags);
+        out.putLong(e.timeMillis);
+        out.putLong(e.timeNanos);
+        out.putLong(e.exchange);
+        out.putInt(e.status);
+        out.putLong(e.length);
+        putString(out, pkg);
+        putString(out, url);
+        putString(out, method);
+        putString(out, source);
+        putString(out, detail);
+        out.putShort((short) headerNames.size());
+        for (int i = 0; i < headerNames.size(); i++) {
+            putString(out, headerNames.get(i));
+            putString(out, headerValues.get(i));
+        }
+        out.putInt(recordBodyLength);
+        if (bodyBlob) {
+            out.putLong(bodyHash);
+        } else {
+            putBody(out, e.body, bodyLength);
+        }
+        // Publish the record by writing its length last
+        out.putInt(start, recordLength);
+        headerNames.clear();
+        headerValues.clear();
+    }
+
+    /** Whether the body of the last appended record was already stored, i.e. a repeat. */
+    public boolean lastBodyRepeated() {
+        return lastBodyRepeated;
+    }
+
+    public void appendSummary(StringBuilder out) {
+        blobs.appendSummary(out);
+    }
+
+    private long hash(Object body, int length) {
+        hasher.reset();
+        if (body instanceof CaptureBuffer) {
+            hasher.update((CaptureBuffer) body);
+        } else {
+            hasher.update((byte[]) body, 0, length);
+        }
+        return hasher.digest();
+    }
+
+    private static int codingFlags(int coding) {
+        switch (coding) {
+            case ContentCoding.GZIP: return CaptureFormat.FLAG_GZIP;
+            case ContentCoding.DEFLATE: return CaptureFormat.FLAG_DEFLATE;
+            case ContentCoding.OTHER: return CaptureFormat.FLAG_GZIP | CaptureFormat.FLAG_DEFLATE;
+            default: return 0;
+        }
+    }
+
+    private int collectHeaders(Object headers) {
+        headerNames.clear();
+        headerValues.clear();
+        if (headers == null) return 0;
+        int bytes = 0;
+        if (headers instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) headers).entrySet()) {
+                if (headerNames.size() == CaptureFormat.MAX_HEADERS) break;
+                Object value = entry.getValue();
+                if (value instanceof List) {
+                    List<?> values = (List<?>) value;
+                    StringBuilder joined = new StringBuilder();
+                    for (int i = 0; i < values.size(); i++) {
+                        if (i > 0) joined.append(", ");
+                        joined.append(values.get(i));
+                    }
+                    value = joined;
+                }
+                bytes += addHeader(entry.getKey(), value);
+            }
+        } else if (headers instanceof Object[]) {
+            // Apache Header[]; each header's text form is "Name: value"
+            for (Object header : (Object[]) headers) {
+                if (headerNames.size() == CaptureFormat.MAX_HEADERS) break;
+                bytes += addHeader(null, header);
+            }
+        } else {
+            // Library header objects (OkHttp Headers etc.) are stored as their text form
+            bytes += addHeader(null, headers);
+        }
+        return bytes;
+    }
+
+    private int addHeader(Object name, Object value) {
+        byte[] n = utf8(name == null ? null : name.toString());
+        byte[] v = utf8(value == null ? null : value.toString());
+        headerNames.add(n);
+        headerValues.add(v);
+        return 4 + n.length + v.length;
+    }
+
+    private static int bodyLength(Object body) {
+        if (body instanceof CaptureBuffer) return ((CaptureBuffer) body).size();
+        if (body instanceof byte[]) return ((byte[]) body).length;
+        return 0;
+    }
+
+    private static void putBody(ByteBuffer out, Object body, int length) {
+        if (length == 0) return;
+        if (body instanceof CaptureBuffer) {
+            CaptureBuffer buffer = (CaptureBuffer) body;
+            for (int i = 0; i < buffer.chunkCount() && length > 0; i++) {
+                int n = Math.min(length, buffer.chunkLength(i));
+                out.put(buffer.chunk(i), 0, n);
+                length -= n;
+            }
+        } else if (body instanceof byte[]) {
+            out.put((byte[]) body, 0, length);
+        }
+    }
+
+    private static void putString(ByteBuffer out, byte[] value) {
+        out.putShort((short) value.length);
+        out.put(value);
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null || value.isEmpty()) return EMPTY;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= CaptureFormat.MAX_STRING_BYTES
+                ? bytes : Arrays.copyOf(bytes, CaptureFormat.MAX_STRING_BYTES);
+    }
+
+    private void rotate() throws IOException {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        long now = System.currentTimeMillis();
+        File file;
+        do {
+            file = new File(directory, packageName + "-" + now + "-" + (sequence++) + CaptureFormat.SEGMENT_SUFFIX);
+        } while (!file.createNewFile());
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segment.putInt(CaptureFormat.MAGIC);
+        segment.putShort(CaptureFormat.VERSION);
+        segment.putShort(CaptureFormat.SEGMENT_HEADER_SIZE);
+        segment.putLong(now);
+        segmentFile = file;
+        segmentMillis = now;
+
+        deleteOldSegments();
+    }
+
+    private void deleteOldSegments() {
+        final String prefix = packageName + "-";
+        File[] files = directory.listFiles((dir, name) ->
+                name.startsWith(prefix) && name.endsWith(CaptureFormat.SEGMENT_SUFFIX));
+        if (files == null || files.length <= maxSegments) return;
+        // Names, not modification times: copying or restoring the directory resets those
+        Arrays.sort(files, (a, b) -> {
+            int order = Long.compare(createdMillis(a, prefix), createdMillis(b, prefix));
+            return order != 0 ? order : Long.compare(sequenceNumber(a, prefix), sequenceNumber(b, prefix));
+        });
+        for (int i = 0; i < files.length - maxSegments; i++) {
+            if (!files[i].equals(segmentFile)) {
+                files[i].delete();
+            }
+        }
+        long oldest = segmentMillis;
+        for (int i = files.length - maxSegments; i < files.length; i++) {
+            oldest = Math.min(oldest, createdMillis(files[i], prefix));
+        }
+        blobs.collect(oldest);
+    }
+
+    // Segment names are <package>-<creation millis>-<sequence>.cap
+    private static long createdMillis(File file, String prefix) {
+        String name = file.getName();
+        int end = name.indexOf('-', prefix.length());
+        try {
+            return Long.parseLong(name.substring(prefix.length(), end));
+        } catch (RuntimeException e) {
+            return file.lastModified();
+        }
+    }
+
+    private static long sequenceNumber(File file, String prefix) {
+        String name = file.getName();
+        int start = name.indexOf('-', prefix.length()) + 1;
+        int end = name.length() - CaptureFormat.SEGMENT_SUFFIX.length();
+        try {
+            return Long.parseLong(name.substring(start, end));
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    public File currentSegment() {
+        return segmentFile;
+    }
+
+    @Override
+    public void close() {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.camerainterceptor.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * InputStream that copies everything the app reads into a CaptureBuffer
+ * and can replace the rest of the stream once the body is complete.
+ *
+ * The listener is called once, at end of stream, on close() or on finish(), and owns
+ * the buffer from then on. If it returns replacement bytes, later reads
+ * are served from them instead of the original stream. If an Exchange is
+ * given, that moment is stamped on it as the exchange's close.
+ *
+ * With a StreamingBody.Sink, a body reaching streamBytes is streamed
+ * instead: each full part is handed to the sink and capture continues in
+ * a fresh buffer, and the listener gets the last part (see StreamingBody).
+ * Rewriting needs the whole body, so a streamed one is only ever logged.
+ */
+public final class CapturingInputStream extends InputStream {
+    public interface Listener {
+        /** Returns the bytes to serve from now on, or null to keep the original stream. */
+        byte[] onResponseBody(CaptureBuffer capture);
+    }
+
+    private final InputStream originalStream;
+    private CaptureBuffer capture;
+    private final Exchange exchange;
+    private final Listener listener;
+    private final int streamBytes;
+    private final StreamingBody.Sink sink;
+    private final long startNanos;
+    private StreamingBody streaming;
+    private boolean captured = false;
+    private byte[] modifiedData = null;
+    private int modifiedDataIndex = 0;
+
+    public CapturingInputStream(InputStream original, CaptureBuffer capture, Exchange exchange,
+                                Listener listener) {
+        this(original, capture, exchange, listener, 0, null);
+    }
+
+    /** Streams bodies of streamBytes or more through sink; a null sink keeps them in memory. */
+    public CapturingInputStream(InputStream original, CaptureBuffer capture, Exchange exchange,
+                                Listener listener, int streamBytes, StreamingBody.Sink sink) {
+        this.originalStream = original;
+        this.capture = capture;
+        this.exchange = exchange;
+        this.listener = listener;
+        this.streamBytes = streamBytes;
+        this.sink = sink;
+        this.startNanos = sink != null ? System.nanoTime() : 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        // If we have modified data, serve it first
+        if (modifiedData != null) {
+            if (modifiedDataIndex < modifiedData.length) {
+                return modifiedData[modifiedDataIndex++] & 0xFF;
+            } else {
+                return -1; // End of modified data
+            }
+        }
+
+        int b = originalStream.read();
+        if (b != -1) {
+            if (captured) return b;
+            capture.write(b);
+            if (sink != null) spill();
+        } else if (!captured) {
+            complete();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        // If we have modified data, serve it
+        if (modifiedData != null) {
+            int remaining = modifiedData.length - modifiedDataIndex;
+            if (remaining <= 0) return -1;
+
+            int toRead = Math.min(len, remaining);
+            System.arraycopy(modifiedData, modifiedDataIndex, b, off, toRead);
+            modifiedDataIndex += toRead;
+            return toRead;
+        }
+
+        int bytesRead = originalStream.read(b, off, len);
+        if (bytesRead > 0) {
+            if (captured) return bytesRead;
+            capture.write(b, off, bytesRead);
+            if (sink != null) spill();
+        } else if (!captured) {
+            complete();
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!captured) {
+            complete();
+        }
+        originalStream.close();
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (modifiedData != null) {
+            return modifiedData.length - modifiedDataIndex;
+        }
+        return originalStream.available();
+    }
+
+    /**
+     * Reports the body captured so far, as close() would, without closing
+     * the stream; for an owner that discards the rest of the body. Later
+     * reads are passed through uncaptured.
+     */
+    public void finish() {
+        complete();
+    }
+
+    // Hands the buffer over once it holds a part, or, once streaming, when a progress report is due
+    private void spill() {
+        if (streaming == null) {
+            if (capture.size() < streamBytes) return;
+            streaming = new StreamingBody(sink, capture.maxBytes(), startNanos);
+            capture.startPart(streaming, 0);
+        } else if (capture.size() < streamBytes && !streaming.handOverDue(System.nanoTime())) {
+            return;
+        }
+        capture = streaming.handOver(capture, System.nanoTime());
+    }
+
+    private void complete() {
+        if (captured) return;
+        captured = true;
+        if (exchange != null) exchange.markClose();
+        byte[] replacement = listener.onResponseBody(capture);
+        if (replacement != null) {
+            modifiedData = replacement;
+            modifiedDataIndex = 0;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.camerainterceptor.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * OutputStream that passes every byte through to the app's stream and
+ * copies it into a CaptureBuffer.
+ *
+ * The listener is called once, on the first close(), and owns the buffer
+ * from then on. If an Exchange is given, the first and last request bytes
+ * are stamped on it; single-byte writes only stamp the first byte, and
+ * the request end is then taken at close() or when the response starts.
+ */
+public final class CapturingOutputStream extends OutputStream {
+    public interface Listener {
+        void onRequestBody(CaptureBuffer capture);
+    }
+
+    private final OutputStream originalStream;
+    private final CaptureBuffer capture;
+    private final Exchange exchange;
+    private final Listener listener;
+    private boolean started = false;
+    private boolean closed = false;
+
+    public CapturingOutputStream(OutputStream original, CaptureBuffer capture, Exchange exchange,
+                                 Listener listener) {
+        this.originalStream = original;
+        this.capture = capture;
+        this.exchange = exchange;
+        this.listener = listener;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!started) start();
+        originalStream.write(b);
+        capture.write(b);
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        started = true;
+        if (exchange != null) exchange.markRequestWrite();
+        originalStream.write(b, off, len);
+        capture.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            if (exchange != null) exchange.markRequestEnd();
+            listener.onRequestBody(capture);
+        }
+        originalStream.close();
+    }
+
+    private void start() {
+        started = true;
+        if (exchange != null) exchange.markRequestStart();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        originalStream.flush();
+    }
+}
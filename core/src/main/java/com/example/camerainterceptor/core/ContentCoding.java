@@ -0,0 +1,64 @@
+package com.example.camerainterceptor.core;
+
+/**
+ * Content-Encoding of a captured body.
+ *
+ * Bodies are captured as the app's stream yields them: when the app asked
+ * for compression itself, the platform does not decompress and the
+ * capture holds gzip or deflate bytes. The coding is recorded with the
+ * capture so the writer thread can inflate it later (see BodyDecoder).
+ */
+public final class ContentCoding {
+    public static final int IDENTITY = 0;
+    public static final int GZIP = 1;
+    public static final int DEFLATE = 2;
+    // Stacked or unknown codings; kept as captured and never decoded
+    public static final int OTHER = 3;
+
+    private ContentCoding() {
+    }
+
+    /** Parses a Content-Encoding header value; null or empty means IDENTITY. */
+    public static int of(String contentEncoding) {
+        if (contentEncoding == null) return IDENTITY;
+        int coding = IDENTITY;
+        int start = 0;
+        int length = contentEncoding.length();
+        while (start < length) {
+            int end = contentEncoding.indexOf(',', start);
+            if (end < 0) end = length;
+            int token = token(contentEncoding, start, end);
+            if (token != IDENTITY) {
+                // Only a single coding can be decoded
+                if (coding != IDENTITY) return OTHER;
+                coding = token;
+            }
+            start = end + 1;
+        }
+        return coding;
+    }
+
+    private static int token(String value, int start, int end) {
+        while (start < end && value.charAt(start) <= ' ') start++;
+        while (end > start && value.charAt(end - 1) <= ' ') end--;
+        int length = end - start;
+        if (length == 0 || (length == 8 && value.regionMatches(true, start, "identity", 0, 8))) {
+            return IDENTITY;
+        }
+        if ((length == 4 && value.regionMatches(true, start, "gzip", 0, 4))
+                || (length == 6 && value.regionMatches(true, start, "x-gzip", 0, 6))) {
+            return GZIP;
+        }
+        if (length == 7 && value.regionMatches(true, start, "deflate", 0, 7)) return DEFLATE;
+        return OTHER;
+    }
+
+    public static String name(int coding) {
+        switch (coding) {
+            case IDENTITY: return "identity";
+            case GZIP: return "gzip";
+            case DEFLATE: return "deflate";
+            default: return "other";
+        }
+    }
+}
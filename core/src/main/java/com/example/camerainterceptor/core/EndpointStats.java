@@ -0,0 +1,87 @@
+package com.example.camerainterceptor.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Time-to-first-byte and total latency histograms per endpoint (host and
+ * path) for finished exchanges.
+ *
+ * Only the writer thread records; readers get consistent-enough numbers
+ * from the histograms' atomic counters. The number of endpoints is capped,
+ * and exchanges for endpoints past the cap are pooled under OTHER.
+ */
+public final class EndpointStats {
+    public static final String OTHER = "(other)";
+
+    public static final class Endpoint {
+        public final String name;
+        public final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+        public final LatencyHistogram total = new LatencyHistogram();
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        public long exchanges() {
+            return total.count();
+        }
+    }
+
+    private final int maxEndpoints;
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+    private volatile List<Endpoint> snapshot = new ArrayList<>();
+
+    public EndpointStats(int maxEndpoints) {
+        this.maxEndpoints = maxEndpoints;
+    }
+
+    public void record(Exchange exchange) {
+        long total = exchange.totalLatency();
+        if (total < 0) return;
+        String name = Exchange.endpoint(exchange.url);
+        Endpoint endpoint = endpoints.get(name);
+        if (endpoint == null) {
+            if (endpoints.size() >= maxEndpoints) name = OTHER;
+            endpoint = endpoints.get(name);
+            if (endpoint == null) {
+                endpoint = new Endpoint(name);
+                endpoints.put(name, endpoint);
+                snapshot = new ArrayList<>(endpoints.values());
+            }
+        }
+        long ttfb = exchange.timeToFirstByte();
+        if (ttfb >= 0) endpoint.timeToFirstByte.record(ttfb);
+        endpoint.total.record(total);
+    }
+
+    /** Endpoints in the order they were first seen; safe to call from any thread. */
+    public List<Endpoint> endpoints() {
+        return snapshot;
+    }
+
+    /** Appends one line per endpoint with exchange count and latency percentiles. */
+    public void appendSummary(StringBuilder out) {
+        for (Endpoint endpoint : snapshot) {
+            out.append("⏱️ ").append(endpoint.name).append(": ")
+                .append(endpoint.exchanges()).append(" exchanges, TTFB");
+            appendPercentiles(out, endpoint.timeToFirstByte);
+            out.append(", total");
+            appendPercentiles(out, endpoint.total);
+            out.append('\n');
+        }
+    }
+
+    private static void appendPercentiles(StringBuilder out, LatencyHistogram histogram) {
+        out.append(" p50 ").append(millis(histogram.percentile(50)))
+            .append(" p90 ").append(millis(histogram.percentile(90)))
+            .append(" p99 ").append(millis(histogram.percentile(99)));
+    }
+
+    public static String millis(long nanos) {
+        return String.format(Locale.US, "%.1fms", nanos / 1e6);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.camerainterceptor.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring of preallocated CaptureEvent slots.
+ *
+ * Any number of hook threads may claim and publish slots; exactly one
+ * consumer (the EventWriter thread) polls and releases them. Each slot
+ * carries a sequence number so producers and the consumer hand slots over
+ * without locks. When the ring is full the event is dropped and counted
+ * instead of blocking the app's thread.
+ */
+public final class EventRing {
+    private final CaptureEvent[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // Only written by the consumer thread
+    private volatile long head;
+
+    public EventRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        slots = new CaptureEvent[capacity];
+        sequences = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new CaptureEvent(i);
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Claims a free slot for writing, or returns null (and counts a drop)
+     * when the ring is full. A claimed slot must be handed to publish().
+     */
+    public CaptureEvent claim() {
+        long pos = tail.get();
+        for (;;) {
+            int idx = (int) pos & mask;
+            long diff = sequences.get(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    CaptureEvent event = slots[idx];
+                    event.position = pos;
+                    return event;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                dropped.incrementAndGet();
+                return null;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    public void publish(CaptureEvent event) {
+        sequences.set(event.index, event.position + 1);
+    }
+
+    /**
+     * Returns the next published event without removing it, or null.
+     * Consumer thread only.
+     */
+    public CaptureEvent poll() {
+        int idx = (int) head & mask;
+        if (sequences.get(idx) != head + 1) return null;
+        return slots[idx];
+    }
+
+    /**
+     * Clears the event returned by poll() and gives its slot back to producers.
+     * Consumer thread only.
+     */
+    public void release(CaptureEvent event) {
+        event.clear();
+        sequences.lazySet(event.index, head + slots.length);
+        head++;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    // Approximate number of events waiting for the consumer
+    public int backlog() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+}
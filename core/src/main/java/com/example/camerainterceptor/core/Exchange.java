@@ -0,0 +1,191 @@
+package com.example.camerainterceptor.core;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Timeline of one request/response exchange on a captured connection.
+ *
+ * Hooks and stream wrappers stamp the phases with System.nanoTime() as
+ * they happen, possibly from different app threads; the finished exchange
+ * is then posted to the writer thread, which derives the latencies. A
+ * phase that was never seen stays 0. capture is the CapturePolicy decision
+ * made when the exchange started, and applies to all of its events.
+ *
+ * A WebView page load is tracked as one exchange too, from the main-frame
+ * request to onPageFinished, counting the requests the page makes while
+ * it loads as subrequests. A page that is not a target starts out
+ * untracked (id 0, capture SKIP, no policy decision) and only becomes a
+ * tracked exchange, with the timeline so far, once one of its requests
+ * matches.
+ */
+public final class Exchange {
+    private static final AtomicIntegerFieldUpdater<Exchange> SUBREQUESTS =
+        AtomicIntegerFieldUpdater.newUpdater(Exchange.class, "subrequests");
+
+    public final long id;
+    public final String url;
+    public final int capture;
+    private final long startNanos;
+    private volatile long connectNanos;
+    private volatile long requestStartNanos;
+    private volatile long requestEndNanos;
+    private volatile long responseStartNanos;
+    private volatile long closeNanos;
+    private volatile long lastSubrequestNanos;
+    private volatile int subrequests;
+    private volatile int status;
+    private volatile String context;
+
+    public Exchange(long id, String url, int capture) {
+        this.id = id;
+        this.url = url;
+        this.capture = capture;
+        this.startNanos = System.nanoTime();
+    }
+
+    // A tracked exchange continuing the timeline of an untracked one
+    Exchange(long id, int capture, Exchange untracked) {
+        this.id = id;
+        this.url = untracked.url;
+        this.capture = capture;
+        this.startNanos = untracked.startNanos;
+        this.connectNanos = untracked.connectNanos;
+        this.requestStartNanos = untracked.requestStartNanos;
+        this.requestEndNanos = untracked.requestEndNanos;
+        this.responseStartNanos = untracked.responseStartNanos;
+        this.closeNanos = untracked.closeNanos;
+        this.lastSubrequestNanos = untracked.lastSubrequestNanos;
+        this.subrequests = untracked.subrequests;
+        this.status = untracked.status;
+        this.context = untracked.context;
+    }
+
+    /** Whether the exchange has an id and a policy decision; untracked ones are never posted. */
+    public boolean isTracked() {
+        return id != 0;
+    }
+
+    public void markConnect() {
+        if (connectNanos == 0) connectNanos = System.nanoTime();
+    }
+
+    /** First request byte handed to the connection. */
+    public void markRequestStart() {
+        if (requestStartNanos == 0) requestStartNanos = System.nanoTime();
+    }
+
+    /** A chunk of request bytes handed to the connection; the last one ends the request. */
+    public void markRequestWrite() {
+        long now = System.nanoTime();
+        if (requestStartNanos == 0) requestStartNanos = now;
+        requestEndNanos = now;
+    }
+
+    /** Request stream closed; only counts if no chunk write already ended the request. */
+    public void markRequestEnd() {
+        if (requestStartNanos != 0 && requestEndNanos == 0) requestEndNanos = System.nanoTime();
+    }
+
+    /**
+     * Status line and headers received. A request body that was still open
+     * is complete by now.
+     */
+    public void markResponseStart(int status) {
+        if (responseStartNanos != 0) return;
+        long now = System.nanoTime();
+        if (requestStartNanos != 0 && requestEndNanos == 0) requestEndNanos = now;
+        responseStartNanos = now;
+        this.status = status;
+    }
+
+    public void markClose() {
+        if (closeNanos == 0) closeNanos = System.nanoTime();
+    }
+
+    /** A request the page made while loading; ignored once the exchange is closed. */
+    public void markSubrequest() {
+        if (closeNanos != 0) return;
+        SUBREQUESTS.incrementAndGet(this);
+        lastSubrequestNanos = System.nanoTime();
+    }
+
+    public int subrequests() {
+        return subrequests;
+    }
+
+    /** Names the API call the exchange was made for, e.g. the Retrofit interface method. */
+    public void setContext(String context) {
+        this.context = context;
+    }
+
+    public String context() {
+        return context;
+    }
+
+    /** Whether the response has been read to its end or closed. */
+    public boolean isClosed() {
+        return closeNanos != 0;
+    }
+
+    public int status() {
+        return status;
+    }
+
+    // Latencies are measured from connect(), or from the first hook that saw the connection
+    private long origin() {
+        long connect = connectNanos;
+        return connect != 0 ? connect : startNanos;
+    }
+
+    /** Nanoseconds from connect to the first response byte, or -1. */
+    public long timeToFirstByte() {
+        long responseStart = responseStartNanos;
+        return responseStart != 0 ? responseStart - origin() : -1;
+    }
+
+    /** Nanoseconds from connect to the response stream being closed, or -1. */
+    public long totalLatency() {
+        long close = closeNanos;
+        return close != 0 ? close - origin() : -1;
+    }
+
+    /**
+     * Phase times as "name=nanos" pairs relative to the origin, in the form
+     * stored in capture files (see CaptureFormat), and the subrequest count
+     * if there were any.
+     */
+    public String timings() {
+        long origin = origin();
+        StringBuilder sb = new StringBuilder(96);
+        appendPhase(sb, "connect", connectNanos, origin);
+        appendPhase(sb, "requestStart", requestStartNanos, origin);
+        appendPhase(sb, "requestEnd", requestEndNanos, origin);
+        appendPhase(sb, "responseStart", responseStartNanos, origin);
+        appendPhase(sb, "close", closeNanos, origin);
+        appendPhase(sb, "lastSubrequest", lastSubrequestNanos, origin);
+        int count = subrequests;
+        if (count > 0) sb.append(" subrequests=").append(count);
+        return sb.toString();
+    }
+
+    private static void appendPhase(StringBuilder sb, String name, long nanos, long origin) {
+        if (nanos == 0) return;
+        if (sb.length() > 0) sb.append(' ');
+        sb.append(name).append('=').append(nanos - origin);
+    }
+
+    /** Host and path of the URL, without scheme, port or query. */
+    public static String endpoint(String url) {
+        try {
+            URI uri = new URI(url);
+            String host = uri.getHost();
+            String path = uri.getRawPath();
+            if (host != null) return host + (path == null || path.isEmpty() ? "/" : path);
+        } catch (Exception e) {
+            // Fall back to the raw URL without its query
+        }
+        int query = url.indexOf('?');
+        return query < 0 ? url : url.substring(0, query);
+    }
+}
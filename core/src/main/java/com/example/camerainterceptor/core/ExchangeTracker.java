@@ -0,0 +1,86 @@
+package com.example.camerainterceptor.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Assigns an Exchange to each captured connection object.
+ *
+ * The connection is only weakly referenced, so an exchange that is never
+ * finished (the app dropped the connection without reading the response)
+ * disappears with its connection. If a CapturePolicy is given, it decides
+ * once per exchange how much of it is captured; skipped exchanges are
+ * tracked too, so later hooks on the same connection skip it as well, even
+ * if the policy was replaced in between. The "connection" can be any
+ * object identifying one request, such as a library's request object.
+ */
+public final class ExchangeTracker {
+    private final WeakIdentityMap<Object, Exchange> open = new WeakIdentityMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    /** Returns the connection's open exchange, starting one with full capture if needed. */
+    public Exchange open(Object connection, String url) {
+        return open(connection, url, null, null, UrlMatcher.NO_MATCH);
+    }
+
+    /**
+     * Returns the connection's open exchange, starting one if needed; the
+     * policy, host and UrlMatcher pattern index are only used for a new
+     * exchange.
+     */
+    public Exchange open(Object connection, String url, CapturePolicy policy, String host, int pattern) {
+        Exchange exchange = open.get(connection);
+        if (exchange != null) return exchange;
+        int capture = policy != null ? policy.decide(host, pattern) : CapturePolicy.FULL;
+        return open.putIfAbsent(connection, new Exchange(nextId.incrementAndGet(), url, capture));
+    }
+
+    /**
+     * Returns the connection's open exchange, starting an untracked one if
+     * needed: it records the timeline but takes no id and no policy
+     * decision, so it costs the policy nothing until promote().
+     */
+    public Exchange openUntracked(Object connection, String url) {
+        Exchange exchange = open.get(connection);
+        if (exchange != null) return exchange;
+        return open.putIfAbsent(connection, new Exchange(0, url, CapturePolicy.SKIP));
+    }
+
+    /**
+     * Replaces the connection's untracked exchange with a tracked one that
+     * continues its timeline, decided by the policy as open() would.
+     * Returns the connection's exchange afterwards, or null if it has none.
+     */
+    public Exchange promote(Object connection, CapturePolicy policy, String host, int pattern) {
+        Exchange exchange = open.get(connection);
+        if (exchange == null || exchange.isTracked()) return exchange;
+        int capture = policy != null ? policy.decide(host, pattern) : CapturePolicy.FULL;
+        Exchange tracked = new Exchange(nextId.incrementAndGet(), capture, exchange);
+        // Lost to a new page load or another promotion in between
+        return open.replace(connection, exchange, tracked) ? tracked : open.get(connection);
+    }
+
+    /**
+     * Tracks the connection under an exchange opened by an enclosing layer
+     * (a library running the request on top of this connection), unless it
+     * already has one. Returns the connection's exchange.
+     */
+    public Exchange adopt(Object connection, Exchange exchange) {
+        Exchange existing = open.get(connection);
+        if (existing != null) return existing;
+        return open.putIfAbsent(connection, exchange);
+    }
+
+    /** Returns the connection's open exchange, or null. */
+    public Exchange get(Object connection) {
+        return open.get(connection);
+    }
+
+    /** Stops tracking the connection and returns its exchange, or null. */
+    public Exchange finish(Object connection) {
+        return open.remove(connection);
+    }
+
+    public int openCount() {
+        return open.size();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.camerainterceptor.core;
+
+import java.util.Map;
+
+/**
+ * One-line rendering of the header objects hooks hand to the writer: a
+ * Map of name to value(s) for HttpURLConnection and Volley, an array of
+ * header objects (Apache's Header[]) whose elements render as "Name: value",
+ * or a library's own headers object, which is rendered with toString().
+ */
+public final class HeaderFormat {
+    private HeaderFormat() {
+    }
+
+    public static String format(Object headers) {
+        if (headers instanceof Object[]) {
+            StringBuilder sb = new StringBuilder();
+            for (Object header : (Object[]) headers) {
+                sb.append(header).append("; ");
+            }
+            return sb.toString();
+        }
+        if (!(headers instanceof Map)) return String.valueOf(headers);
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) headers).entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append("; ");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.camerainterceptor.core;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-hook overhead counters for this process.
+ *
+ * Every hook registers a Hook entry once; its callbacks then record how
+ * often they ran, how many calls matched a target, how many body bytes
+ * were captured, how many events were dropped, and how long each callback
+ * took. All recording is lock-free and allocation-free.
+ */
+public final class HookMetrics {
+    public static final class Hook {
+        public final String name;
+        public final AtomicLong invocations = new AtomicLong();
+        public final AtomicLong matches = new AtomicLong();
+        public final AtomicLong capturedBytes = new AtomicLong();
+        public final AtomicLong droppedEvents = new AtomicLong();
+        public final LatencyHistogram latency = new LatencyHistogram();
+
+        Hook(String name) {
+            this.name = name;
+        }
+
+        // One per hooked call
+        public void recordCall(long callbackNanos) {
+            invocations.incrementAndGet();
+            latency.record(callbackNanos);
+        }
+
+        // Additional callbacks of the same call (e.g. the before half)
+        public void recordCallback(long callbackNanos) {
+            latency.record(callbackNanos);
+        }
+
+        public void recordMatch() {
+            matches.incrementAndGet();
+        }
+
+        public void recordCapturedBytes(long bytes) {
+            if (bytes > 0) capturedBytes.addAndGet(bytes);
+        }
+
+        public void recordDrop() {
+            droppedEvents.incrementAndGet();
+        }
+    }
+
+    private final List<Hook> hooks = new CopyOnWriteArrayList<>();
+
+    public Hook register(String name) {
+        Hook hook = new Hook(name);
+        hooks.add(hook);
+        return hook;
+    }
+
+    public List<Hook> hooks() {
+        return hooks;
+    }
+
+    public long totalInvocations() {
+        long sum = 0;
+        for (Hook hook : hooks) sum += hook.invocations.get();
+        return sum;
+    }
+
+    /** Appends one line per hook that has run at least once. */
+    public void appendSummary(StringBuilder out) {
+        for (Hook hook : hooks) {
+            long calls = hook.invocations.get();
+            if (calls == 0) continue;
+            out.append("📊 ").append(hook.name).append(": ")
+                .append(calls).append(" calls, ")
+                .append(hook.matches.get()).append(" matches, ")
+                .append(hook.capturedBytes.get()).append(" bytes captured, ")
+                .append(hook.droppedEvents.get()).append(" dropped, ")
+                .append("p50 ").append(micros(hook.latency.percentile(50)))
+                .append(" p99 ").append(micros(hook.latency.percentile(99)))
+                .append(" max ").append(micros(hook.latency.max()))
+                .append('\n');
+        }
+    }
+
+    public static String micros(long nanos) {
+        return String.format(Locale.US, "%.1fµs", nanos / 1000.0);
+    }
+}
@@ -0,0 +1,456 @@
+package com.example.camerainterceptor.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming extractor for a fixed set of JSON field paths.
+ *
+ * Paths are dot-separated object keys from the root object ("token",
+ * "data.expiredTime") and are compiled once into a key trie. extract()
+ * then tokenizes the UTF-8 bytes straight out of a CaptureBuffer or byte
+ * array: keys are compared as bytes against the trie, values of unwanted
+ * keys are skipped without being decoded, and only the configured fields
+ * are turned into Strings (capped at MAX_VALUE_BYTES). Besides those
+ * Strings nothing is allocated per call, and by default scanning stops as
+ * soon as every path has been found.
+ *
+ * String values are reported decoded; numbers, literals, objects and
+ * arrays as their raw JSON text. The byte span of each raw value is kept
+ * as well, so callers can splice in replacements. Paths below a path that
+ * is itself extracted are not reported separately. Number and literal
+ * tokens are only checked for their character set.
+ *
+ * Instances keep per-call state and are not thread-safe.
+ */
+public final class JsonFieldExtractor {
+    public static final int MAX_VALUE_BYTES = 1024;
+    private static final int MAX_KEY_BYTES = 256;
+    private static final int MAX_DEPTH = 64;
+    private static final int NONE = -2;
+    private static final int EOF = -1;
+
+    // Trie node; field >= 0 marks the end of a configured path
+    private static final class Node {
+        final byte[] key;
+        final List<Node> children = new ArrayList<>();
+        int field = -1;
+
+        Node(byte[] key) {
+            this.key = key;
+        }
+
+        Node child(byte[] name, int length) {
+            for (int i = 0, n = children.size(); i < n; i++) {
+                Node child = children.get(i);
+                byte[] key = child.key;
+                if (key.length != length) continue;
+                int j = 0;
+                while (j < length && key[j] == name[j]) j++;
+                if (j == length) return child;
+            }
+            return null;
+        }
+    }
+
+    private final String[] paths;
+    private final Node root = new Node(new byte[0]);
+    private final String[] values;
+    private final int[] valueStart;
+    private final int[] valueEnd;
+    private int found;
+    private boolean rootIsObject;
+
+    // Input: either a CaptureBuffer's chunks or a single array
+    private CaptureBuffer buffer;
+    private int chunkIndex;
+    private byte[] current;
+    private int pos;
+    private int limit;
+    private int base;
+    private int pending = NONE;
+    private boolean stopWhenFound;
+    private boolean done;
+
+    // Reused scratch space for keys and the value being captured
+    private final byte[] keyBytes = new byte[MAX_KEY_BYTES];
+    private final byte[] valueBytes = new byte[MAX_VALUE_BYTES];
+    private int valueLength;
+    private boolean valueTruncated;
+    private boolean capturing;
+    private boolean lastCaptured;
+
+    private JsonFieldExtractor(String[] paths) {
+        this.paths = paths.clone();
+        this.values = new String[paths.length];
+        this.valueStart = new int[paths.length];
+        this.valueEnd = new int[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            Node node = root;
+            for (String part : paths[i].split("\\.")) {
+                byte[] key = part.getBytes(StandardCharsets.UTF_8);
+                Node next = node.child(key, key.length);
+                if (next == null) {
+                    next = new Node(key);
+                    node.children.add(next);
+                }
+                node = next;
+            }
+            node.field = i;
+        }
+    }
+
+    public static JsonFieldExtractor compile(String... paths) {
+        return new JsonFieldExtractor(paths);
+    }
+
+    /**
+     * Scans a captured body. Returns false if it is not a JSON object or
+     * array, or if it is malformed in the part that was scanned. With
+     * stopWhenFound, scanning ends once every path has a value and the rest
+     * of the body is not validated.
+     */
+    public boolean extract(CaptureBuffer body, boolean stopWhenFound) {
+        buffer = body;
+        chunkIndex = 0;
+        current = null;
+        pos = 0;
+        limit = 0;
+        base = 0;
+        return run(stopWhenFound);
+    }
+
+    public boolean extract(byte[] body, int offset, int length, boolean stopWhenFound) {
+        buffer = null;
+        current = body;
+        pos = offset;
+        limit = offset + length;
+        base = -offset;
+        return run(stopWhenFound);
+    }
+
+    public int fieldCount() {
+        return paths.length;
+    }
+
+    public String path(int field) {
+        return paths[field];
+    }
+
+    /** Value of the field from the last extract(), or null if it was absent. */
+    public String value(int field) {
+        return values[field];
+    }
+
+    /** Byte offset of the field's raw value in the last input, or -1. */
+    public int valueStart(int field) {
+        return valueStart[field];
+    }
+
+    /** Byte offset just past the field's raw value in the last input, or -1. */
+    public int valueEnd(int field) {
+        return valueEnd[field];
+    }
+
+    /** Number of fields found by the last extract(). */
+    public int foundCount() {
+        return found;
+    }
+
+    public boolean isObject() {
+        return rootIsObject;
+    }
+
+    private boolean run(boolean stopWhenFound) {
+        this.stopWhenFound = stopWhenFound;
+        pending = NONE;
+        done = false;
+        found = 0;
+        capturing = false;
+        rootIsObject = false;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = null;
+            valueStart[i] = -1;
+            valueEnd[i] = -1;
+        }
+        try {
+            int b = skipWhitespace();
+            boolean ok;
+            if (b == '{') {
+                rootIsObject = true;
+                ok = parseObject(root, 1);
+            } else if (b == '[') {
+                ok = parseArray(1);
+            } else {
+                return false;
+            }
+            if (!ok) return false;
+            return done || skipWhitespace() == EOF;
+        } finally {
+            buffer = null;
+            current = null;
+        }
+    }
+
+    private boolean parseObject(Node node, int depth) {
+        if (depth > MAX_DEPTH) return false;
+        int b = skipWhitespace();
+        if (b == '}') return true;
+        while (true) {
+            if (b != '"') return false;
+            Node child;
+            if (node == null || node.children.isEmpty()) {
+                if (!skipString()) return false;
+                child = null;
+            } else {
+                int length = readKey();
+                if (length < 0) return false;
+                child = length > MAX_KEY_BYTES ? null : node.child(keyBytes, length);
+            }
+            if (skipWhitespace() != ':') return false;
+            if (!parseValue(skipWhitespace(), child, depth)) return false;
+            if (done) return true;
+            b = skipWhitespace();
+            if (b == ',') {
+                b = skipWhitespace();
+            } else {
+                return b == '}';
+            }
+        }
+    }
+
+    private boolean parseArray(int depth) {
+        if (depth > MAX_DEPTH) return false;
+        int b = skipWhitespace();
+        if (b == ']') return true;
+        while (true) {
+            if (!parseValue(b, null, depth)) return false;
+            if (done) return true;
+            b = skipWhitespace();
+            if (b == ',') {
+                b = skipWhitespace();
+            } else {
+                return b == ']';
+            }
+        }
+    }
+
+    // b is the first byte of the value, already consumed
+    private boolean parseValue(int b, Node node, int depth) {
+        boolean extract = node != null && node.field >= 0 && values[node.field] == null;
+        int start = position() - 1;
+        if (extract) {
+            valueLength = 0;
+            valueTruncated = false;
+            if (b != '"') {
+                // Raw text: the first byte is already read, the rest is captured as it is read
+                append(b);
+                capturing = true;
+            }
+        }
+
+        boolean ok;
+        switch (b) {
+            case '{':
+                ok = parseObject(extract ? null : node, depth + 1);
+                break;
+            case '[':
+                ok = parseArray(depth + 1);
+                break;
+            case '"':
+                ok = extract ? decodeString() : skipString();
+                break;
+            default:
+                ok = isLiteralByte(b) && skipLiteral();
+                break;
+        }
+
+        if (extract) {
+            capturing = false;
+            if (!ok) return false;
+            int field = node.field;
+            String value = new String(valueBytes, 0, valueLength, StandardCharsets.UTF_8);
+            values[field] = valueTruncated ? value + "…" : value;
+            valueStart[field] = start;
+            valueEnd[field] = position();
+            if (++found == values.length && stopWhenFound) done = true;
+        }
+        return ok;
+    }
+
+    private boolean skipLiteral() {
+        while (true) {
+            int b = read();
+            if (b == EOF) return true;
+            if (!isLiteralByte(b)) {
+                unread(b);
+                return true;
+            }
+        }
+    }
+
+    private static boolean isLiteralByte(int b) {
+        return (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z')
+            || b == '-' || b == '+' || b == '.';
+    }
+
+    private boolean skipString() {
+        while (true) {
+            int b = read();
+            if (b == '"') return true;
+            if (b == EOF) return false;
+            if (b == '\\' && read() == EOF) return false;
+        }
+    }
+
+    // Reads a key into keyBytes; returns its decoded length (which may exceed
+    // MAX_KEY_BYTES, in which case it cannot match) or -1 if malformed
+    private int readKey() {
+        int length = 0;
+        while (true) {
+            int b = read();
+            if (b == '"') return length;
+            if (b == EOF) return -1;
+            if (b == '\\') {
+                int c = readEscape();
+                if (c < 0) return -1;
+                length = putUtf8(keyBytes, length, c);
+            } else {
+                if (length < MAX_KEY_BYTES) keyBytes[length] = (byte) b;
+                length++;
+            }
+        }
+    }
+
+    // Reads the rest of a string into valueBytes, unescaped
+    private boolean decodeString() {
+        while (true) {
+            int b = read();
+            if (b == '"') return true;
+            if (b == EOF) return false;
+            if (b == '\\') {
+                int c = readEscape();
+                if (c < 0) return false;
+                if (valueLength + 4 <= MAX_VALUE_BYTES) {
+                    valueLength = putUtf8(valueBytes, valueLength, c);
+                } else {
+                    valueTruncated = true;
+                }
+            } else {
+                append(b);
+            }
+        }
+    }
+
+    // Decodes the escape after a backslash to a code point, or -1 if malformed
+    private int readEscape() {
+        int b = read();
+        switch (b) {
+            case '"': case '\\': case '/': return b;
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u': {
+                int c = readHex4();
+                if (c >= 0xD800 && c <= 0xDBFF) {
+                    // High surrogate; must be followed by an escaped low surrogate
+                    if (read() != '\\') return -1;
+                    if (read() != 'u') return -1;
+                    int low = readHex4();
+                    if (low < 0xDC00 || low > 0xDFFF) return -1;
+                    return 0x10000 + ((c - 0xD800) << 10) + (low - 0xDC00);
+                }
+                return c;
+            }
+            default:
+                return -1;
+        }
+    }
+
+    private int readHex4() {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = read();
+            int digit = Character.digit(b < 0 ? 0 : b, 16);
+            if (digit < 0) return -1;
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    // Appends c as UTF-8; bytes past the end of out are counted but not stored
+    private static int putUtf8(byte[] out, int length, int c) {
+        if (c < 0x80) {
+            return put(out, length, c);
+        } else if (c < 0x800) {
+            length = put(out, length, 0xC0 | (c >> 6));
+        } else if (c < 0x10000) {
+            length = put(out, length, 0xE0 | (c >> 12));
+            length = put(out, length, 0x80 | ((c >> 6) & 0x3F));
+        } else {
+            length = put(out, length, 0xF0 | (c >> 18));
+            length = put(out, length, 0x80 | ((c >> 12) & 0x3F));
+            length = put(out, length, 0x80 | ((c >> 6) & 0x3F));
+        }
+        return put(out, length, 0x80 | (c & 0x3F));
+    }
+
+    private static int put(byte[] out, int length, int b) {
+        if (length < out.length) out[length] = (byte) b;
+        return length + 1;
+    }
+
+    private void append(int b) {
+        if (valueLength < MAX_VALUE_BYTES) {
+            valueBytes[valueLength++] = (byte) b;
+        } else {
+            valueTruncated = true;
+        }
+    }
+
+    private int skipWhitespace() {
+        while (true) {
+            int b = read();
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return b;
+        }
+    }
+
+    private int read() {
+        int b;
+        if (pending != NONE) {
+            b = pending;
+            pending = NONE;
+            if (b == EOF) return EOF;
+        } else {
+            if (pos == limit && !nextChunk()) return EOF;
+            b = current[pos++] & 0xFF;
+        }
+        lastCaptured = capturing && valueLength < MAX_VALUE_BYTES;
+        if (capturing) append(b);
+        return b;
+    }
+
+    // Pushes back the byte that ended a literal
+    private void unread(int b) {
+        pending = b;
+        if (lastCaptured) valueLength--;
+    }
+
+    private boolean nextChunk() {
+        if (buffer == null || chunkIndex >= buffer.chunkCount()) return false;
+        if (current != null) base += limit;
+        current = buffer.chunk(chunkIndex);
+        limit = buffer.chunkLength(chunkIndex);
+        chunkIndex++;
+        pos = 0;
+        return limit > 0 || nextChunk();
+    }
+
+    // Offset of the next unread byte
+    private int position() {
+        return base + pos - (pending >= 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.camerainterceptor.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A captured body too large to hold in memory, written to a file part by
+ * part as the app reads it.
+ *
+ * The app thread captures into a CaptureBuffer as usual; once the buffer
+ * holds a part's worth of bytes, CapturingInputStream hands it to the sink
+ * (the hooks post it to the writer thread) and continues in a fresh buffer
+ * from the same pool. The writer thread appends each part to a temporary
+ * file and hashes it on the way, so the finished body can be moved into
+ * the BlobStore without being read again. A stream's heap is therefore a
+ * few parts, however long it runs.
+ *
+ * The app is never made to wait: if the sink refuses a part or too many
+ * are still queued, the part is dropped and the file stops there. The rest
+ * of the stream is only counted, and the body is stored truncated. The
+ * whole body is still capped at the first buffer's maxBytes, so the file
+ * never grows past the configured capture size.
+ *
+ * The last part goes through the stream's Listener like any capture; the
+ * writer finishes the file with it. If the last part cannot be posted,
+ * abandon() tells the writer. A stream the app drops without reading to
+ * the end or closing it never sends a last part at all, so the writer
+ * also discards bodies that have not received a part for IDLE_NANOS. An
+ * app that is still reading hands over a part at least every second, so
+ * only a stream stalled that long is cut short; its later parts are only
+ * counted and the body is stored without content.
+ */
+public final class StreamingBody {
+    public interface Sink {
+        /** Hands a part to the writer thread; returns false if it was not taken. */
+        boolean accept(CaptureBuffer part);
+    }
+
+    // Parts handed over but not yet written; beyond this the writer is not keeping up
+    private static final int MAX_PARTS_IN_FLIGHT = 8;
+    // Between progress events the writer reports for one body
+    private static final long PROGRESS_INTERVAL_NANOS = 1_000_000_000L;
+    // Without a part for this long, the stream is taken to be dropped by the app
+    private static final long IDLE_NANOS = 300_000_000_000L;
+
+    // App thread
+    private final Sink sink;
+    private final int maxBytes;
+    private final long startNanos;
+    private long kept;
+    private long handedOverNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean gap;
+    private volatile boolean abandoned;
+
+    // Writer thread
+    private File file;
+    private FileOutputStream out;
+    private final XxHash64 hasher = new XxHash64();
+    private long stored;
+    private long hash;
+    private boolean failed;
+    private boolean reported;
+    private long reportedNanos;
+    private long writtenNanos;
+
+    StreamingBody(Sink sink, int maxBytes, long startNanos) {
+        this.sink = sink;
+        this.maxBytes = maxBytes;
+        this.startNanos = startNanos;
+        this.handedOverNanos = startNanos;
+    }
+
+    /** The streamed body that body is a part of, or null if it is not such a part. */
+    public static StreamingBody of(Object body) {
+        return body instanceof CaptureBuffer ? ((CaptureBuffer) body).streamed() : null;
+    }
+
+    // Whether a part that is not yet full should still be handed over, so a slow stream reports progress
+    boolean handOverDue(long now) {
+        return now - handedOverNanos >= PROGRESS_INTERVAL_NANOS;
+    }
+
+    /**
+     * Hands part to the sink, or drops it, and returns the buffer that
+     * continues the body. Called on the app thread.
+     */
+    CaptureBuffer handOver(CaptureBuffer part, long now) {
+        handedOverNanos = now;
+        long end = part.totalBytes();
+        int size = part.size();
+        CaptureBufferPool pool = part.pool();
+        int contentCoding = part.contentCoding();
+        String contentType = part.contentType();
+        // After a gap, parts are empty and only carry progress
+        boolean taken = false;
+        if (!gap || size == 0) {
+            taken = inFlight.incrementAndGet() <= MAX_PARTS_IN_FLIGHT && sink.accept(part);
+            if (!taken) inFlight.decrementAndGet();
+        }
+        if (taken) {
+            kept += size;
+        } else {
+            // Bytes missing from the middle of the file would make it worthless; keep counting only
+            if (size > 0) gap = true;
+            part.release();
+        }
+        CaptureBuffer next = pool.newBuffer(gap ? 0 : (int) Math.max(0, maxBytes - kept));
+        next.setContent(contentCoding, contentType);
+        next.startPart(this, end);
+        return next;
+    }
+
+    /** The last part will never reach the writer; it discards the file once it sees this. */
+    public void abandon() {
+        abandoned = true;
+    }
+
+    public boolean isAbandoned() {
+        return abandoned;
+    }
+
+    /** Whether the writer has the file open, waiting for more parts. */
+    public boolean isOpen() {
+        return out != null;
+    }
+
+    /** Whether a part was dropped, so the stored body ends early. */
+    public boolean hasGap() {
+        return gap;
+    }
+
+    /**
+     * Appends a part posted by the sink at now to the file; on the writer
+     * thread, once per part.
+     */
+    public void write(CaptureBuffer part, File directory, long now) {
+        inFlight.decrementAndGet();
+        writtenNanos = now;
+        append(part, directory);
+    }
+
+    /** Whether the file is open but no part was written for IDLE_NANOS before now. */
+    public boolean isIdle(long now) {
+        return out != null && now - writtenNanos >= IDLE_NANOS;
+    }
+
+    /**
+     * Appends the last part, which reached the writer as the body itself,
+     * and closes the file.
+     */
+    public void finish(CaptureBuffer last, File directory) {
+        append(last, directory);
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            discard();
+            return;
+        }
+        out = null;
+        hash = hasher.digest();
+    }
+
+    /** Whether a progress event is due for a part written at now; true for the first part. */
+    public boolean progressDue(long now) {
+        if (reported && now - reportedNanos < PROGRESS_INTERVAL_NANOS) return false;
+        reported = true;
+        reportedNanos = now;
+        return true;
+    }
+
+    /** Time since the body was first captured. */
+    public long elapsedNanos(long now) {
+        return now - startNanos;
+    }
+
+    /** Bytes in the file, 0 if it could not be written. */
+    public int storedLength() {
+        return failed ? 0 : (int) stored;
+    }
+
+    /** XXH64 of the stored bytes, once finished. */
+    public long hash() {
+        return hash;
+    }
+
+    /** The finished file, or null if nothing could be stored. */
+    public File file() {
+        return failed || out != null ? null : file;
+    }
+
+    public boolean failed() {
+        return failed;
+    }
+
+    /** Deletes the file unless it was moved elsewhere; later parts are not stored. */
+    public void discard() {
+        failed = true;
+        if (out != null) closeQuietly();
+        if (file != null) file.delete();
+        file = null;
+    }
+
+    private void append(CaptureBuffer part, File directory) {
+        if (failed || part.size() == 0) return;
+        try {
+            if (file == null) {
+                if (directory == null) throw new IOException("No capture directory");
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    throw new IOException("Cannot create " + directory);
+                }
+                file = File.createTempFile("body-", ".part", directory);
+                out = new FileOutputStream(file);
+            }
+            for (int i = 0; i < part.chunkCount(); i++) {
+                out.write(part.chunk(i), 0, part.chunkLength(i));
+            }
+            hasher.update(part);
+            stored += part.size();
+        } catch (IOException e) {
+            discard();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            // The file is deleted anyway
+        }
+        out = null;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.camerainterceptor.core;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Rewrite of /camera/useTimeCode responses, done on the captured bytes.
+ *
+ * The top-level timing fields are located with a JsonFieldExtractor and
+ * only their values are replaced; the rest of the body is copied through
+ * byte for byte, so field order and formatting stay as the server sent
+ * them. Runs on the app's thread, so each thread keeps its own extractor.
+ */
+public final class TimeCodeJson {
+    private static final int CODE = 0;
+    private static final int NOW = 1;
+    private static final int EXPIRED_TIME = 2;
+    private static final int TOKEN = 3;
+    private static final int REMAIN = 4;
+
+    private static final ThreadLocal<JsonFieldExtractor> EXTRACTOR = new ThreadLocal<JsonFieldExtractor>() {
+        @Override
+        protected JsonFieldExtractor initialValue() {
+            return JsonFieldExtractor.compile("code", "now", "expiredTime", "token", "remain");
+        }
+    };
+
+    private TimeCodeJson() {
+    }
+
+    /**
+     * Refreshes the timing fields of a useTimeCode response so the token
+     * looks current and long-lived. Returns the rewritten body, or null if
+     * it is not a JSON object, has none of the known fields, or already
+     * carries the target values.
+     */
+    public static byte[] rewrite(CaptureBuffer body, long expiredTime) {
+        JsonFieldExtractor json = EXTRACTOR.get();
+        // The whole body has to be valid before we hand the app a modified copy
+        if (!json.extract(body, false) || !json.isObject()) return null;
+
+        // Check if this looks like a camera/useTimeCode response
+        if (json.value(CODE) == null && json.value(NOW) == null
+                && json.value(EXPIRED_TIME) == null && json.value(TOKEN) == null) {
+            return null;
+        }
+
+        String[] replacements = new String[json.fieldCount()];
+        replacements[NOW] = String.valueOf(System.currentTimeMillis() / 1000);
+        replacements[EXPIRED_TIME] = String.valueOf(expiredTime);
+        replacements[REMAIN] = "999999"; // Keep remain time high if it exists
+        replacements[CODE] = "200"; // Ensure success code
+
+        // Replaced fields in body order, skipping absent and already-current ones
+        int[] order = new int[replacements.length];
+        int count = 0;
+        int size = body.size();
+        for (int field = 0; field < replacements.length; field++) {
+            if (replacements[field] == null || json.valueStart(field) < 0) continue;
+            int rawLength = json.valueEnd(field) - json.valueStart(field);
+            if (rawLength == replacements[field].length() && replacements[field].equals(json.value(field))) continue;
+            int i = count++;
+            while (i > 0 && json.valueStart(order[i - 1]) > json.valueStart(field)) {
+                order[i] = order[i - 1];
+                i--;
+            }
+            order[i] = field;
+            size += replacements[field].length() - rawLength;
+        }
+        if (count == 0) return null;
+
+        byte[] out = new byte[size];
+        int from = 0;
+        int to = 0;
+        for (int i = 0; i < count; i++) {
+            int field = order[i];
+            to += body.copyTo(from, out, to, json.valueStart(field) - from);
+            byte[] replacement = replacements[field].getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(replacement, 0, out, to, replacement.length);
+            to += replacement.length;
+            from = json.valueEnd(field);
+        }
+        body.copyTo(from, out, to, body.size() - from);
+        return out;
+    }
+}
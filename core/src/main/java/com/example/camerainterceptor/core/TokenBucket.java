@@ -0,0 +1,35 @@
+package com.example.camerainterceptor.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, kept as a single theoretical arrival time.
+ *
+ * Each admitted call pushes the arrival time one interval further; a call
+ * is refused while that time is more than a burst ahead of now. This is
+ * the usual generic cell rate formulation, so there is no refill step and
+ * no state beyond one AtomicLong. A slowdown of n makes the interval 2^n
+ * times longer, for tightening all buckets without rebuilding them.
+ */
+public final class TokenBucket {
+    private final long intervalNanos;
+    private final int burst;
+    private final AtomicLong arrival;
+
+    public TokenBucket(double perSecond, int burst) {
+        this.intervalNanos = Math.max(1, (long) (1e9 / perSecond));
+        this.burst = Math.max(1, burst);
+        this.arrival = new AtomicLong(System.nanoTime());
+    }
+
+    public boolean tryAcquire(long nowNanos, int slowdown) {
+        long interval = intervalNanos << slowdown;
+        long tolerance = interval * (burst - 1);
+        while (true) {
+            long current = arrival.get();
+            long start = current - nowNanos < 0 ? nowNanos : current;
+            if (start - nowNanos > tolerance) return false;
+            if (arrival.compareAndSet(current, start + interval)) return true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.camerainterceptor.core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses repeated identical URLs into per-window counts.
+ *
+ * The first occurrence of a URL in a window is reported right away; later
+ * ones only bump a counter, and the writer thread drains the counts when
+ * it closes the window. At most maxUrls distinct URLs are tracked per
+ * window; further new URLs are only counted as overflow. Increments that
+ * race with the window switch may land in the closed window and are lost.
+ */
+public final class UrlAggregator {
+    public interface Sink {
+        void repeated(String url, int count);
+    }
+
+    private final int maxUrls;
+    private volatile ConcurrentHashMap<String, AtomicInteger> window = new ConcurrentHashMap<>();
+    private final AtomicLong aggregated = new AtomicLong();
+    private final AtomicLong overflow = new AtomicLong();
+
+    public UrlAggregator(int maxUrls) {
+        this.maxUrls = maxUrls;
+    }
+
+    /** Returns true if this is the URL's first occurrence in the window and should be reported. */
+    public boolean record(String url) {
+        ConcurrentHashMap<String, AtomicInteger> counts = window;
+        AtomicInteger count = counts.get(url);
+        if (count == null) {
+            if (counts.size() >= maxUrls) {
+                overflow.incrementAndGet();
+                return false;
+            }
+            count = counts.putIfAbsent(url, new AtomicInteger());
+            if (count == null) return true;
+        }
+        count.incrementAndGet();
+        aggregated.incrementAndGet();
+        return false;
+    }
+
+    /** Closes the window and passes every URL that repeated in it to the sink. */
+    public void drain(Sink sink) {
+        ConcurrentHashMap<String, AtomicInteger> closed = window;
+        if (closed.isEmpty()) return;
+        window = new ConcurrentHashMap<>();
+        for (Map.Entry<String, AtomicInteger> entry : closed.entrySet()) {
+            int count = entry.getValue().get();
+            if (count > 0) sink.repeated(entry.getKey(), count);
+        }
+    }
+
+    /** Occurrences counted instead of reported, since creation. */
+    public long aggregated() {
+        return aggregated.get();
+    }
+
+    /** New URLs not tracked because the window was full, since creation. */
+    public long overflow() {
+        return overflow.get();
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.camerainterceptor.core;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Multi-pattern substring matcher for target endpoints.
+ *
+ * Patterns are compiled once into an Aho-Corasick automaton with a full
+ * transition table, so a lookup is a single pass over the input with one
+ * array read per character, no matter how many patterns are configured.
+ * Lookups take any CharSequence and never allocate.
+ */
+public final class UrlMatcher {
+    public static final int NO_MATCH = -1;
+
+    private final String[] patterns;
+    // Maps ASCII chars to an alphabet class; class 0 means "not in any pattern"
+    private final int[] asciiClass = new int[128];
+    // Non-ASCII chars used by patterns, sorted, mapped to classes after the ASCII ones
+    private final char[] extraChars;
+    private final int extraClassBase;
+    private final int alphabetSize;
+    // transitions[state * alphabetSize + charClass] -> next state
+    private final int[] transitions;
+    // Index of a pattern ending at this state (directly or via failure links)
+    private final int[] output;
+
+    private UrlMatcher(String[] patterns) {
+        this.patterns = patterns;
+
+        // Build the alphabet from the characters that actually occur in patterns
+        int nextClass = 1;
+        StringBuilder extra = new StringBuilder();
+        for (String pattern : patterns) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c < 128) {
+                    if (asciiClass[c] == 0) asciiClass[c] = nextClass++;
+                } else if (extra.indexOf(String.valueOf(c)) < 0) {
+                    extra.append(c);
+                }
+            }
+        }
+        extraChars = extra.toString().toCharArray();
+        Arrays.sort(extraChars);
+        extraClassBase = nextClass;
+        alphabetSize = nextClass + extraChars.length;
+
+        // Trie construction
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        trie.add(newRow());
+        terminal.add(NO_MATCH);
+        for (int p = 0; p < patterns.length; p++) {
+            String pattern = patterns[p];
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int cls = classOf(pattern.charAt(i));
+                int next = trie.get(state)[cls];
+                if (next <= 0) {
+                    next = trie.size();
+                    trie.get(state)[cls] = next;
+                    trie.add(newRow());
+                    terminal.add(NO_MATCH);
+                }
+                state = next;
+            }
+            if (terminal.get(state) == NO_MATCH) {
+                terminal.set(state, p);
+            }
+        }
+
+        // Breadth-first pass to resolve failure links into a full DFA
+        int stateCount = trie.size();
+        transitions = new int[stateCount * alphabetSize];
+        output = new int[stateCount];
+        int[] failure = new int[stateCount];
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+
+        output[0] = terminal.get(0);
+        int[] rootRow = trie.get(0);
+        for (int cls = 0; cls < alphabetSize; cls++) {
+            int child = rootRow[cls];
+            if (child > 0) {
+                transitions[cls] = child;
+                failure[child] = 0;
+                queue[tail++] = child;
+            } else {
+                transitions[cls] = 0;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            int fail = failure[state];
+            output[state] = terminal.get(state) != NO_MATCH ? terminal.get(state) : output[fail];
+            int[] row = trie.get(state);
+            int base = state * alphabetSize;
+            int failBase = fail * alphabetSize;
+            for (int cls = 0; cls < alphabetSize; cls++) {
+                int child = row[cls];
+                if (child > 0) {
+                    transitions[base + cls] = child;
+                    failure[child] = transitions[failBase + cls];
+                    queue[tail++] = child;
+                } else {
+                    transitions[base + cls] = transitions[failBase + cls];
+                }
+            }
+        }
+    }
+
+    public static UrlMatcher compile(String... patterns) {
+        List<String> cleaned = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (pattern != null && !pattern.isEmpty() && !cleaned.contains(pattern)) {
+                cleaned.add(pattern);
+            }
+        }
+        return new UrlMatcher(cleaned.toArray(new String[0]));
+    }
+
+    /**
+     * Returns the index of a pattern contained in the input, or NO_MATCH.
+     */
+    public int indexOf(CharSequence input) {
+        if (input == null || patterns.length == 0) return NO_MATCH;
+        int state = 0;
+        for (int i = 0, n = input.length(); i < n; i++) {
+            state = transitions[state * alphabetSize + classOf(input.charAt(i))];
+            int match = output[state];
+            if (match != NO_MATCH) return match;
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * Returns indexOf(url.toString()) without building that string: the
+     * parts toString() joins are fed through the automaton in turn.
+     */
+    public int indexOf(URL url) {
+        if (url == null || patterns.length == 0) return NO_MATCH;
+        int state = feed(0, url.getProtocol());
+        if (state >= 0) state = feed(state, ":");
+        String authority = url.getAuthority();
+        if (state >= 0 && authority != null && !authority.isEmpty()) {
+            state = feed(state, "//");
+            if (state >= 0) state = feed(state, authority);
+        }
+        if (state >= 0) state = feed(state, url.getFile());
+        if (state >= 0 && url.getRef() != null) {
+            state = feed(state, "#");
+            if (state >= 0) state = feed(state, url.getRef());
+        }
+        return state < 0 ? ~state : NO_MATCH;
+    }
+
+    // Runs input from state; returns the new state, or ~pattern once one matches
+    private int feed(int state, String input) {
+        for (int i = 0, n = input.length(); i < n; i++) {
+            state = transitions[state * alphabetSize + classOf(input.charAt(i))];
+            int match = output[state];
+            if (match != NO_MATCH) return ~match;
+        }
+        return state;
+    }
+
+    public boolean matches(CharSequence input) {
+        return indexOf(input) != NO_MATCH;
+    }
+
+    public String pattern(int index) {
+        return patterns[index];
+    }
+
+    public int size() {
+        return patterns.length;
+    }
+
+    private int classOf(char c) {
+        if (c < 128) return asciiClass[c];
+        int idx = Arrays.binarySearch(extraChars, c);
+        return idx >= 0 ? extraClassBase + idx : 0;
+    }
+
+    private int[] newRow() {
+        return new int[alphabetSize];
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.camerainterceptor.core;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent map with weakly referenced keys compared by identity.
+ *
+ * Keys are the app's own objects (connections, requests), whose equals()
+ * we cannot trust and which we must not keep alive. Entries whose key was
+ * collected are purged on the next update.
+ */
+public final class WeakIdentityMap<K, V> {
+    private final ConcurrentHashMap<Object, V> map = new ConcurrentHashMap<>();
+    private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+
+    public V get(K key) {
+        return map.get(new Lookup(key));
+    }
+
+    /** Stores value unless the key already has one; returns the value now mapped. */
+    public V putIfAbsent(K key, V value) {
+        purge();
+        V existing = map.putIfAbsent(new WeakKey<>(key, queue), value);
+        return existing != null ? existing : value;
+    }
+
+    /** Maps the key to newValue only if it is still mapped to oldValue (by identity); returns whether it was. */
+    public boolean replace(K key, V oldValue, V newValue) {
+        purge();
+        return map.replace(new Lookup(key), oldValue, newValue);
+    }
+
+    public V remove(K key) {
+        purge();
+        return map.remove(new Lookup(key));
+    }
+
+    public int size() {
+        purge();
+        return map.size();
+    }
+
+    private void purge() {
+        Object ref;
+        while ((ref = queue.poll()) != null) {
+            map.remove(ref);
+        }
+    }
+
+    private static final class WeakKey<K> extends WeakReference<K> {
+        private final int hash;
+
+        WeakKey(K key, ReferenceQueue<K> queue) {
+            super(key, queue);
+            this.hash = System.identityHashCode(key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) return true;
+            Object key = get();
+            if (key == null) return false;
+            if (other instanceof WeakKey) return key == ((WeakKey<?>) other).get();
+            return other instanceof Lookup && key == ((Lookup) other).key;
+        }
+    }
+
+    // Short-lived strong key for lookups, equal to the WeakKey of the same object
+    private static final class Lookup {
+        final Object key;
+
+        Lookup(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof WeakKey) return key == ((WeakKey<?>) other).get();
+            return other instanceof Lookup && key == ((Lookup) other).key;
+        }
+    }
+}
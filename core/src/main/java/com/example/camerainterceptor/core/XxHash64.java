@@ -0,0 +1,143 @@
+package com.example.camerainterceptor.core;
+
+/**
+ * Streaming XXH64 (seed 0), the content address of stored bodies.
+ *
+ * Fast and non-cryptographic: good for recognizing repeated payloads, not
+ * for anything an adversary could steer. Bytes can be fed in any split, so
+ * a CaptureBuffer is hashed chunk by chunk without copying it. Not
+ * thread-safe; reset() before reuse.
+ */
+public final class XxHash64 {
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long total;
+    // Bytes of an unfinished 32-byte stripe
+    private final byte[] stripe = new byte[32];
+    private int buffered;
+
+    public XxHash64() {
+        reset();
+    }
+
+    public XxHash64 reset() {
+        v1 = P1 + P2;
+        v2 = P2;
+        v3 = 0;
+        v4 = -P1;
+        total = 0;
+        buffered = 0;
+        return this;
+    }
+
+    public XxHash64 update(byte[] b, int off, int len) {
+        total += len;
+        if (buffered > 0) {
+            int n = Math.min(len, 32 - buffered);
+            System.arraycopy(b, off, stripe, buffered, n);
+            buffered += n;
+            off += n;
+            len -= n;
+            if (buffered < 32) return this;
+            consume(stripe, 0);
+            buffered = 0;
+        }
+        while (len >= 32) {
+            consume(b, off);
+            off += 32;
+            len -= 32;
+        }
+        if (len > 0) {
+            System.arraycopy(b, off, stripe, 0, len);
+            buffered = len;
+        }
+        return this;
+    }
+
+    /** Feeds the bytes kept in a capture buffer. */
+    public XxHash64 update(CaptureBuffer buffer) {
+        for (int i = 0; i < buffer.chunkCount(); i++) {
+            update(buffer.chunk(i), 0, buffer.chunkLength(i));
+        }
+        return this;
+    }
+
+    public long digest() {
+        long h;
+        if (total >= 32) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        } else {
+            h = P5;
+        }
+        h += total;
+        int i = 0;
+        for (; i + 8 <= buffered; i += 8) {
+            h ^= round(0, getLong(stripe, i));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        if (i + 4 <= buffered) {
+            h ^= (getInt(stripe, i) & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            i += 4;
+        }
+        for (; i < buffered; i++) {
+            h ^= (stripe[i] & 0xFFL) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    public static long hash(byte[] b, int off, int len) {
+        return new XxHash64().update(b, off, len).digest();
+    }
+
+    public static String hex(long hash) {
+        String digits = Long.toHexString(hash);
+        return "0000000000000000".substring(digits.length()) + digits;
+    }
+
+    private void consume(byte[] b, int off) {
+        v1 = round(v1, getLong(b, off));
+        v2 = round(v2, getLong(b, off + 8));
+        v3 = round(v3, getLong(b, off + 16));
+        v4 = round(v4, getLong(b, off + 24));
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long merge(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * P1 + P4;
+    }
+
+    private static long getLong(byte[] b, int i) {
+        return (b[i] & 0xFFL) | (b[i + 1] & 0xFFL) << 8 | (b[i + 2] & 0xFFL) << 16 | (b[i + 3] & 0xFFL) << 24
+            | (b[i + 4] & 0xFFL) << 32 | (b[i + 5] & 0xFFL) << 40 | (b[i + 6] & 0xFFL) << 48
+            | (b[i + 7] & 0xFFL) << 56;
+    }
+
+    private static int getInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.camerainterceptor.loadtest;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte-level differences and failed requests, from any thread.
+ *
+ * All are counted; the first MAX_REPORTED are kept with their details.
+ */
+final class Diffs {
+    private static final int MAX_REPORTED = 20;
+
+    private final AtomicLong differences = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final List<String> reported = new ArrayList<>();
+
+    /** A body that differs from the payload at offset, as seen by where. */
+    void mismatch(String where, long seed, long offset, byte expected, byte actual) {
+        differences.incrementAndGet();
+        report(String.format(Locale.US, "%s, body %d: offset %d is 0x%02x, expected 0x%02x",
+            where, seed, offset, actual & 0xFF, expected & 0xFF));
+    }
+
+    /** Any other disagreement, such as a length or a listener call count. */
+    void difference(String where, long seed, String detail) {
+        differences.incrementAndGet();
+        report(where + ", body " + seed + ": " + detail);
+    }
+
+    void error(long seed, Throwable t) {
+        errors.incrementAndGet();
+        report("request " + seed + " failed: " + t);
+    }
+
+    long differences() {
+        return differences.get();
+    }
+
+    long errors() {
+        return errors.get();
+    }
+
+    void print(PrintStream out) {
+        out.println("Byte differences: " + (differences.get() == 0 ? "none" : differences.get())
+            + ", failed requests: " + errors.get());
+        synchronized (reported) {
+            for (String line : reported) out.println("  " + line);
+        }
+        long unreported = differences.get() + errors.get() - reported.size();
+        if (unreported > 0) out.println("  ... " + unreported + " more");
+    }
+
+    private void report(String line) {
+        synchronized (reported) {
+            if (reported.size() < MAX_REPORTED) reported.add(line);
+        }
+    }
+}
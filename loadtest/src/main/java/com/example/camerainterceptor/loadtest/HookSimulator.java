@@ -0,0 +1,185 @@
+package com.example.camerainterceptor.loadtest;
+
+import com.example.camerainterceptor.core.CaptureBuffer;
+import com.example.camerainterceptor.core.CaptureBufferPool;
+import com.example.camerainterceptor.core.CaptureEvent;
+import com.example.camerainterceptor.core.CapturingInputStream;
+import com.example.camerainterceptor.core.CapturingOutputStream;
+import com.example.camerainterceptor.core.ContentCoding;
+import com.example.camerainterceptor.core.EventRing;
+import com.example.camerainterceptor.core.Exchange;
+import com.example.camerainterceptor.core.ExchangeTracker;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What the module's HttpURLConnection hooks do to a connection, minus
+ * Xposed.
+ *
+ * connect(), output() and input() stand for the connect, getOutputStream
+ * and getInputStream hooks with every URL matching and full capture: the
+ * connection gets an Exchange, its streams are wrapped in the capturing
+ * streams with pooled buffers, and the listeners hand the finished
+ * captures to an EventRing, as the hooks do. A verifier thread plays the
+ * writer thread: it checks each capture against the payload and releases
+ * it, so the checks cost the request threads nothing.
+ */
+final class HookSimulator {
+    // Per-request state; listeners run on the request's own thread
+    static final class Transfer {
+        final long seed;
+        long written;
+        long read;
+        int requestCaptures;
+        int responseCaptures;
+        Exchange exchange;
+
+        Transfer(long seed) {
+            this.seed = seed;
+        }
+    }
+
+    private final CaptureBufferPool pool = new CaptureBufferPool(8 * 1024, 256);
+    private final ExchangeTracker exchanges = new ExchangeTracker();
+    private final EventRing ring = new EventRing(4096);
+    private final int maxCaptureBytes;
+    private final Diffs diffs;
+    private final Thread verifier;
+    private volatile boolean stopping;
+
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong truncated = new AtomicLong();
+
+    HookSimulator(int maxCaptureBytes, Diffs diffs) {
+        this.maxCaptureBytes = maxCaptureBytes;
+        this.diffs = diffs;
+        this.verifier = new Thread(this::verify, "loadtest-verifier");
+        verifier.setDaemon(true);
+        verifier.start();
+    }
+
+    void connect(HttpURLConnection connection, Transfer transfer) {
+        transfer.exchange = exchanges.open(connection, connection.getURL().toString());
+        transfer.exchange.markConnect();
+    }
+
+    OutputStream output(HttpURLConnection connection, OutputStream original, Transfer transfer) {
+        Exchange exchange = exchanges.open(connection, connection.getURL().toString());
+        return new CapturingOutputStream(original, pool.newBuffer(maxCaptureBytes), exchange, capture -> {
+            transfer.requestCaptures++;
+            post(CaptureEvent.REQUEST_BODY, transfer.seed, transfer.written, capture);
+        });
+    }
+
+    InputStream input(HttpURLConnection connection, InputStream original, Transfer transfer) throws IOException {
+        Exchange exchange = exchanges.open(connection, connection.getURL().toString());
+        exchange.markResponseStart(connection.getResponseCode());
+        CaptureBuffer capture = pool.newBuffer(maxCaptureBytes);
+        capture.setContent(ContentCoding.of(connection.getContentEncoding()), connection.getContentType());
+        return new CapturingInputStream(original, capture, exchange, buffer -> {
+            transfer.responseCaptures++;
+            post(CaptureEvent.RESPONSE_BODY, transfer.seed, transfer.read, buffer);
+            return null;
+        });
+    }
+
+    /** After the app closed the response stream; checks each listener ran once and the exchange closed. */
+    void finish(HttpURLConnection connection, Transfer transfer, boolean hasRequestBody) {
+        Exchange exchange = exchanges.finish(connection);
+        if (exchange != transfer.exchange) {
+            diffs.difference("exchange", transfer.seed, "connection was not tracked until the end");
+        } else if (exchange.totalLatency() < 0) {
+            diffs.difference("exchange", transfer.seed, "not closed after the response stream was");
+        }
+        if (transfer.responseCaptures != 1) {
+            diffs.difference("response listener", transfer.seed, "called " + transfer.responseCaptures + " times");
+        }
+        if (hasRequestBody && transfer.requestCaptures != 1) {
+            diffs.difference("request listener", transfer.seed, "called " + transfer.requestCaptures + " times");
+        }
+    }
+
+    /** Waits for the verifier to check every posted capture, then stops it. */
+    void stop() throws InterruptedException {
+        stopping = true;
+        verifier.join();
+    }
+
+    long verified() {
+        return verified.get();
+    }
+
+    long truncated() {
+        return truncated.get();
+    }
+
+    long dropped() {
+        return ring.dropped();
+    }
+
+    int openExchanges() {
+        return exchanges.openCount();
+    }
+
+    // The hooks' EVENTS.post(): never blocks; a full ring drops the capture
+    private void post(int kind, long seed, long moved, CaptureBuffer capture) {
+        CaptureEvent event = ring.claim();
+        if (event == null) {
+            capture.release();
+            return;
+        }
+        event.kind = kind;
+        event.exchange = seed;
+        event.length = moved;
+        event.body = capture;
+        ring.publish(event);
+    }
+
+    private void verify() {
+        while (true) {
+            CaptureEvent event = ring.poll();
+            if (event == null) {
+                if (stopping && ring.poll() == null) return;
+                LockSupport.parkNanos(1_000_000L);
+                continue;
+            }
+            CaptureBuffer capture = (CaptureBuffer) event.body;
+            try {
+                boolean request = event.kind == CaptureEvent.REQUEST_BODY;
+                check(request ? "request capture" : "response capture", event.exchange,
+                    request ? event.exchange ^ Payload.REQUEST_SALT : event.exchange, event.length, capture);
+            } finally {
+                capture.release();
+                ring.release(event);
+            }
+        }
+    }
+
+    // The capture must hold the first bytes the app moved, up to the limit, and count all of them
+    private void check(String where, long seed, long payloadSeed, long moved, CaptureBuffer capture) {
+        verified.incrementAndGet();
+        if (capture.isTruncated()) truncated.incrementAndGet();
+        if (capture.totalBytes() != moved) {
+            diffs.difference(where, seed, capture.totalBytes() + " bytes seen, the app moved " + moved);
+        }
+        long kept = Math.min(moved, maxCaptureBytes);
+        if (capture.size() != kept) {
+            diffs.difference(where, seed, capture.size() + " bytes kept, expected " + kept);
+        }
+        long offset = 0;
+        for (int i = 0; i < capture.chunkCount(); i++) {
+            byte[] chunk = capture.chunk(i);
+            int n = capture.chunkLength(i);
+            int at = Payload.mismatch(payloadSeed, offset, chunk, 0, n);
+            if (at >= 0) {
+                diffs.mismatch(where, seed, offset + at, Payload.byteAt(payloadSeed, offset + at), chunk[at]);
+                return;
+            }
+            offset += n;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.camerainterceptor.loadtest;
+
+import com.example.camerainterceptor.core.CaptureConfig;
+import com.example.camerainterceptor.core.LatencyHistogram;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent load test of the capture wrappers over real HttpURLConnection
+ * traffic.
+ *
+ *   capture-loadtest [--concurrency N] [--requests N] [--warmup N]
+ *                    [--request-bytes N] [--response-bytes N] [--server-chunk N] [--chunked]
+ *                    [--client-chunk N] [--read bulk|byte|mixed] [--close eof|early|partial|twice|mixed]
+ *                    [--max-capture N]
+ *
+ * Each of --concurrency threads makes --requests requests to a
+ * StandInServer with plain streams and as many through HookSimulator,
+ * interleaved, after --warmup unmeasured requests of each kind. The app side uploads and reads in --client-chunk
+ * pieces, optionally mixing read() with read(byte[], int, int) at random
+ * lengths, and closes the response stream at the end of the stream, right
+ * after the last byte without reading the end (early), halfway through
+ * (partial) or twice; mixed rotates through all four. Every byte the
+ * client reads, the server receives and the wrappers capture is checked
+ * against the payload. Exits with 1 if any check failed.
+ */
+public final class LoadTest {
+    private static final String USAGE = "usage: capture-loadtest [--concurrency N] [--requests N] [--warmup N]"
+        + " [--request-bytes N] [--response-bytes N] [--server-chunk N] [--chunked] [--client-chunk N]"
+        + " [--read bulk|byte|mixed] [--close eof|early|partial|twice|mixed] [--max-capture N]";
+    private static final String[] CLOSE_MODES = {"eof", "early", "partial", "twice"};
+
+    private int concurrency = 16;
+    private int requests = 200;
+    private int warmup = 50;
+    private int requestBytes = 1024;
+    private int responseBytes = 16 * 1024;
+    private int serverChunk = 1024;
+    private boolean chunked;
+    private int clientChunk = 512;
+    private String readMode = "mixed";
+    private String closeMode = "mixed";
+    private int maxCaptureBytes = CaptureConfig.DEFAULT_MAX_CAPTURE_BYTES;
+
+    private final Diffs diffs = new Diffs();
+    private final AtomicLong seeds = new AtomicLong();
+    private String baseUrl;
+
+    // Results for one variant; busy time is what its requests took, summed over the threads
+    private static final class Pass {
+        final String name;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+
+        Pass(String name) {
+            this.name = name;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTest test = new LoadTest();
+        try {
+            test.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        System.exit(test.run(System.out) ? 0 : 1);
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--chunked")) {
+                chunked = true;
+                continue;
+            }
+            if (!arg.startsWith("--") || i + 1 == args.length) throw new IllegalArgumentException("Bad argument " + arg);
+            String value = args[++i];
+            switch (arg) {
+                case "--concurrency": concurrency = number(arg, value, 1); break;
+                case "--requests": requests = number(arg, value, 1); break;
+                case "--warmup": warmup = number(arg, value, 0); break;
+                case "--request-bytes": requestBytes = number(arg, value, 0); break;
+                case "--response-bytes": responseBytes = number(arg, value, 0); break;
+                case "--server-chunk": serverChunk = number(arg, value, 1); break;
+                case "--client-chunk": clientChunk = number(arg, value, 1); break;
+                case "--max-capture": maxCaptureBytes = number(arg, value, 0); break;
+                case "--read": readMode = oneOf(arg, value, "bulk", "byte", "mixed"); break;
+                case "--close": closeMode = oneOf(arg, value, "eof", "early", "partial", "twice", "mixed"); break;
+                default: throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+    }
+
+    private static int number(String option, String value, int min) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= min) return n;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(option + " needs a number of at least " + min + ", not " + value);
+    }
+
+    private static String oneOf(String option, String value, String... allowed) {
+        for (String candidate : allowed) {
+            if (candidate.equals(value)) return value;
+        }
+        throw new IllegalArgumentException(option + " must be one of " + String.join("|", allowed));
+    }
+
+    private boolean run(PrintStream out) throws Exception {
+        // Keep a connection per thread alive between requests, as an app's pool would
+        System.setProperty("http.maxConnections", String.valueOf(concurrency));
+        // Without it the server's flushed writes wait on delayed ACKs and latency measures the TCP stack
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        try (StandInServer server = new StandInServer(concurrency, diffs)) {
+            baseUrl = server.url();
+            out.printf(Locale.US, "%s: %d threads x %d requests, response %d B in %d B writes (%s),"
+                    + " request %d B, app reads %s in %d B, close %s, capture limit %d B%n",
+                baseUrl, concurrency, requests, responseBytes, serverChunk, chunked ? "chunked" : "Content-Length",
+                requestBytes, readMode, clientChunk, closeMode, maxCaptureBytes);
+
+            HookSimulator hooks = new HookSimulator(maxCaptureBytes, diffs);
+            Pass baseline = new Pass("baseline");
+            Pass wrapped = new Pass("wrapped");
+            run(hooks, warmup, null, null);
+            run(hooks, requests, baseline, wrapped);
+            hooks.stop();
+
+            out.println();
+            out.println("             requests/s      MB/s      mean       p50       p90       p99       max");
+            print(out, baseline);
+            print(out, wrapped);
+            // Percentiles come from histogram buckets, so only the mean shows differences below a few percent
+            out.printf(Locale.US, "added     %23s %+8.3fms %+8.3fms %+8.3fms %+8.3fms%n", "",
+                millis(mean(wrapped) - mean(baseline)), added(baseline, wrapped, 50), added(baseline, wrapped, 90),
+                added(baseline, wrapped, 99));
+            out.println();
+            out.println("Captures verified: " + hooks.verified() + " (" + hooks.truncated() + " truncated at the limit, "
+                + hooks.dropped() + " dropped by a full ring), exchanges left open: " + hooks.openExchanges());
+            diffs.print(out);
+        }
+        return diffs.differences() == 0 && diffs.errors() == 0;
+    }
+
+    /*
+     * Each thread makes count plain and count wrapped requests, alternating
+     * which goes first, so both variants see the same JIT state, connection
+     * pool and server load; measured one after the other, whichever ran
+     * first came out slower. Results are recorded unless the passes are null.
+     */
+    private void run(HookSimulator hooks, int count, Pass baseline, Pass wrapped) throws InterruptedException {
+        Thread[] threads = new Thread[concurrency];
+        for (int t = 0; t < concurrency; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    boolean wrappedFirst = (i & 1) != 0;
+                    request(i, wrappedFirst ? hooks : null, wrappedFirst ? wrapped : baseline);
+                    request(i, wrappedFirst ? null : hooks, wrappedFirst ? baseline : wrapped);
+                }
+            }, "loadtest-" + t);
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+    }
+
+    private void request(int index, HookSimulator hooks, Pass pass) {
+        long seed = seeds.incrementAndGet();
+        long begin = System.nanoTime();
+        try {
+            long moved = request(seed, index, hooks);
+            if (pass == null) return;
+            long nanos = System.nanoTime() - begin;
+            pass.latency.record(nanos);
+            pass.busyNanos.addAndGet(nanos);
+            pass.bytes.addAndGet(moved);
+        } catch (IOException | RuntimeException e) {
+            diffs.error(seed, e);
+        }
+    }
+
+    // One request as an app would make it; returns the body bytes moved both ways
+    private long request(long seed, int index, HookSimulator hooks) throws IOException {
+        String close = closeMode.equals("mixed") ? CLOSE_MODES[index % CLOSE_MODES.length] : closeMode;
+        Random random = new Random(seed);
+        URL url = new URL(baseUrl + "?seed=" + seed + "&size=" + responseBytes + "&chunk=" + serverChunk
+            + "&req=" + requestBytes + "&chunked=" + (chunked ? 1 : 0));
+        HookSimulator.Transfer transfer = new HookSimulator.Transfer(seed);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if (requestBytes > 0) {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(requestBytes);
+        }
+        if (hooks != null) hooks.connect(connection, transfer);
+
+        if (requestBytes > 0) {
+            OutputStream out = connection.getOutputStream();
+            if (hooks != null) out = hooks.output(connection, out, transfer);
+            upload(out, seed ^ Payload.REQUEST_SALT, random, transfer);
+            out.close();
+            if (close.equals("twice")) out.close();
+        }
+
+        InputStream in = connection.getInputStream();
+        if (hooks != null) in = hooks.input(connection, in, transfer);
+        long limit = close.equals("partial") ? responseBytes / 2 : responseBytes;
+        download(in, seed, random, limit, close.equals("eof") || close.equals("twice"), transfer);
+        in.close();
+        if (close.equals("twice")) in.close();
+        if (hooks != null) hooks.finish(connection, transfer, requestBytes > 0);
+
+        if (transfer.read != limit) {
+            diffs.difference("client read", seed, transfer.read + " bytes, expected " + limit);
+        }
+        return transfer.written + transfer.read;
+    }
+
+    private void upload(OutputStream out, long seed, Random random, HookSimulator.Transfer transfer)
+            throws IOException {
+        byte[] chunk = new byte[clientChunk];
+        while (transfer.written < requestBytes) {
+            int n = (int) Math.min(clientChunk, requestBytes - transfer.written);
+            if (readMode.equals("byte") || readMode.equals("mixed") && random.nextInt(4) == 0) {
+                out.write(Payload.byteAt(seed, transfer.written));
+                transfer.written++;
+                continue;
+            }
+            if (readMode.equals("mixed")) n = 1 + random.nextInt(n);
+            Payload.fill(seed, transfer.written, chunk, 0, n);
+            out.write(chunk, 0, n);
+            transfer.written += n;
+        }
+    }
+
+    // Reads up to limit bytes, then the end of the stream if toEof, checking each against the payload
+    private void download(InputStream in, long seed, Random random, long limit, boolean toEof,
+                          HookSimulator.Transfer transfer) throws IOException {
+        byte[] chunk = new byte[clientChunk];
+        boolean differed = false;
+        while (toEof || transfer.read < limit) {
+            int want = (int) Math.max(1, Math.min(clientChunk, toEof ? clientChunk : limit - transfer.read));
+            int off = 0;
+            int n;
+            if (readMode.equals("byte") || readMode.equals("mixed") && random.nextInt(4) == 0) {
+                int b = in.read();
+                if (b < 0) break;
+                chunk[0] = (byte) b;
+                n = 1;
+            } else {
+                if (readMode.equals("mixed")) {
+                    want = 1 + random.nextInt(want);
+                    off = random.nextInt(clientChunk - want + 1);
+                }
+                n = in.read(chunk, off, want);
+                if (n < 0) break;
+            }
+            int at = differed ? -1 : Payload.mismatch(seed, transfer.read, chunk, off, n);
+            if (at >= 0) {
+                differed = true;
+                diffs.mismatch("client read", seed, transfer.read + at, Payload.byteAt(seed, transfer.read + at),
+                    chunk[off + at]);
+            }
+            transfer.read += n;
+        }
+    }
+
+    // Throughput as if the threads had made only this variant's requests
+    private void print(PrintStream out, Pass pass) {
+        double seconds = pass.busyNanos.get() / 1e9 / concurrency;
+        out.printf(Locale.US, "%-9s %13.1f %9.2f %8.3fms %8.3fms %8.3fms %8.3fms %8.3fms%n", pass.name,
+            pass.latency.count() / seconds, pass.bytes.get() / seconds / (1024 * 1024),
+            millis(mean(pass)), millis(pass.latency.percentile(50)), millis(pass.latency.percentile(90)),
+            millis(pass.latency.percentile(99)), millis(pass.latency.max()));
+    }
+
+    private static long mean(Pass pass) {
+        return pass.busyNanos.get() / Math.max(1, pass.latency.count());
+    }
+
+    private static double added(Pass baseline, Pass wrapped, double percentile) {
+        return millis(wrapped.latency.percentile(percentile)) - millis(baseline.latency.percentile(percentile));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.camerainterceptor.loadtest;
+
+/**
+ * Deterministic body bytes, so every side can check a body without
+ * keeping a copy of it.
+ *
+ * The byte at each offset depends on the body's seed and the offset, so
+ * dropped, repeated or reordered bytes show up at the first offset they
+ * shift. Request bodies use the seed XORed with REQUEST_SALT.
+ */
+final class Payload {
+    static final long REQUEST_SALT = 0x5DEECE66DL;
+
+    private Payload() {
+    }
+
+    static byte byteAt(long seed, long offset) {
+        long x = seed + offset * 0x9E3779B97F4A7C15L;
+        x = (x ^ (x >>> 31)) * 0xBF58476D1CE4E5B9L;
+        return (byte) (x ^ (x >>> 29));
+    }
+
+    static void fill(long seed, long offset, byte[] dest, int off, int len) {
+        for (int i = 0; i < len; i++) dest[off + i] = byteAt(seed, offset + i);
+    }
+
+    /** Index into data of the first byte that differs from the body at offset, or -1. */
+    static int mismatch(long seed, long offset, byte[] data, int off, int len) {
+        for (int i = 0; i < len; i++) {
+            if (data[off + i] != byteAt(seed, offset + i)) return i;
+        }
+        return -1;
+    }
+}
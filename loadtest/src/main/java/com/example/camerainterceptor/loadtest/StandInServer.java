@@ -0,0 +1,109 @@
+package com.example.camerainterceptor.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process HTTP server standing in for the app's backend.
+ *
+ *   POST|GET /load?seed=S&size=N&chunk=C&req=R&chunked=0|1
+ *
+ * checks that the request body is the R-byte request payload for S, then
+ * answers 200 with the N-byte payload for S, written C bytes at a time and
+ * flushed after each write so the client sees partial reads. With
+ * chunked=1 the response uses chunked transfer encoding instead of a
+ * Content-Length.
+ */
+final class StandInServer implements Closeable {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Diffs diffs;
+
+    StandInServer(int threads, Diffs diffs) throws IOException {
+        this.diffs = diffs;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/load", this::handle);
+        server.start();
+    }
+
+    String url() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort() + "/load";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange http) throws IOException {
+        try {
+            Map<String, Long> query = query(http.getRequestURI().getRawQuery());
+            long seed = query.get("seed");
+            long size = query.get("size");
+            int chunk = (int) Math.max(1, query.get("chunk"));
+            long requestSize = query.get("req");
+
+            long received = readRequest(http.getRequestBody(), seed ^ Payload.REQUEST_SALT);
+            if (received != requestSize) {
+                diffs.difference("server request", seed, received + " bytes received, " + requestSize + " sent");
+            }
+
+            http.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            http.sendResponseHeaders(200, query.get("chunked") != 0 ? 0 : size == 0 ? -1 : size);
+            byte[] buffer = new byte[chunk];
+            try (OutputStream out = http.getResponseBody()) {
+                for (long offset = 0; offset < size; offset += chunk) {
+                    int n = (int) Math.min(chunk, size - offset);
+                    Payload.fill(seed, offset, buffer, 0, n);
+                    out.write(buffer, 0, n);
+                    out.flush();
+                }
+            }
+        } finally {
+            http.close();
+        }
+    }
+
+    // Reads the request body to the end, reporting its first difference from the payload
+    private long readRequest(InputStream in, long seed) throws IOException {
+        byte[] buffer = new byte[8192];
+        long received = 0;
+        boolean differed = false;
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            int at = differed ? -1 : Payload.mismatch(seed, received, buffer, 0, n);
+            if (at >= 0) {
+                differed = true;
+                diffs.mismatch("server request", seed ^ Payload.REQUEST_SALT, received + at,
+                    Payload.byteAt(seed, received + at), buffer[at]);
+            }
+            received += n;
+        }
+        return received;
+    }
+
+    private static Map<String, Long> query(String rawQuery) {
+        Map<String, Long> values = new HashMap<>();
+        for (String name : new String[] {"seed", "size", "chunk", "req", "chunked"}) values.put(name, 0L);
+        if (rawQuery == null) return values;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) values.put(pair.substring(0, eq), Long.parseLong(pair.substring(eq + 1)));
+        }
+        return values;
+    }
+}